@@ -0,0 +1,161 @@
+import commands.Command;
+import engine.Engine;
+import engine.RecordModule;
+import engine.SpellCheckModule;
+import io.FileIO;
+import io.MacroFile;
+import io.UndoJournal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class applies a saved macro to all files of a directory tree without a GUI.
+ * Its main method expects the macro file, the directory and optionally the number of
+ * worker threads (default: number of cores):
+ *
+ * <pre>java BatchEditor edit.macro documents/ 8</pre>
+ *
+ * Every file is opened in its own Engine, the macro is replayed and the file is saved.
+ * All Engines share one SpellCheckModule, so the dictionary is only loaded once, and
+ * neither spell check automatically nor save undo steps, since nobody looks at the
+ * result. A file is only replaced once its edited version has been written completely.
+ */
+public class BatchEditor {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: BatchEditor <macro file> <directory> [threads]");
+            System.exit(1);
+        }
+        File macroFile = new File(args[0]);
+        Path directory = new File(args[1]).toPath();
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int failureCount = editFiles(macroFile, directory, threads, System.out);
+        System.exit(failureCount == 0 ? 0 : 2);
+    }
+
+    /**
+     * Applies a macro to all files of a directory tree and prints a summary.
+     *
+     * @param macroFile of the macro to be applied.
+     * @param directory whose files are edited.
+     * @param threads number of worker threads.
+     * @param out stream to which the summary and the failures are printed.
+     * @return the number of files that couldn't be edited.
+     * @throws IOException if the macro or the directory can't be read.
+     * @throws InterruptedException if the thread is interrupted while waiting for the workers.
+     */
+    static int editFiles(File macroFile, Path directory, int threads, PrintStream out)
+            throws IOException, InterruptedException {
+        /** The macro is loaded and compiled once and then replayed by every Engine. */
+        RecordModule macro = new RecordModule();
+        macro.load(MacroFile.load(macroFile));
+        List<Command> commands = macro.compile();
+
+        List<File> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(Files::isRegularFile)
+                    .map(Path::toFile)
+                    .filter(file -> !file.getName().endsWith(MacroFile.FILE_EXTENSION) &&
+                            !file.getName().endsWith(UndoJournal.FILE_EXTENSION) &&
+                            !file.equals(macroFile.getAbsoluteFile()))
+                    .collect(Collectors.toList());
+        }
+        return editFiles(commands, files, threads, out);
+    }
+
+    /**
+     * Applies compiled commands to files and prints a summary.
+     *
+     * @param commands of the compiled macro.
+     * @param files to be edited.
+     * @param threads number of worker threads.
+     * @param out stream to which the summary and the failures are printed.
+     * @return the number of files that couldn't be edited.
+     * @throws InterruptedException if the thread is interrupted while waiting for the workers.
+     */
+    static int editFiles(List<Command> commands, List<File> files, int threads, PrintStream out)
+            throws InterruptedException {
+        SpellCheckModule spellCheckModule = new SpellCheckModule();
+        AtomicInteger processedCount = new AtomicInteger();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (File file : files) {
+            workers.execute(() -> {
+                try {
+                    applyMacro(commands, file, spellCheckModule);
+                    processedCount.incrementAndGet();
+                } catch (Throwable e) {
+                    /** Also errors are recorded, otherwise the file would silently be missing in the summary. */
+                    failures.add(file + ": " + e);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        out.printf("Processed %d files in %.2f s (%.1f files/sec) with %d threads, %d failures.%n",
+                processedCount.get(), seconds, processedCount.get() / Math.max(seconds, 1e-9),
+                threads, failures.size());
+        failures.forEach(failure -> out.println("Failed: " + failure));
+        return failures.size();
+    }
+
+    /**
+     * Opens a file in a new Engine, replays the macro and saves the file.
+     *
+     * @param commands of the compiled macro.
+     * @param file to be edited.
+     * @param spellCheckModule shared by all Engines.
+     * @throws IOException if the file can't be read or written.
+     */
+    static void applyMacro(List<Command> commands, File file, SpellCheckModule spellCheckModule)
+            throws IOException {
+        Engine engine = new Engine(spellCheckModule);
+        engine.setSpellCheckEnabled(false);
+        engine.setUndoEnabled(false);
+        engine.openFile(FileIO.readFile(file));
+
+        engine.getRecordModule().load(commands);
+        engine.replayRecording();
+
+        /**
+         * The edited text is written next to the file and then moved over it, so a failure
+         * never leaves half a file. A symbolic link is kept and the file it points to is
+         * replaced, and the replacement gets the permissions of the original.
+         */
+        Path target = file.toPath().toRealPath();
+        Path temporary = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+        try {
+            FileIO.saveContentToFile(temporary.toFile(), engine.getBuffer());
+            if (Files.getFileStore(target).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(temporary, Files.getPosixFilePermissions(target));
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -30,4 +30,8 @@ public class DeleteCommand implements Command {
         engine.deleteInDirection(delDirection);
         engine.getRecordModule().record(this);
     }
+
+    public int getDelDirection() {
+        return delDirection;
+    }
 }
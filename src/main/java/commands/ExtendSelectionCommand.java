@@ -24,4 +24,8 @@ public class ExtendSelectionCommand implements Command {
         engine.expandSelection(end);
         engine.getRecordModule().record(this);
     }
+
+    public int getEnd() {
+        return end;
+    }
 }
@@ -0,0 +1,29 @@
+package commands;
+
+import engine.Engine;
+
+/**
+ * This class represents the GoToLineCommand that is build and run when user
+ * decides to jump to a line by entering its number.
+ */
+public class GoToLineCommand implements Command {
+    int line;
+
+    /**
+     * The constructor takes the line to jump to as parameter.
+     *
+     * @param line 0-based line to which the cursor is moved.
+     */
+    public GoToLineCommand(int line) {
+        this.line = line;
+    }
+
+    public void execute(Engine engine) {
+        engine.goToLine(line);
+        engine.getRecordModule().record(this);
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
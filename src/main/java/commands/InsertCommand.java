@@ -23,4 +23,8 @@ public class InsertCommand implements Command {
         engine.insertChar(character);
         engine.getRecordModule().record(this);
     }
+
+    public char getCharacter() {
+        return character;
+    }
 }
@@ -0,0 +1,30 @@
+package commands;
+
+import engine.Engine;
+
+/**
+ * This class represents the InsertTextCommand that inserts a whole text at once. It is
+ * not built by the ui.GUI but by {@link engine.RecordModule#compile()}, which fuses
+ * consecutive InsertCommands of a macro into one InsertTextCommand.
+ */
+public class InsertTextCommand implements Command {
+    String text;
+
+    /**
+     * The constructor takes the text to be inserted as parameter.
+     *
+     * @param text that is inserted.
+     */
+    public InsertTextCommand(String text) {
+        this.text = text;
+    }
+
+    public void execute(Engine engine) {
+        engine.insertText(text);
+        engine.getRecordModule().record(this);
+    }
+
+    public String getText() {
+        return text;
+    }
+}
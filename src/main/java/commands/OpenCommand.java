@@ -1,7 +1,9 @@
 package commands;
 
+import engine.Buffer;
 import engine.Engine;
 
+import java.io.File;
 import java.util.List;
 
 /**
@@ -10,6 +12,9 @@ import java.util.List;
  */
 public class OpenCommand implements Command {
     List<Character> chars;
+    char[] charArray;
+    Buffer buffer;
+    File file;
 
     /**
      * The constructor takes a List<Character> that is extracted from the file.
@@ -22,7 +27,50 @@ public class OpenCommand implements Command {
         this.chars = chars;
     }
 
+    /**
+     * The constructor takes a char[] that is extracted from the file. The array
+     * is handed over to the Engine and must not be modified afterwards.
+     *
+     * @param charArray the characters to be loaded into the text editor.
+     */
+    public OpenCommand(char[] charArray) {
+        this.charArray = charArray;
+    }
+
+    /**
+     * The constructor takes a char[] that is extracted from a file and the file
+     * itself, so that the Engine can restore the undo history of the file.
+     *
+     * @param charArray the characters to be loaded into the text editor.
+     * @param file from which the characters were read.
+     */
+    public OpenCommand(char[] charArray, File file) {
+        this.charArray = charArray;
+        this.file = file;
+    }
+
+    /**
+     * The constructor takes a Buffer that was read from a file and the file itself,
+     * see {@link io.FileIO#readFile(File)}. The Buffer is handed over to the Engine and
+     * must not be modified afterwards.
+     *
+     * @param buffer the text to be loaded into the text editor.
+     * @param file from which the text was read.
+     */
+    public OpenCommand(Buffer buffer, File file) {
+        this.buffer = buffer;
+        this.file = file;
+    }
+
     public void execute(Engine engine) {
-        engine.openFile(chars);
+        if (buffer != null) {
+            engine.openFile(buffer, file);
+        } else if (file != null) {
+            engine.openFile(charArray, file);
+        } else if (charArray != null) {
+            engine.openFile(charArray);
+        } else {
+            engine.openFile(chars);
+        }
     }
 }
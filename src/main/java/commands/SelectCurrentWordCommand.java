@@ -25,4 +25,8 @@ public class SelectCurrentWordCommand implements Command {
     public void execute(Engine engine) {
         engine.selectCurrentWord(position);
     }
+
+    public int getPosition() {
+        return position;
+    }
 }
@@ -24,4 +24,8 @@ public class UpdateCursorCommand implements Command {
         engine.updateCursor(position);
         engine.getRecordModule().record(this);
     }
+
+    public int getPosition() {
+        return position;
+    }
 }
@@ -28,4 +28,12 @@ public class UpdateSelectionCommand implements Command {
         engine.updateSelection(start, end);
         engine.getRecordModule().record(this);
     }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
 }
@@ -0,0 +1,461 @@
+package engine;
+
+import engine.interfaces.IDictionary;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * This class is a dictionary in the affix-compressed format of Hunspell. The .dic file
+ * lists root words with flags, and the .aff file defines for every flag the prefixes or
+ * suffixes that can be added to the roots having that flag. E.g. the root
+ * {@code walk/DGS} together with the suffixes of D, G and S stands for "walk", "walked",
+ * "walking" and "walks".
+ *
+ * Only the roots are stored. A lookup removes each possible affix from the word, restores
+ * the stripped characters and checks if the resulting root exists and has the flag of
+ * the affix. So the dictionary needs a fraction of the memory of all inflected forms,
+ * and loading it only parses the roots.
+ *
+ * Supported are the options SET, FLAG (single characters, long and num), NEEDAFFIX and
+ * PFX/SFX rules including cross products of a prefix and a suffix. Continuation classes
+ * of affixes (twofold suffixes), compounding and all other options are ignored.
+ */
+public class AffixDictionary implements IDictionary {
+    /** Flags of the roots, each flag encoded as one char, see {@link AffixDictionary#flagIds}. */
+    private final Map<String, String> roots = new HashMap<>();
+
+    /** Suffix rules by the suffix they add, e.g. "ed" for the rule that turns "walk" into "walked". */
+    private final Map<String, List<Affix>> suffixes = new HashMap<>();
+
+    /** Prefix rules by the prefix they add. */
+    private final Map<String, List<Affix>> prefixes = new HashMap<>();
+
+    /** Rules by their flag, used to generate all words. */
+    private final Map<Character, List<Affix>> affixesByFlag = new HashMap<>();
+
+    /** Flags as written in the files, mapped to the chars used internally. */
+    private final Map<String, Character> flagIds = new HashMap<>();
+
+    private String flagType = "char";
+    private char needAffixFlag = 0;
+    private int maxSuffixLength = 0;
+    private int maxPrefixLength = 0;
+
+    /** Number of distinct words, computed on first use since all words have to be formed for it. */
+    private volatile int size = -1;
+
+    private AffixDictionary() {
+    }
+
+    /**
+     * Parses a dictionary in the Hunspell format.
+     *
+     * @param affixSource content of the .aff file.
+     * @param dictionarySource content of the .dic file.
+     * @return the dictionary.
+     * @throws IOException if the files are malformed.
+     */
+    public static AffixDictionary parse(byte[] affixSource, byte[] dictionarySource) throws IOException {
+        AffixDictionary dictionary = new AffixDictionary();
+        Charset charset = getCharset(affixSource);
+        dictionary.parseAffixes(readLines(affixSource, charset));
+        dictionary.parseRoots(readLines(dictionarySource, charset));
+        return dictionary;
+    }
+
+    public boolean contains(String word) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        String flags = roots.get(word);
+        if (flags != null && (needAffixFlag == 0 || flags.indexOf(needAffixFlag) < 0)) {
+            return true;
+        }
+        if (containsWithSuffix(word, (char) 0, null)) {
+            return true;
+        }
+
+        for (int length = 0; length <= Math.min(maxPrefixLength, word.length() - 1); length++) {
+            List<Affix> rules = prefixes.get(word.substring(0, length));
+            if (rules == null) {
+                continue;
+            }
+            for (Affix prefix : rules) {
+                String root = prefix.strip + word.substring(length);
+                if (!prefix.condition.matchesStart(root)) {
+                    continue;
+                }
+                if (hasFlag(root, prefix.flag) ||
+                        (prefix.isCrossProduct && containsWithSuffix(root, prefix.flag, prefix))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean contains(char[] chars, int start, int end) {
+        return contains(new String(chars, start, end - start));
+    }
+
+    /**
+     * Looks up a word following the case rules of Hunspell: the word is accepted as it
+     * is or in lower case, and a word in upper case also matches a capitalized root. So
+     * a root like "London" matches "London" and "LONDON", but not "london".
+     */
+    public boolean containsLowerCase(char[] chars, int start, int end) {
+        String word = new String(chars, start, end - start);
+        if (contains(word)) {
+            return true;
+        }
+        String lowerCase = word.toLowerCase();
+        if (contains(lowerCase)) {
+            return true;
+        }
+        return word.length() > 1 && word.equals(word.toUpperCase()) &&
+                contains(word.charAt(0) + lowerCase.substring(1));
+    }
+
+    /**
+     * Passes every root and every word that can be formed from a root with its affixes
+     * to a consumer. Since different rules can form the same word, the words already
+     * passed are remembered during the iteration, so it temporarily needs the memory
+     * of all forms.
+     */
+    public void forEachWord(Consumer<String> consumer) {
+        Set<String> formed = new HashSet<>();
+        roots.forEach((root, flags) -> forEachForm(root, flags, word -> {
+            if (formed.add(word)) {
+                consumer.accept(word);
+            }
+        }));
+    }
+
+    /**
+     * Returns the number of distinct words that can be formed, including the roots. It
+     * is computed on the first call.
+     */
+    public int size() {
+        if (size < 0) {
+            int[] count = {0};
+            forEachWord(word -> count[0]++);
+            size = count[0];
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of roots, which is the number of Strings kept in memory.
+     *
+     * @return number of roots.
+     */
+    public int getRootCount() {
+        return roots.size();
+    }
+
+    /**
+     * Checks if a word is a root with a suffix.
+     *
+     * @param word to be checked.
+     * @param prefixFlag flag of a removed prefix that the root must have too, or 0.
+     * @param prefix removed prefix or null. The suffix must allow cross products then.
+     * @return true if the word is a root with a suffix of the root.
+     */
+    private boolean containsWithSuffix(String word, char prefixFlag, Affix prefix) {
+        for (int length = 0; length <= Math.min(maxSuffixLength, word.length() - 1); length++) {
+            List<Affix> rules = suffixes.get(word.substring(word.length() - length));
+            if (rules == null) {
+                continue;
+            }
+            for (Affix suffix : rules) {
+                if (prefix != null && !suffix.isCrossProduct) {
+                    continue;
+                }
+                String root = word.substring(0, word.length() - length) + suffix.strip;
+                if (suffix.condition.matchesEnd(root) && hasFlag(root, suffix.flag) &&
+                        (prefixFlag == 0 || hasFlag(root, prefixFlag))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasFlag(String root, char flag) {
+        String flags = roots.get(root);
+        return flags != null && flags.indexOf(flag) >= 0;
+    }
+
+    private void forEachForm(String root, String flags, Consumer<String> consumer) {
+        if (needAffixFlag == 0 || flags.indexOf(needAffixFlag) < 0) {
+            consumer.accept(root);
+        }
+        for (int i = 0; i < flags.length(); i++) {
+            for (Affix affix : affixesByFlag.getOrDefault(flags.charAt(i), Collections.<Affix>emptyList())) {
+                String form = affix.apply(root);
+                if (form == null) {
+                    continue;
+                }
+                consumer.accept(form);
+                if (affix.isPrefix && affix.isCrossProduct) {
+                    for (int j = 0; j < flags.length(); j++) {
+                        for (Affix suffix : affixesByFlag.getOrDefault(flags.charAt(j), Collections.<Affix>emptyList())) {
+                            String combined = !suffix.isPrefix && suffix.isCrossProduct ? suffix.apply(root) : null;
+                            if (combined != null) {
+                                consumer.accept(affix.affix + combined.substring(affix.strip.length()));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void parseAffixes(List<String> lines) throws IOException {
+        for (int i = 0; i < lines.size(); i++) {
+            String[] fields = lines.get(i).trim().split("\\s+");
+            switch (fields[0]) {
+                case "FLAG":
+                    flagType = fields.length > 1 ? fields[1] : flagType;
+                    break;
+                case "NEEDAFFIX":
+                    if (fields.length > 1) {
+                        needAffixFlag = getFlagId(fields[1]);
+                    }
+                    break;
+                case "PFX":
+                case "SFX":
+                    if (fields.length < 4) {
+                        throw new IOException("Malformed affix header in line " + (i + 1));
+                    }
+                    boolean isPrefix = fields[0].equals("PFX");
+                    char flag = getFlagId(fields[1]);
+                    boolean isCrossProduct = fields[2].equals("Y");
+                    int count = Integer.parseInt(fields[3]);
+                    for (int j = 0; j < count; j++) {
+                        i++;
+                        String[] rule = i < lines.size() ? lines.get(i).trim().split("\\s+") : new String[0];
+                        if (rule.length < 4 || !rule[0].equals(fields[0])) {
+                            throw new IOException("Malformed affix rule in line " + (i + 1));
+                        }
+                        addAffix(new Affix(isPrefix, flag, isCrossProduct, rule[2], rule[3], rule.length > 4 ? rule[4] : "."));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void addAffix(Affix affix) {
+        Map<String, List<Affix>> byAffix = affix.isPrefix ? prefixes : suffixes;
+        byAffix.computeIfAbsent(affix.affix, key -> new ArrayList<>()).add(affix);
+        affixesByFlag.computeIfAbsent(affix.flag, key -> new ArrayList<>()).add(affix);
+        if (affix.isPrefix) {
+            maxPrefixLength = Math.max(maxPrefixLength, affix.affix.length());
+        } else {
+            maxSuffixLength = Math.max(maxSuffixLength, affix.affix.length());
+        }
+    }
+
+    private void parseRoots(List<String> lines) {
+        /** The first line contains the approximate number of roots. */
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            /** Morphological fields follow after whitespace, an escaped slash is part of the word. */
+            int end = line.indexOf('\t');
+            String entry = end >= 0 ? line.substring(0, end) : line.split(" ")[0];
+            int slash = entry.indexOf('/');
+            while (slash > 0 && entry.charAt(slash - 1) == '\\') {
+                slash = entry.indexOf('/', slash + 1);
+            }
+            String root = (slash >= 0 ? entry.substring(0, slash) : entry).replace("\\/", "/");
+            String flags = slash >= 0 ? parseFlags(entry.substring(slash + 1)) : "";
+
+            String existingFlags = roots.get(root);
+            roots.put(root, existingFlags == null ? flags : existingFlags + flags);
+        }
+    }
+
+    /**
+     * Converts the flags of a root as written in the file into their internal chars.
+     */
+    private String parseFlags(String flags) {
+        StringBuilder ids = new StringBuilder();
+        switch (flagType) {
+            case "long":
+                for (int i = 0; i + 1 < flags.length(); i += 2) {
+                    ids.append(getFlagId(flags.substring(i, i + 2)));
+                }
+                break;
+            case "num":
+                for (String flag : flags.split(",")) {
+                    ids.append(getFlagId(flag.trim()));
+                }
+                break;
+            default:
+                for (int i = 0; i < flags.length(); i += Character.charCount(flags.codePointAt(i))) {
+                    ids.append(getFlagId(flags.substring(i, i + Character.charCount(flags.codePointAt(i)))));
+                }
+                break;
+        }
+        return ids.toString();
+    }
+
+    private char getFlagId(String flag) {
+        return flagIds.computeIfAbsent(flag, key -> (char) (flagIds.size() + 1));
+    }
+
+    /**
+     * Returns the encoding declared by the SET option of an affix file, ISO-8859-1 if
+     * there is none.
+     */
+    private static Charset getCharset(byte[] affixSource) throws IOException {
+        for (String line : readLines(affixSource, StandardCharsets.ISO_8859_1)) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields[0].equals("SET") && fields.length > 1) {
+                try {
+                    return Charset.forName(fields[1]);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Unknown dictionary encoding " + fields[1] + ", using ISO-8859-1.");
+                }
+            }
+        }
+        return StandardCharsets.ISO_8859_1;
+    }
+
+    private static List<String> readLines(byte[] source, Charset charset) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(source), charset))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                /** Comments start with '#'. */
+                if (!line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        }
+        if (!lines.isEmpty() && lines.get(0).startsWith("\uFEFF")) {
+            lines.set(0, lines.get(0).substring(1));
+        }
+        return lines;
+    }
+
+    /**
+     * Rule that adds a prefix or suffix to roots with a flag.
+     */
+    private static class Affix {
+        final boolean isPrefix;
+        final char flag;
+        final boolean isCrossProduct;
+
+        /** Characters removed from the root before the affix is added. */
+        final String strip;
+
+        /** Characters added to the root. Continuation classes after '/' are ignored. */
+        final String affix;
+
+        /** Condition the root has to fulfill. */
+        final Condition condition;
+
+        Affix(boolean isPrefix, char flag, boolean isCrossProduct, String strip, String affix, String condition) {
+            this.isPrefix = isPrefix;
+            this.flag = flag;
+            this.isCrossProduct = isCrossProduct;
+            this.strip = strip.equals("0") ? "" : strip;
+            int slash = affix.indexOf('/');
+            String text = slash >= 0 ? affix.substring(0, slash) : affix;
+            this.affix = text.equals("0") ? "" : text;
+            this.condition = new Condition(condition);
+        }
+
+        /**
+         * @return the root with the affix, or null if the rule doesn't apply to the root.
+         */
+        String apply(String root) {
+            if (isPrefix) {
+                if (!condition.matchesStart(root) || !root.startsWith(strip) || root.length() == strip.length()) {
+                    return null;
+                }
+                return affix + root.substring(strip.length());
+            }
+            if (!condition.matchesEnd(root) || !root.endsWith(strip) || root.length() == strip.length()) {
+                return null;
+            }
+            return root.substring(0, root.length() - strip.length()) + affix;
+        }
+    }
+
+    /**
+     * Condition of an affix rule: a sequence of characters, character classes like
+     * {@code [aeiou]} or {@code [^aeiou]} and '.' for any character, which has to match
+     * the beginning (prefixes) or end (suffixes) of a root.
+     */
+    private static class Condition {
+        /** Allowed characters of each position, null for any character. */
+        final String[] characters;
+
+        /** True for positions that allow all characters except the listed ones. */
+        final boolean[] isNegated;
+
+        Condition(String pattern) {
+            List<String> characterList = new ArrayList<>();
+            List<Boolean> negatedList = new ArrayList<>();
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '[') {
+                    int end = pattern.indexOf(']', i);
+                    if (end < 0) {
+                        end = pattern.length();
+                    }
+                    boolean negated = i + 1 < end && pattern.charAt(i + 1) == '^';
+                    characterList.add(pattern.substring(negated ? i + 2 : i + 1, end));
+                    negatedList.add(negated);
+                    i = end;
+                } else {
+                    characterList.add(c == '.' ? null : String.valueOf(c));
+                    negatedList.add(false);
+                }
+            }
+            characters = characterList.toArray(new String[0]);
+            isNegated = new boolean[negatedList.size()];
+            for (int i = 0; i < isNegated.length; i++) {
+                isNegated[i] = negatedList.get(i);
+            }
+        }
+
+        boolean matchesStart(String root) {
+            return characters.length <= root.length() && matches(root, 0);
+        }
+
+        boolean matchesEnd(String root) {
+            return characters.length <= root.length() && matches(root, root.length() - characters.length);
+        }
+
+        private boolean matches(String root, int start) {
+            for (int i = 0; i < characters.length; i++) {
+                if (characters[i] != null &&
+                        (characters[i].indexOf(root.charAt(start + i)) >= 0) == isNegated[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
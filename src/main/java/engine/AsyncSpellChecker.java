@@ -0,0 +1,232 @@
+package engine;
+
+import engine.interfaces.ISpellCheckModule;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static engine.Buffer.isWordChar;
+
+/**
+ * This class runs spell checks on a background thread so that editing doesn't wait
+ * for the whole text to be checked.
+ *
+ * Every request carries an immutable snapshot of the text and the version of the text
+ * it belongs to. Requests are coalesced: if several requests arrive while a check is
+ * running, the running check is abandoned and only the latest request is checked. The
+ * results are passed to a {@link SpellCheckListener} together with the version, so that
+ * the receiver can discard results of outdated text.
+ *
+ * The text is checked in blocks, starting with the blocks of the viewport, i.e. the
+ * part of the text that is visible to the user. Its result is delivered right away.
+ * Then the checked range grows around the viewport in steps of doubling size, and the
+ * result of every step is delivered. If the viewport moves, the check continues around
+ * the new viewport and skips the blocks that have already been checked.
+ */
+public class AsyncSpellChecker {
+    /**
+     * Single background thread shared by all instances. It is a daemon thread, so it
+     * doesn't keep the application alive.
+     */
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spell-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Number of characters of a block. Blocks are extended to the end of their last word. */
+    private static final int BLOCK_SIZE = 4096;
+
+    /** Number of blocks by which the checked range first grows on each side of the viewport. */
+    private static final int INITIAL_RADIUS = 4;
+
+    /**
+     * Maximum number of blocks that are checked without looking for a newer request or
+     * a moved viewport.
+     */
+    private static final int MAX_BLOCKS_PER_PIECE = 256;
+
+    private ISpellCheckModule spellCheckModule;
+
+    /** Latest request that hasn't been picked up by the worker yet. */
+    private AtomicReference<Request> pendingRequest = new AtomicReference<>();
+
+    /** Range of the text that is currently visible. It is replaced, never modified. */
+    private volatile Selection viewport = new Selection(0, 0);
+
+    public AsyncSpellChecker(ISpellCheckModule spellCheckModule) {
+        this.spellCheckModule = spellCheckModule;
+    }
+
+    /**
+     * Requests a spell check of a text. The passed Buffer must not be modified
+     * afterwards, so a copy of the current text should be passed.
+     *
+     * @param snapshot of the text to be checked.
+     * @param version of the text.
+     * @param listener that receives the results on the worker thread.
+     */
+    public void request(Buffer snapshot, long version, SpellCheckListener listener) {
+        /** Only schedule the worker if no request is waiting, otherwise the waiting one is replaced. */
+        if (pendingRequest.getAndSet(new Request(snapshot, version, listener)) == null) {
+            WORKER.execute(this::checkPendingRequest);
+        }
+    }
+
+    /**
+     * Sets the range of the text that is visible to the user. A running check
+     * continues with the blocks of this range.
+     *
+     * @param start of the visible range.
+     * @param end of the visible range (exclusive).
+     */
+    public void setViewport(int start, int end) {
+        viewport = new Selection(start, end);
+    }
+
+    private void checkPendingRequest() {
+        Request request = pendingRequest.getAndSet(null);
+        if (request == null) {
+            return;
+        }
+        try {
+            check(request);
+        } catch (RuntimeException e) {
+            System.out.println("Error while spell checking.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Checks the blocks of a request around the viewport until all blocks are checked
+     * or a newer request arrives.
+     */
+    private void check(Request request) {
+        Buffer snapshot = request.snapshot;
+        int size = snapshot.getSize();
+        int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (blockCount == 0) {
+            request.listener.rangeChecked(0, 0, new int[0], request.version, true);
+            return;
+        }
+
+        BitSet checked = new BitSet(blockCount);
+        Selection checkedViewport = null;
+        int radius = 0;
+
+        while (checked.cardinality() < blockCount) {
+            Selection currentViewport = viewport;
+            if (currentViewport != checkedViewport) {
+                checkedViewport = currentViewport;
+                radius = 0;
+            }
+            int viewportStart = Math.min(Math.max(currentViewport.getSelectionBase(), 0), size);
+            int viewportEnd = Math.min(Math.max(currentViewport.getSelectionEnd(), viewportStart), size);
+            int first = Math.max(viewportStart / BLOCK_SIZE - radius, 0);
+            int last = Math.min((viewportEnd + BLOCK_SIZE - 1) / BLOCK_SIZE + radius, blockCount);
+            if (first == last) {
+                /** An empty viewport at the end of the text. */
+                first = Math.max(last - 1, 0);
+            }
+
+            /** Check the unchecked runs of blocks of this step. */
+            int runStart = checked.nextClearBit(first);
+            while (runStart < last) {
+                int nextChecked = checked.nextSetBit(runStart);
+                int runEnd = Math.min(nextChecked < 0 ? blockCount : nextChecked, last);
+                int checkedEnd = checkRun(request, runStart, runEnd, checked, blockCount, checkedViewport);
+                if (checkedEnd < 0) {
+                    return;
+                }
+                if (checkedEnd < runEnd) {
+                    /** The viewport has moved, continue around the new viewport. */
+                    break;
+                }
+                runStart = checked.nextClearBit(runEnd);
+            }
+            radius = radius == 0 ? INITIAL_RADIUS : radius * 2;
+        }
+    }
+
+    /**
+     * Checks a run of unchecked blocks piece by piece and delivers the result of the
+     * checked blocks. The check is interrupted by a newer request or a moved viewport.
+     *
+     * @return the block after the last checked block, or -1 if a newer request arrived.
+     */
+    private int checkRun(Request request, int runStart, int runEnd, BitSet checked, int blockCount,
+                         Selection checkedViewport) {
+        Buffer snapshot = request.snapshot;
+        int[] ranges = new int[0];
+        int block = runStart;
+        while (block < runEnd) {
+            if (pendingRequest.get() != null) {
+                return -1;
+            }
+            if (viewport != checkedViewport && block > runStart) {
+                break;
+            }
+            int pieceEnd = Math.min(block + MAX_BLOCKS_PER_PIECE, runEnd);
+            int[] pieceRanges = spellCheckModule.getMisspelledRanges(
+                    snapshot, getBlockStart(snapshot, block), getBlockStart(snapshot, pieceEnd));
+
+            int length = ranges.length;
+            ranges = Arrays.copyOf(ranges, length + pieceRanges.length);
+            System.arraycopy(pieceRanges, 0, ranges, length, pieceRanges.length);
+            checked.set(block, pieceEnd);
+            block = pieceEnd;
+        }
+
+        request.listener.rangeChecked(getBlockStart(snapshot, runStart), getBlockStart(snapshot, block),
+                ranges, request.version, checked.cardinality() == blockCount);
+        return block;
+    }
+
+    /**
+     * Returns the position at which a block starts. Blocks nominally start at multiples
+     * of {@link AsyncSpellChecker#BLOCK_SIZE}, but a block boundary inside a word is
+     * moved behind the word, so that no word is split.
+     */
+    private static int getBlockStart(Buffer snapshot, int block) {
+        int size = snapshot.getSize();
+        int position = (int) Math.min((long) block * BLOCK_SIZE, size);
+        while (position > 0 && position < size &&
+                isWordChar(snapshot.getCharAtPosition(position - 1)) && isWordChar(snapshot.getCharAtPosition(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Receives the results of a spell check.
+     */
+    public interface SpellCheckListener {
+        /**
+         * Is called for every checked range of the text. The ranges of one check don't
+         * overlap and together cover the whole text, but they are delivered in the
+         * order in which they were checked.
+         *
+         * @param start of the checked range.
+         * @param end of the checked range (exclusive).
+         * @param misspelledRanges start and end positions of the misspelled words in the range.
+         * @param version of the checked text.
+         * @param isComplete true if this was the last unchecked range of the text.
+         */
+        void rangeChecked(int start, int end, int[] misspelledRanges, long version, boolean isComplete);
+    }
+
+    private static class Request {
+        final Buffer snapshot;
+        final long version;
+        final SpellCheckListener listener;
+
+        Request(Buffer snapshot, long version, SpellCheckListener listener) {
+            this.snapshot = snapshot;
+            this.version = version;
+            this.listener = listener;
+        }
+    }
+}
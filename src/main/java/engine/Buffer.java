@@ -1,32 +1,107 @@
 package engine;
 
+import engine.interfaces.ITextStorage;
+
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * This class represents a state of the text input area or a part of it.
  *
  * It can represent the current text visible, the content of the clipboard
  * or the content as part of a Memento object.
+ *
+ * The characters themselves are kept in an {@link ITextStorage}. This class
+ * validates positions and implements the editor specific logic on top of it.
  */
 public class Buffer {
-    private List<Character> content;
+    /**
+     * The available storage backends of a Buffer.
+     */
+    public enum StorageType {
+        /** Single char array with a gap at the most recent edit, see {@link GapBuffer}. */
+        GAP_BUFFER,
+        /** Read-only original text and append-only add buffer, see {@link PieceTable}. */
+        PIECE_TABLE,
+        /** Balanced tree of char array leaves with O(1) copies, see {@link Rope}. */
+        ROPE
+    }
+
+    /**
+     * Storage backend of newly created Buffers. It can be chosen at startup with the
+     * system property {@code buffer.storage}, e.g. {@code -Dbuffer.storage=PIECE_TABLE}.
+     *
+     * The rope is the default because the Engine hands snapshots of its Buffer to the
+     * background spell checker on every edit, and copying a rope is O(1).
+     */
+    private static StorageType defaultStorageType =
+            StorageType.valueOf(System.getProperty("buffer.storage", StorageType.ROPE.name()));
+
+    private ITextStorage content;
+
+    /**
+     * Index of the lines in {@link Buffer#content}. It is created on first use and then
+     * updated with every modification, so Buffers that are never asked about lines
+     * (clipboard, Mementos) don't pay for it.
+     */
+    private LineIndex lineIndex;
 
     public Buffer() {
-        content = new ArrayList<>();
+        content = createStorage(defaultStorageType, new char[0], 0);
     }
 
     public Buffer(List<Character> content) {
         /**
-         * Copy the list here to avoid ConcurrentModificationException in
-         * insertAtPosition(Buffer, int). There we work in elements
-         * of ArrayList in addAll() and getContent() which leads to the exception.
-         * With this copy, we completely work on different objects (not only
-         * ArrayList-objects are different but also elements in it are different
-         * between the lists. Creates a 'true copy'.
+         * Copy the characters into a storage of our own so that later modifications
+         * of the passed list don't affect this Buffer and vice versa.
          */
-        this.content = new ArrayList<>(content);
+        char[] chars = new char[content.size()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = content.get(i);
+        }
+        this.content = createStorage(defaultStorageType, chars, chars.length);
+    }
+
+    /**
+     * Creates a Buffer on top of an already filled storage.
+     *
+     * @param content storage to be used by the Buffer.
+     */
+    Buffer(ITextStorage content) {
+        this.content = content;
+    }
+
+    /**
+     * Creates a Buffer that contains the passed characters, e.g. the content of an opened
+     * file. Storage backends that never modify their initial text (like the piece table)
+     * use the array directly instead of copying it. Therefore the array must not be
+     * modified after calling this method.
+     *
+     * @param chars initial text of the Buffer.
+     * @return the created Buffer.
+     */
+    public static Buffer wrap(char[] chars) {
+        return wrap(chars, chars.length);
+    }
+
+    /**
+     * Creates a Buffer that contains the first characters of the passed array like
+     * {@link Buffer#wrap(char[])}. The rest of the array is ignored, so an array that was
+     * allocated larger than its content doesn't have to be copied.
+     *
+     * @param chars array whose range [0, length) is the initial text of the Buffer.
+     * @param length number of characters of the initial text.
+     * @return the created Buffer.
+     */
+    public static Buffer wrap(char[] chars, int length) {
+        return new Buffer(createStorage(defaultStorageType, chars, length));
+    }
+
+    public static StorageType getDefaultStorageType() {
+        return defaultStorageType;
+    }
+
+    public static void setDefaultStorageType(StorageType storageType) {
+        defaultStorageType = storageType;
     }
 
     /**
@@ -45,9 +120,9 @@ public class Buffer {
         int end = selection.getSelectionEnd();
 
         if (isValidSelection(base, end)) {
-            return new Buffer(content.subList(base, end));
+            return new Buffer(content.copy(base, end));
         } else if (isValidSelection(end, base)) {
-            return new Buffer(content.subList(end, base));
+            return new Buffer(content.copy(end, base));
         } else {
             // Should not be reached.
             throw new IndexOutOfBoundsException("Couldn't create Buffer copy. Start and/or end index are invalid.");
@@ -60,12 +135,22 @@ public class Buffer {
      * @return the complete copy of Buffer.
      */
     public Buffer getCopy() {
-        return new Buffer(content);
+        return new Buffer(content.copy());
+    }
+
+    /**
+     * Checks if copies of the Buffer share their characters with it. Only the gap buffer
+     * copies its characters, the piece table and the rope share them.
+     *
+     * @return true if copies share the storage of the characters.
+     */
+    public boolean sharesStorageWithCopies() {
+        return !(content instanceof GapBuffer);
     }
 
     public char getCharAtPosition(int position) {
         if(isValidPositionWithFirst(position)) {
-            return content.get(position);
+            return content.charAt(position);
         }
         throw new NullPointerException("Invalid position: " + position);
     }
@@ -77,10 +162,11 @@ public class Buffer {
      * @param position at which the character should be inserted.
      */
     public void insertAtPosition(Character character, int position) {
-        if (isValidPositionWithFirst(position)) {
-            content.add(position, character);
-        } else if (isLastPosition(position)) {
-            content.add(character);
+        if (isValidPositionWithFirst(position) || isLastPosition(position)) {
+            content.insert(position, character);
+            if (lineIndex != null) {
+                lineIndex.insert(position, new char[]{character}, 0, 1);
+            }
         } else {
             throw new IndexOutOfBoundsException();
         }
@@ -93,10 +179,17 @@ public class Buffer {
      * @param position at which the characters in the Buffer should be inserted.
      */
     public void insertAtPosition(Buffer buffer, int position) {
-        if (isValidPositionWithFirst(position)) {
-            content.addAll(position, buffer.getContent());
-        } else if(isLastPosition(position)) {
-            content.addAll(buffer.getContent());
+        if (isValidPositionWithFirst(position) || isLastPosition(position)) {
+            if (content instanceof Rope && buffer.content instanceof Rope && lineIndex == null) {
+                /** Ropes share their immutable trees, so no characters need to be copied. */
+                ((Rope) content).insert(position, (Rope) buffer.content);
+            } else {
+                char[] chars = buffer.toCharArray();
+                content.insert(position, chars, 0, chars.length);
+                if (lineIndex != null) {
+                    lineIndex.insert(position, chars, 0, chars.length);
+                }
+            }
         } else {
             throw new IndexOutOfBoundsException();
         }
@@ -108,8 +201,8 @@ public class Buffer {
      * @param position at which a character should be deleted.
      */
     public void deleteAtPosition(int position) {
-        if (isValidPositionWithFirst(position) && !content.isEmpty()) {
-            content.remove(position);
+        if (isValidPositionWithFirst(position) && !isEmpty()) {
+            deleteFromContent(position, position + 1);
         }
     }
 
@@ -124,9 +217,9 @@ public class Buffer {
      */
     public void deleteInterval(int base, int end) {
         if (isValidSelection(base, end)) {
-            content.subList(base, end).clear();
+            deleteFromContent(base, end);
         } else if (isValidSelection(end, base)) {
-            content.subList(end, base).clear();
+            deleteFromContent(end, base);
         } else {
             throw new IndexOutOfBoundsException("Couldn't delete specified interval. Start and/or end index are invalid.");
         }
@@ -147,11 +240,11 @@ public class Buffer {
         if(isLastPosition(position)) {
             position--;
         }
-        char c = content.get(position);
+        char c = content.charAt(position);
         int nextCheck = position - 1;
 
         while (nextCheck >= 0 &&
-                areCharsOfSameType(c, content.get(nextCheck))) {
+                areCharsOfSameType(c, content.charAt(nextCheck))) {
             nextCheck--;
         }
         return nextCheck + 1;
@@ -172,34 +265,109 @@ public class Buffer {
         if(isLastPosition(position)) {
             position--;
         }
-        char c = content.get(position);
+        char c = content.charAt(position);
         int nextCheck = position + 1;
 
-        while (nextCheck < content.size() &&
-                areCharsOfSameType(c, content.get(nextCheck))) {
+        while (nextCheck < content.length() &&
+                areCharsOfSameType(c, content.charAt(nextCheck))) {
             nextCheck++;
         }
         return nextCheck;
     }
 
+    /**
+     * Returns the line (0-based) that contains a position. Lines are separated by '\n'.
+     *
+     * @param position in the Buffer, 0 <= position <= getSize().
+     * @return the line containing the position.
+     */
+    public int offsetToLine(int position) {
+        return getLineIndex().offsetToLine(position);
+    }
+
+    /**
+     * Returns the position at which a line (0-based) starts.
+     *
+     * @param line 0 <= line < getLineCount().
+     * @return the position of the first character of the line.
+     */
+    public int lineToOffset(int line) {
+        return getLineIndex().lineToOffset(line);
+    }
+
+    /**
+     * Returns the length of a line (0-based) including its terminating '\n'.
+     *
+     * @param line 0 <= line < getLineCount().
+     * @return the length of the line.
+     */
+    public int getLineLength(int line) {
+        return getLineIndex().getLineLength(line);
+    }
+
+    /**
+     * Returns the number of lines, which is the number of '\n' characters plus one.
+     *
+     * @return the number of lines.
+     */
+    public int getLineCount() {
+        return getLineIndex().getLineCount();
+    }
+
     public boolean isEmpty() {
-        return content.isEmpty();
+        return content.length() == 0;
     }
 
     public int getSize() {
-        return content.size();
+        return content.length();
     }
 
+    /**
+     * Returns the characters of the Buffer as a list. The list is a copy, so
+     * modifying it doesn't modify the Buffer. Prefer {@link Buffer#toCharArray()}
+     * or {@link Buffer#toString()} for large Buffers since every element of the
+     * list is a boxed Character.
+     *
+     * @return list of all characters in the Buffer.
+     */
     public List<Character> getContent() {
-        return content;
+        List<Character> chars = new ArrayList<>(content.length());
+        for (char c : toCharArray()) {
+            chars.add(c);
+        }
+        return chars;
+    }
+
+    /**
+     * Returns the characters of the Buffer as a newly allocated array.
+     *
+     * @return array of all characters in the Buffer.
+     */
+    public char[] toCharArray() {
+        char[] chars = new char[content.length()];
+        content.getChars(0, chars.length, chars, 0);
+        return chars;
     }
 
     @Override
     public String toString() {
-        StringBuilder stringBuilder = new StringBuilder();
-        content.forEach(c -> stringBuilder.append(c));
+        return new String(toCharArray());
+    }
 
-        return stringBuilder.toString();
+    /**
+     * Copies the characters in the range [start, end) into an array without creating
+     * intermediate objects.
+     *
+     * @param start first position to be copied.
+     * @param end position after the last character to be copied.
+     * @param dst array the characters are copied to.
+     * @param dstBegin index in {@code dst} at which the first character is written.
+     */
+    public void getChars(int start, int end, char[] dst, int dstBegin) {
+        if (start < 0 || end > content.length() || start > end) {
+            throw new IndexOutOfBoundsException("Couldn't copy characters. Start and/or end index are invalid.");
+        }
+        content.getChars(start, end, dst, dstBegin);
     }
 
     /**
@@ -214,7 +382,7 @@ public class Buffer {
      * @return result of the check as boolean.
      */
     private boolean isValidPositionWithFirst(int position) {
-        return position >= 0 && position < content.size();
+        return position >= 0 && position < content.length();
     }
 
     /**
@@ -229,7 +397,7 @@ public class Buffer {
      * @return result of the check as boolean.
      */
     private boolean isValidPositionWithLast(int position) {
-        return position > 0 && position <= content.size();
+        return position > 0 && position <= content.length();
     }
 
     /**
@@ -239,7 +407,7 @@ public class Buffer {
      * @return result of the check as boolean.
      */
     private boolean isLastPosition(int position) {
-        return position == content.size();
+        return position == content.length();
     }
 
     /**
@@ -256,6 +424,50 @@ public class Buffer {
                 start < end;
     }
 
+    /**
+     * Deletes the range [start, end) from the storage and keeps the line index up to date.
+     *
+     * @param start of the range to be deleted.
+     * @param end of the range to be deleted.
+     */
+    private void deleteFromContent(int start, int end) {
+        content.delete(start, end);
+        if (lineIndex != null) {
+            lineIndex.delete(start, end);
+        }
+    }
+
+    /**
+     * Returns the line index and creates it by scanning the content if it doesn't exist yet.
+     *
+     * @return the line index of the Buffer.
+     */
+    private LineIndex getLineIndex() {
+        if (lineIndex == null) {
+            lineIndex = LineIndex.build(content);
+        }
+        return lineIndex;
+    }
+
+    /**
+     * Creates an empty or filled storage of the given type.
+     *
+     * @param storageType type of the storage to be created.
+     * @param chars initial text, which may be used by the storage without copying it.
+     * @return the created storage.
+     */
+    private static ITextStorage createStorage(StorageType storageType, char[] chars, int length) {
+        switch (storageType) {
+            case PIECE_TABLE:
+                return new PieceTable(chars, length);
+            case ROPE:
+                return new Rope(chars, length);
+            case GAP_BUFFER:
+            default:
+                return new GapBuffer(chars, 0, length);
+        }
+    }
+
     /**
      * Checks if two characters are both whitespace characters or both non-whitespace
      * characters. Used to determine start and end of a word when double-clicking it.
@@ -281,16 +493,41 @@ public class Buffer {
                 character == '\n' || character == '\f' || character =='\u000B'; // last one is vertical tab (VT)
     }
 
-    private static Pattern PATTERN_SPECIAL_CHARS = Pattern.compile("[^a-z0-9 ]", Pattern.CASE_INSENSITIVE);
+    /**
+     * Table of the ASCII characters that can be part of a word: letters and digits. All
+     * other characters separate words. Looking up a character in the table is much
+     * cheaper than matching it with a regular expression.
+     */
+    private static final boolean[] WORD_CHARS = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            WORD_CHARS[c] = true;
+            WORD_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            WORD_CHARS[c] = true;
+        }
+    }
+
+    /**
+     * Checks if a character can be part of a word, i.e. it is an ASCII letter or digit.
+     *
+     * @param character to be checked.
+     * @return true if character is a word character. False if not.
+     */
+    public static boolean isWordChar(char character) {
+        return character < WORD_CHARS.length && WORD_CHARS[character];
+    }
 
     /**
-     * Checks if a character is considered as special character.
+     * Checks if a character is considered as special character, i.e. it is neither a
+     * word character nor a space.
      *
      * @param character to be checked.
      * @return true if character is a special character. False if not.
      */
     public static boolean isSpecialChar(char character) {
-        Matcher m = PATTERN_SPECIAL_CHARS.matcher(String.valueOf(character));
-        return m.find();
+        return !isWordChar(character) && character != ' ';
     }
 }
@@ -0,0 +1,96 @@
+package engine;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class stores a text compressed with {@link Deflater}. It is used to keep rarely
+ * accessed texts, e.g. old entries of the undo history, in less memory.
+ */
+public class CompressedText {
+    private final byte[] data;
+    private final int length;
+
+    private CompressedText(byte[] data, int length) {
+        this.data = data;
+        this.length = length;
+    }
+
+    /**
+     * Compresses the characters of a text.
+     *
+     * @param chars array containing the text.
+     * @return the compressed text.
+     */
+    public static CompressedText compress(char[] chars) {
+        byte[] bytes = new byte[chars.length * 2];
+        for (int i = 0; i < chars.length; i++) {
+            bytes[2 * i] = (byte) (chars[i] >> 8);
+            bytes[2 * i + 1] = (byte) chars[i];
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(bytes);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        byte[] chunk = new byte[4096];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+
+        return new CompressedText(out.toByteArray(), chars.length);
+    }
+
+    /**
+     * Restores the characters of the compressed text.
+     *
+     * @return array containing the text.
+     */
+    public char[] decompress() {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        byte[] bytes = new byte[length * 2];
+
+        try {
+            int count = 0;
+            while (count < bytes.length) {
+                count += inflater.inflate(bytes, count, bytes.length - count);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Compressed text is corrupted.", e);
+        } finally {
+            inflater.end();
+        }
+
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (((bytes[2 * i] & 0xFF) << 8) | (bytes[2 * i + 1] & 0xFF));
+        }
+        return chars;
+    }
+
+    /**
+     * @return number of characters of the text.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return number of bytes of the uncompressed text (two bytes per character).
+     */
+    public int getUncompressedSize() {
+        return length * 2;
+    }
+
+    /**
+     * @return number of bytes of the compressed text.
+     */
+    public int getCompressedSize() {
+        return data.length;
+    }
+}
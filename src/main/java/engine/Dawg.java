@@ -0,0 +1,426 @@
+package engine;
+
+import engine.interfaces.IDictionary;
+
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * This class is a dictionary stored as directed acyclic word graph (DAWG), i.e. as
+ * minimal deterministic automaton that accepts exactly the words of the dictionary.
+ * Words with common prefixes share states, and so do words with common suffixes
+ * (e.g. the inflections of many words), which makes it much smaller than a set of Strings.
+ *
+ * The automaton is packed into two arrays. The outgoing edges of a state are stored as a
+ * contiguous block sorted by their label, and a state is identified by the index of its
+ * first edge. For every edge {@link Dawg#labels} contains its character and
+ * {@link Dawg#edges} contains the index of the target state together with two flags:
+ * whether the target state is final (a word ends there) and whether the edge is the last
+ * edge of its state. States without edges are represented by index 0, which is unused.
+ *
+ * The arrays are accessed through buffers, so they can be on the heap or in a
+ * memory-mapped file (see {@link io.DictionaryCache}). Lookups walk the arrays without
+ * allocating. The DAWG is immutable and thread-safe, since it only uses absolute reads.
+ */
+public class Dawg implements IDictionary {
+    private static final int FINAL = 1;
+    private static final int LAST = 2;
+    private static final int FLAG_BITS = 2;
+
+    /** Index of the first edge of the initial state. */
+    private static final int ROOT = 1;
+
+    private final CharBuffer labels;
+    private final IntBuffer edges;
+    private final int size;
+
+    private Dawg(CharBuffer labels, IntBuffer edges, int size) {
+        this.labels = labels;
+        this.edges = edges;
+        this.size = size;
+    }
+
+    /**
+     * Creates a DAWG from packed arrays, e.g. from a memory-mapped file.
+     *
+     * @param labels characters of the edges.
+     * @param edges targets and flags of the edges, same length as labels.
+     * @param size number of words.
+     * @return the DAWG.
+     */
+    public static Dawg fromBuffers(CharBuffer labels, IntBuffer edges, int size) {
+        if (labels.limit() != edges.limit()) {
+            throw new IllegalArgumentException("Labels and edges must have the same length.");
+        }
+        return new Dawg(labels, edges, size);
+    }
+
+    /**
+     * Builds the DAWG of a collection of words with the incremental algorithm of Daciuk
+     * et al., which minimizes the automaton while the sorted words are added.
+     *
+     * @param words of the dictionary in any order, duplicates are ignored.
+     * @return the packed DAWG.
+     */
+    public static Dawg build(Collection<String> words) {
+        String[] sortedWords = words.toArray(new String[0]);
+        Arrays.sort(sortedWords);
+
+        Builder builder = new Builder();
+        String previousWord = null;
+        for (String word : sortedWords) {
+            if (!word.isEmpty() && !word.equals(previousWord)) {
+                builder.add(word);
+                previousWord = word;
+            }
+        }
+        return builder.pack();
+    }
+
+    public boolean contains(String word) {
+        int edge = -1;
+        int state = ROOT;
+        for (int i = 0; i < word.length(); i++) {
+            edge = findEdge(state, word.charAt(i));
+            if (edge < 0) {
+                return false;
+            }
+            state = edges.get(edge) >>> FLAG_BITS;
+        }
+        return edge >= 0 && (edges.get(edge) & FINAL) != 0;
+    }
+
+    public boolean contains(char[] chars, int start, int end) {
+        int edge = -1;
+        int state = ROOT;
+        for (int i = start; i < end; i++) {
+            edge = findEdge(state, chars[i]);
+            if (edge < 0) {
+                return false;
+            }
+            state = edges.get(edge) >>> FLAG_BITS;
+        }
+        return edge >= 0 && (edges.get(edge) & FINAL) != 0;
+    }
+
+    public boolean containsLowerCase(char[] chars, int start, int end) {
+        int edge = -1;
+        int state = ROOT;
+        for (int i = start; i < end; i++) {
+            edge = findEdge(state, Character.toLowerCase(chars[i]));
+            if (edge < 0) {
+                return false;
+            }
+            state = edges.get(edge) >>> FLAG_BITS;
+        }
+        return edge >= 0 && (edges.get(edge) & FINAL) != 0;
+    }
+
+    /**
+     * Passes the words of the dictionary to a consumer in sorted order.
+     */
+    public void forEachWord(Consumer<String> consumer) {
+        forEachWord(ROOT, new StringBuilder(), consumer);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a read-only view of the labels of the edges, e.g. to write them to a file.
+     *
+     * @return buffer containing the labels.
+     */
+    public CharBuffer getLabels() {
+        return labels.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only view of the targets and flags of the edges.
+     *
+     * @return buffer containing the edges.
+     */
+    public IntBuffer getEdges() {
+        return edges.asReadOnlyBuffer();
+    }
+
+    /**
+     * Checks if any word of the dictionary starts with a prefix.
+     *
+     * @param prefix to be looked up.
+     * @return true if a word starts with the prefix.
+     */
+    public boolean containsPrefix(String prefix) {
+        int state = ROOT;
+        for (int i = 0; i < prefix.length(); i++) {
+            int edge = findEdge(state, prefix.charAt(i));
+            if (edge < 0) {
+                return false;
+            }
+            state = edges.get(edge) >>> FLAG_BITS;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the words that start with a prefix in sorted order.
+     *
+     * @param prefix of the words.
+     * @param limit maximum number of returned words.
+     * @return the words starting with the prefix.
+     */
+    public List<String> getWordsWithPrefix(String prefix, int limit) {
+        List<String> words = new ArrayList<>();
+        int edge = -1;
+        int state = ROOT;
+        for (int i = 0; i < prefix.length(); i++) {
+            edge = findEdge(state, prefix.charAt(i));
+            if (edge < 0) {
+                return words;
+            }
+            state = edges.get(edge) >>> FLAG_BITS;
+        }
+        StringBuilder word = new StringBuilder(prefix);
+        if (edge >= 0 && (edges.get(edge) & FINAL) != 0) {
+            words.add(prefix);
+        }
+        collectWords(state, word, words, limit);
+        return words;
+    }
+
+    private void collectWords(int state, StringBuilder word, List<String> words, int limit) {
+        if (state == 0) {
+            return;
+        }
+        for (int edge = state; words.size() < limit; edge++) {
+            word.append(labels.get(edge));
+            if ((edges.get(edge) & FINAL) != 0 && words.size() < limit) {
+                words.add(word.toString());
+            }
+            collectWords(edges.get(edge) >>> FLAG_BITS, word, words, limit);
+            word.setLength(word.length() - 1);
+
+            if ((edges.get(edge) & LAST) != 0) {
+                break;
+            }
+        }
+    }
+
+    private void forEachWord(int state, StringBuilder word, Consumer<String> consumer) {
+        if (state == 0 || state >= labels.limit()) {
+            return;
+        }
+        for (int edge = state; ; edge++) {
+            word.append(labels.get(edge));
+            if ((edges.get(edge) & FINAL) != 0) {
+                consumer.accept(word.toString());
+            }
+            forEachWord(edges.get(edge) >>> FLAG_BITS, word, consumer);
+            word.setLength(word.length() - 1);
+
+            if ((edges.get(edge) & LAST) != 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the packed arrays. If they are memory-mapped, they
+     * are not on the heap and may be shared with other processes.
+     *
+     * @return size of the automaton in bytes.
+     */
+    public long getMemorySize() {
+        return 6L * labels.limit();
+    }
+
+    /**
+     * Checks if the arrays are outside of the heap, e.g. in a memory-mapped file.
+     *
+     * @return true if the arrays are not on the heap.
+     */
+    public boolean isDirect() {
+        return labels.isDirect();
+    }
+
+    /**
+     * Finds the edge of a state with a label.
+     *
+     * @return index of the edge or -1 if the state has no such edge.
+     */
+    private int findEdge(int state, char c) {
+        /** Index 0 and, for an empty dictionary, the initial state have no edges. */
+        if (state == 0 || state >= labels.limit()) {
+            return -1;
+        }
+        for (int edge = state; ; edge++) {
+            if (labels.get(edge) == c) {
+                return edge;
+            }
+            if (labels.get(edge) > c || (edges.get(edge) & LAST) != 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Builds the minimal automaton of words that are added in sorted order.
+     */
+    private static class Builder {
+        private final Node root = new Node();
+
+        /** Minimized states, used to find an equivalent state for a new state. */
+        private final Map<Node, Node> register = new HashMap<>();
+
+        /** States of the previously added word that may still change, from the root on. */
+        private final List<Node> path = new ArrayList<>();
+
+        private String previousWord = "";
+        private int wordCount = 0;
+
+        Builder() {
+            path.add(root);
+        }
+
+        void add(String word) {
+            int commonPrefix = 0;
+            int maxPrefix = Math.min(word.length(), previousWord.length());
+            while (commonPrefix < maxPrefix && word.charAt(commonPrefix) == previousWord.charAt(commonPrefix)) {
+                commonPrefix++;
+            }
+            minimize(commonPrefix);
+
+            Node node = path.get(commonPrefix);
+            for (int i = commonPrefix; i < word.length(); i++) {
+                Node next = new Node();
+                node.addEdge(word.charAt(i), next);
+                path.add(next);
+                node = next;
+            }
+            node.isFinal = true;
+            previousWord = word;
+            wordCount++;
+        }
+
+        /**
+         * Replaces the states of the path below a depth by equivalent registered states
+         * or registers them. Since words are added in sorted order, these states can't
+         * change anymore.
+         */
+        private void minimize(int depth) {
+            for (int i = path.size() - 1; i > depth; i--) {
+                Node child = path.remove(i);
+                Node registered = register.get(child);
+                if (registered != null) {
+                    path.get(i - 1).replaceLastTarget(registered);
+                } else {
+                    register.put(child, child);
+                }
+            }
+        }
+
+        Dawg pack() {
+            minimize(0);
+
+            int edgeCount = ROOT + root.count;
+            for (Node node : register.keySet()) {
+                edgeCount += node.count;
+            }
+            char[] labels = new char[edgeCount];
+            int[] edges = new int[edgeCount];
+            Map<Node, Integer> offsets = new IdentityHashMap<>();
+            int[] nextFree = {ROOT};
+            pack(root, labels, edges, offsets, nextFree);
+
+            return new Dawg(CharBuffer.wrap(labels), IntBuffer.wrap(edges), wordCount);
+        }
+
+        /**
+         * Writes the edges of a state and all states reachable from it.
+         *
+         * @return index of the first edge of the state.
+         */
+        private int pack(Node node, char[] labels, int[] edges, Map<Node, Integer> offsets, int[] nextFree) {
+            if (node.count == 0) {
+                return 0;
+            }
+            Integer offset = offsets.get(node);
+            if (offset != null) {
+                return offset;
+            }
+            int start = nextFree[0];
+            nextFree[0] += node.count;
+            offsets.put(node, start);
+
+            for (int i = 0; i < node.count; i++) {
+                Node target = node.targets[i];
+                int targetState = pack(target, labels, edges, offsets, nextFree);
+                labels[start + i] = node.labels[i];
+                edges[start + i] = (targetState << FLAG_BITS) |
+                        (target.isFinal ? FINAL : 0) | (i == node.count - 1 ? LAST : 0);
+            }
+            return start;
+        }
+    }
+
+    /**
+     * State of the automaton while it is built. Two states are equal if they are both
+     * final or not and have the same edges to the same (already minimized) states.
+     */
+    private static class Node {
+        char[] labels = new char[2];
+        Node[] targets = new Node[2];
+        int count = 0;
+        boolean isFinal = false;
+
+        void addEdge(char label, Node target) {
+            if (count == labels.length) {
+                labels = Arrays.copyOf(labels, count * 2);
+                targets = Arrays.copyOf(targets, count * 2);
+            }
+            labels[count] = label;
+            targets[count] = target;
+            count++;
+        }
+
+        void replaceLastTarget(Node target) {
+            targets[count - 1] = target;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node other = (Node) o;
+            if (isFinal != other.isFinal || count != other.count) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                if (labels[i] != other.labels[i] || targets[i] != other.targets[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = isFinal ? 1 : 0;
+            for (int i = 0; i < count; i++) {
+                hash = 31 * hash + labels[i];
+                hash = 31 * hash + System.identityHashCode(targets[i]);
+            }
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package engine;
+
+import engine.interfaces.IDictionary;
+import io.DictionaryCache;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class loads dictionaries once per process and shares them with all spell
+ * checkers. Dictionaries are identified by the path of their resource and loaded on
+ * first use. Since dictionaries are immutable, they can be used by all threads.
+ *
+ * Dictionaries in the affix-compressed format of Hunspell are identified by the path of
+ * their .dic file, the .aff file is expected next to it. They are always loaded as
+ * {@link AffixDictionary}, independent of the {@link Format}. Paths that are not found on
+ * the classpath are read from the file system, e.g. {@code /usr/share/hunspell/en_GB.dic}.
+ *
+ * A dictionary can be unloaded explicitly. Spell checkers that still reference it keep
+ * using it, the next spell checker that requests it loads it again.
+ */
+public class DictionaryRegistry {
+    /**
+     * The available representations of a loaded dictionary.
+     */
+    public enum Format {
+        /** Set of Strings, see {@link WordSetDictionary}. */
+        WORD_SET,
+        /** Minimal automaton packed into arrays, see {@link Dawg}. */
+        DAWG,
+        /**
+         * Minimal automaton that is compiled once into a cache file and then mapped into
+         * memory, see {@link DictionaryCache}.
+         */
+        MAPPED_DAWG
+    }
+
+    /**
+     * Representation of loaded dictionaries. It can be chosen at startup with the system
+     * property {@code dictionary.format}, e.g. {@code -Ddictionary.format=WORD_SET}.
+     *
+     * The mapped DAWG is the default because it needs about a tenth of the memory of the
+     * set, isn't on the heap and is available without parsing the dictionary.
+     */
+    private static Format format = Format.valueOf(System.getProperty("dictionary.format", Format.MAPPED_DAWG.name()));
+
+    /**
+     * Directory of the cache files of {@link Format#MAPPED_DAWG}. It can be set with the
+     * system property {@code dictionary.cacheDir}.
+     */
+    private static File cacheDirectory = new File(System.getProperty("dictionary.cacheDir",
+            new File(System.getProperty("java.io.tmpdir"), "ACOTextEditor").getPath()));
+
+    /** Path of the dictionary used by default. */
+    public static final String DEFAULT_DICTIONARY = "/dictionaries/british-english.txt";
+
+    /** Extension of the word lists of affix-compressed dictionaries. */
+    public static final String AFFIX_DICTIONARY_EXTENSION = ".dic";
+
+    private static final String AFFIX_FILE_EXTENSION = ".aff";
+
+    /**
+     * Path of the dictionary of spell checkers that aren't given one. It can be set with
+     * the system property {@code dictionary.path}, e.g.
+     * {@code -Ddictionary.path=/usr/share/hunspell/en_GB.dic}.
+     */
+    private static String defaultPath = System.getProperty("dictionary.path", DEFAULT_DICTIONARY);
+
+    private static final Map<String, IDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a dictionary and loads it if it hasn't been loaded yet. Concurrent calls for
+     * the same dictionary load it only once.
+     *
+     * @param path of the dictionary resource, which contains one word per line.
+     * @return the shared dictionary.
+     */
+    public static IDictionary get(String path) {
+        return dictionaries.computeIfAbsent(path, DictionaryRegistry::load);
+    }
+
+    public static String getDefaultPath() {
+        return defaultPath;
+    }
+
+    public static void setDefaultPath(String defaultPath) {
+        DictionaryRegistry.defaultPath = defaultPath;
+    }
+
+    public static Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the representation of dictionaries loaded from now on. Dictionaries that are
+     * already loaded keep their representation until they are unloaded.
+     *
+     * @param format of dictionaries loaded in the future.
+     */
+    public static void setFormat(Format format) {
+        DictionaryRegistry.format = format;
+    }
+
+    public static File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Sets the directory of the cache files of {@link Format#MAPPED_DAWG}.
+     *
+     * @param cacheDirectory directory in which compiled dictionaries are kept.
+     */
+    public static void setCacheDirectory(File cacheDirectory) {
+        DictionaryRegistry.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Checks if a dictionary is currently loaded.
+     *
+     * @param path of the dictionary resource.
+     * @return true if the dictionary is loaded.
+     */
+    public static boolean isLoaded(String path) {
+        return dictionaries.containsKey(path);
+    }
+
+    /**
+     * Removes a dictionary from the registry, so that its memory can be reclaimed once
+     * no spell checker references it anymore.
+     *
+     * @param path of the dictionary resource.
+     * @return true if the dictionary was loaded.
+     */
+    public static boolean unload(String path) {
+        return dictionaries.remove(path) != null;
+    }
+
+    /**
+     * Loads the resource at a path and adds each line as word to a dictionary, or parses
+     * it together with its affix file. If the resource can't be read, the dictionary is
+     * empty.
+     */
+    private static IDictionary load(String path) {
+        if (path.endsWith(AFFIX_DICTIONARY_EXTENSION)) {
+            try {
+                String affixPath = path.substring(0, path.length() - AFFIX_DICTIONARY_EXTENSION.length()) +
+                        AFFIX_FILE_EXTENSION;
+                return AffixDictionary.parse(readResource(affixPath), readResource(path));
+            } catch (IOException e) {
+                System.out.println("Can't load dictionary. " + e.getMessage());
+                return new WordSetDictionary(new ArrayList<>());
+            }
+        }
+
+        if (format == Format.MAPPED_DAWG) {
+            try {
+                return loadMapped(path);
+            } catch (IOException e) {
+                System.out.println("Can't use dictionary cache. " + e.getMessage());
+            }
+        }
+
+        byte[] source;
+        try {
+            source = readResource(path);
+        } catch (IOException e) {
+            System.out.println("Can't load dictionary. " + e.getMessage());
+            source = new byte[0];
+        }
+        return format == Format.WORD_SET ? new WordSetDictionary(parseWords(source)) : Dawg.build(parseWords(source));
+    }
+
+    /**
+     * Maps the cache file of a dictionary. The cache file is named after the resolved
+     * location of the resource, so equally named dictionaries in different places get
+     * different cache files. The source is only read if its size or modification time
+     * changed since the cache file was written.
+     */
+    private static Dawg loadMapped(String path) throws IOException {
+        URL url = getResource(path);
+        String location = url.toExternalForm();
+        File cacheFile = new File(cacheDirectory,
+                getName(path) + "-" + Integer.toHexString(location.hashCode()) + DictionaryCache.FILE_EXTENSION);
+
+        URLConnection connection = url.openConnection();
+        long size;
+        long modified;
+        try (InputStream ignored = connection.getInputStream()) {
+            size = connection.getContentLengthLong();
+            modified = connection.getLastModified();
+        }
+        return DictionaryCache.load(cacheFile, size, modified, () -> readResource(path),
+                source -> Dawg.build(parseWords(source)));
+    }
+
+    /**
+     * Returns the location of a resource on the classpath or, if there is none, of a
+     * file at the path.
+     */
+    private static URL getResource(String path) throws IOException {
+        URL url = DictionaryRegistry.class.getResource(path);
+        if (url != null) {
+            return url;
+        }
+        File file = new File(path);
+        if (!file.isFile()) {
+            throw new IOException("Resource not found: " + path);
+        }
+        return file.toURI().toURL();
+    }
+
+    private static byte[] readResource(String path) throws IOException {
+        try (InputStream in = getResource(path).openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Splits the source of a dictionary into its lines, which are the words.
+     */
+    private static List<String> parseWords(byte[] source) {
+        List<String> words = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(source)))) {
+            String word;
+            while ((word = br.readLine()) != null) {
+                words.add(word);
+            }
+        } catch (IOException e) {
+            System.out.println("Can't load dictionary. " + e.getMessage());
+        }
+        return words;
+    }
+
+    /**
+     * Returns the file name of a resource path without extension.
+     */
+    private static String getName(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        int extension = name.lastIndexOf('.');
+        return extension > 0 ? name.substring(0, extension) : name;
+    }
+}
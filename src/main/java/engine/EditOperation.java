@@ -0,0 +1,138 @@
+package engine;
+
+/**
+ * This class describes a single edit of the Engine state as needed to undo and
+ * redo it: at an offset, a text was removed and another text was inserted, and the
+ * cursor and selection changed from one state to another.
+ *
+ * An EditOperation only stores the changed text, so its size is proportional to the
+ * edit and not to the length of the text. Its inverse restores the state before the edit.
+ */
+public class EditOperation {
+    private final int offset;
+    private final String removedText;
+    private final String insertedText;
+
+    private final int cursorBefore;
+    private final int cursorAfter;
+
+    /** Active selections before and after the edit, null if no text was selected. */
+    private final Selection selectionBefore;
+    private final Selection selectionAfter;
+
+    /**
+     * @param offset position at which text was removed and inserted
+     * @param removedText text removed at offset
+     * @param insertedText text inserted at offset after the removal
+     * @param cursorBefore cursor position before the edit
+     * @param cursorAfter cursor position after the edit
+     * @param selectionBefore active selection before the edit or null
+     * @param selectionAfter active selection after the edit or null
+     */
+    public EditOperation(int offset, String removedText, String insertedText,
+                         int cursorBefore, int cursorAfter,
+                         Selection selectionBefore, Selection selectionAfter) {
+        this.offset = offset;
+        this.removedText = removedText;
+        this.insertedText = insertedText;
+        this.cursorBefore = cursorBefore;
+        this.cursorAfter = cursorAfter;
+        this.selectionBefore = selectionBefore;
+        this.selectionAfter = selectionAfter;
+    }
+
+    /**
+     * Returns the edit that reverts this edit.
+     *
+     * @return the inverse EditOperation.
+     */
+    public EditOperation inverse() {
+        return new EditOperation(offset, insertedText, removedText,
+                cursorAfter, cursorBefore, selectionAfter, selectionBefore);
+    }
+
+    /**
+     * Merges this edit with an edit that directly follows it, so that both can be undone
+     * in one step. Edits are merged if they continue typing, BACK_SPACE or DELETE at the
+     * position where this edit ended, each with a single character. Like in most editors
+     * a new word starts a new undo step, i.e. edits are not merged if the previous
+     * character is a whitespace character and the next one isn't.
+     *
+     * @param next edit that was applied right after this edit.
+     * @return the merged edit or null if the edits can't be merged.
+     */
+    public EditOperation merge(EditOperation next) {
+        if (next.selectionBefore != null || next.cursorBefore != cursorAfter) {
+            return null;
+        }
+        boolean isTyping = next.removedText.isEmpty() && next.insertedText.length() == 1;
+        boolean isDeleting = next.insertedText.isEmpty() && next.removedText.length() == 1;
+
+        /** Typing continues at the end of the inserted text. */
+        if (isTyping && !insertedText.isEmpty() &&
+                next.offset == offset + insertedText.length() &&
+                !startsNewWord(insertedText, next.insertedText)) {
+            return new EditOperation(offset, removedText, insertedText + next.insertedText,
+                    cursorBefore, next.cursorAfter, selectionBefore, next.selectionAfter);
+        }
+
+        if (isDeleting && insertedText.isEmpty() && !removedText.isEmpty()) {
+            /** BACK_SPACE removes the character before the removed text. */
+            if (next.offset + 1 == offset && !startsNewWord(next.removedText, removedText)) {
+                return new EditOperation(next.offset, next.removedText + removedText, "",
+                        cursorBefore, next.cursorAfter, selectionBefore, next.selectionAfter);
+            }
+            /** DELETE removes the character after the removed text. */
+            if (next.offset == offset && !startsNewWord(removedText, next.removedText)) {
+                return new EditOperation(offset, removedText + next.removedText, "",
+                        cursorBefore, next.cursorAfter, selectionBefore, next.selectionAfter);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a text starts a new word when it is written after another text.
+     */
+    private static boolean startsNewWord(String before, String after) {
+        return Buffer.isWhitespaceCharacter(before.charAt(before.length() - 1)) &&
+                !Buffer.isWhitespaceCharacter(after.charAt(0));
+    }
+
+    /**
+     * Checks if the edit changes the text.
+     *
+     * @return true if text was removed or inserted.
+     */
+    public boolean changesText() {
+        return !removedText.isEmpty() || !insertedText.isEmpty();
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public String getRemovedText() {
+        return removedText;
+    }
+
+    public String getInsertedText() {
+        return insertedText;
+    }
+
+    public int getCursorBefore() {
+        return cursorBefore;
+    }
+
+    public int getCursorAfter() {
+        return cursorAfter;
+    }
+
+    public Selection getSelectionBefore() {
+        return selectionBefore;
+    }
+
+    public Selection getSelectionAfter() {
+        return selectionAfter;
+    }
+}
@@ -7,12 +7,17 @@ import engine.interfaces.IEngine;
 import engine.interfaces.MementoOriginator;
 import engine.interfaces.Observable;
 import io.FileIO;
+import io.MacroFile;
+import io.MacroReader;
+import io.UndoJournal;
 import org.assertj.core.util.VisibleForTesting;
 
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * This class represents the backend (engine) of the text editor. It's main
@@ -53,6 +58,25 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      */
     private SpellCheckModule spellCheckModule;
 
+    /**
+     * Suggests correctly spelled words for misspelled words. Its index is built in the
+     * background when suggestions are requested for the first time.
+     */
+    private SuggestionModule suggestionModule;
+
+    /**
+     * Runs the spell checks that are triggered by changes of the text on a background
+     * thread, so that editing doesn't wait for the whole text to be checked.
+     */
+    private AsyncSpellChecker asyncSpellChecker;
+
+    /**
+     * Executes the delivery of background spell check results. By default results are
+     * delivered on the spell check thread. A GUI should pass the executor of its event
+     * thread, e.g. {@code SwingUtilities::invokeLater}.
+     */
+    private Executor spellCheckResultExecutor = Runnable::run;
+
     /**
      * Represents the current state of the text content.
      */
@@ -84,12 +108,65 @@ public class Engine implements IEngine, Observable, MementoOriginator {
     /**
      * Contains results of a spell check.
      */
-    private List<Selection> misspelledWordSelections;
+    private volatile List<Selection> misspelledWordSelections;
+
+    /**
+     * Misspelled words of the current text as ranges that are updated incrementally for
+     * every change of the text. The object is also used as lock because background
+     * spell check results may be delivered on another thread.
+     */
+    private MisspelledRanges misspelledRanges = new MisspelledRanges(0);
+
+    /**
+     * Version of the text content. It is incremented by one for every change of the
+     * text and passed to observers with every {@link TextChange}.
+     */
+    private volatile long documentVersion = 0;
+
+    /**
+     * Indicates if the undo history of opened files is kept in an {@link UndoJournal}
+     * next to the file. It can be enabled with the system property {@code undo.journal}.
+     */
+    private boolean isUndoJournalEnabled = Boolean.getBoolean("undo.journal");
+
+    /** File whose undo history is kept in the journal of the {@link Engine#undoModule}. */
+    private File journaledFile;
+
+    /**
+     * Indicates if a macro is replayed as a transaction. Meanwhile no undo steps are
+     * saved and observers are not notified, see {@link Engine#replayRecording()}.
+     */
+    private boolean isInTransaction = false;
+
+    /** Indicates if a complete spell check was requested during the transaction. */
+    private boolean isSpellCheckDeferred = false;
+
+    /**
+     * Indicates if the text is spell checked automatically after every change. Headless
+     * Engines that nobody looks at can disable it.
+     */
+    private boolean isSpellCheckEnabled = true;
+
+    /**
+     * Indicates if edits are saved as undo steps. Headless Engines whose result is only
+     * saved can disable it.
+     */
+    private boolean isUndoEnabled = true;
 
     /**
      * Constructor instantiates all instance objects.
      */
     public Engine() {
+        this(new SpellCheckModule());
+    }
+
+    /**
+     * Constructor that uses an existing spell checker, so that many Engines can share
+     * one loaded dictionary.
+     *
+     * @param spellCheckModule used to check the text of this Engine.
+     */
+    public Engine(SpellCheckModule spellCheckModule) {
         buffer = new Buffer();
         clipboard = new Buffer();
         selection = new Selection();
@@ -97,7 +174,9 @@ public class Engine implements IEngine, Observable, MementoOriginator {
         observers = new ArrayList<>();
         recordModule = new RecordModule();
         undoModule = new UndoModule();
-        spellCheckModule = new SpellCheckModule();
+        this.spellCheckModule = spellCheckModule;
+        suggestionModule = SuggestionModule.forDictionary(spellCheckModule.getDictionary());
+        asyncSpellChecker = new AsyncSpellChecker(spellCheckModule);
     }
 
     /************************************************************
@@ -110,18 +189,49 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      * @param c character to be inserted.
      */
     public void insertChar(char c) {
+        int changeOffset = getSelectionStart();
+        int removedLength = getSelectionLength();
+        int cursorBefore = cursorPosition;
+        Selection selectionBefore = getActiveSelection();
+        String removedText = getSelectedText();
         deleteSelectionIfExists(selection);
 
         /** Insert typed character */
         buffer.insertAtPosition(c, cursorPosition);
         cursorPosition++;
-        undoModule.save(createMemento());
+        saveUndoStep(changeOffset, removedText, String.valueOf(c), cursorBefore, selectionBefore);
 
         /**
          * Notify observers about the changed elements between old state and new state.
          * In this case, by typing a character the text and cursor position changes.
          */
-        notifyTextChange();
+        notifyTextChange(createTextChange(changeOffset, removedLength, String.valueOf(c)));
+        notifyCursorChange();
+    }
+
+    /**
+     * Inserts a text at the cursor position of the current Engine's state. The effect is
+     * the same as inserting its characters one by one with {@link Engine#insertChar(char)},
+     * but the text is inserted at once and saved as one undo step.
+     *
+     * @param text to be inserted.
+     */
+    public void insertText(String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        int changeOffset = getSelectionStart();
+        int removedLength = getSelectionLength();
+        int cursorBefore = cursorPosition;
+        Selection selectionBefore = getActiveSelection();
+        String removedText = getSelectedText();
+        deleteSelectionIfExists(selection);
+
+        buffer.insertAtPosition(Buffer.wrap(text.toCharArray()), cursorPosition);
+        cursorPosition += text.length();
+        saveUndoStep(changeOffset, removedText, text, cursorBefore, selectionBefore);
+
+        notifyTextChange(createTextChange(changeOffset, removedLength, text));
         notifyCursorChange();
     }
 
@@ -137,17 +247,26 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      * @param delDirection an abstraction that determines if BACK_SPACE or DELETE was pressed by the user.
      */
     public void deleteInDirection(int delDirection) {
+        int changeOffset = getSelectionStart();
+        int removedLength = getSelectionLength();
+        int cursorBefore = cursorPosition;
+        Selection selectionBefore = getActiveSelection();
+        String removedText = getSelectedText();
+
         /** If there is an active selection, only delete that. */
         if (deleteSelectionIfExists(selection)) {
-            notifyTextChange();
+            notifyTextChange(createTextChange(changeOffset, removedLength, ""));
             notifyCursorChange();
         } else if (delDirection == DeleteCommand.DEL_FORWARDS) {
             /**
              * DELETE was used, so the character at {@link Engine#cursorPosition} should be deleted.
-             * cursorPosition doesn't change.
+             * cursorPosition doesn't change. At the end of the text there is nothing to delete.
              */
-            buffer.deleteAtPosition(cursorPosition);
-            notifyTextChange();
+            if (cursorPosition < buffer.getSize()) {
+                removedText = String.valueOf(buffer.getCharAtPosition(cursorPosition));
+                buffer.deleteAtPosition(cursorPosition);
+                notifyTextChange(createTextChange(cursorPosition, 1, ""));
+            }
             notifyCursorChange();
         } else if (delDirection == DeleteCommand.DEL_BACKWARDS) {
             /**
@@ -155,6 +274,10 @@ public class Engine implements IEngine, Observable, MementoOriginator {
              * {@link Engine#cursorPosition}-1 should be deleted.
              * {@link Engine#cursorPosition} is decremented.
              */
+            if (cursorPosition > 0) {
+                removedText = String.valueOf(buffer.getCharAtPosition(cursorPosition - 1));
+                changeOffset = cursorPosition - 1;
+            }
             buffer.deleteAtPosition(cursorPosition - 1);
 
             /**
@@ -164,11 +287,11 @@ public class Engine implements IEngine, Observable, MementoOriginator {
              */
             if (cursorPosition > 0) {
                 cursorPosition--;
-                notifyTextChange();
+                notifyTextChange(createTextChange(cursorPosition, 1, ""));
                 notifyCursorChange();
             }
         }
-        undoModule.save(createMemento());
+        saveUndoStep(changeOffset, removedText, "", cursorBefore, selectionBefore);
     }
 
     /**
@@ -177,6 +300,9 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      * @param position new cursor position that leads to a state transformation.
      */
     public void updateCursor(int position) {
+        /** Typing after moving the cursor starts a new undo step. */
+        undoModule.endGroup();
+
         cursorPosition = position;
         isTextSelected = false;
         selection.clear();
@@ -193,6 +319,8 @@ public class Engine implements IEngine, Observable, MementoOriginator {
     public void updateSelection(int base, int end) {
         /** Make sure it is a real selection where both provided indexes differ from each other. */
         if (base != end) {
+            undoModule.endGroup();
+
             /** Assign selection properties. */
             selection.setSelectionBase(base);
             selection.setSelectionEnd(end);
@@ -261,20 +389,36 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      * Copies selected text in the clipboard and removes selected text from {@link Engine#buffer}.
      */
     public void cutSelection() {
-        copySelection();
-        deleteSelectionIfExists(selection);
+        int changeOffset = getSelectionStart();
+        int removedLength = getSelectionLength();
+        int cursorBefore = cursorPosition;
+        Selection selectionBefore = getActiveSelection();
+        String removedText = getSelectedText();
 
-        notifyTextChange();
+        copySelection();
+        if (deleteSelectionIfExists(selection)) {
+            notifyTextChange(createTextChange(changeOffset, removedLength, ""));
+        }
         notifyCursorChange();
 
-        undoModule.save(createMemento());
+        saveUndoStep(changeOffset, removedText, "", cursorBefore, selectionBefore);
     }
 
     /**
      * Pastes content of the clipboard to {@link Engine#buffer} at {@link Engine#cursorPosition}.
      */
     public void pasteClipboard() {
+        int changeOffset = getSelectionStart();
+        int cursorBefore = cursorPosition;
+        Selection selectionBefore = getActiveSelection();
+        String removedText = "";
+        String insertedText = "";
+
         if (clipboard != null && !clipboard.isEmpty()) {
+            int removedLength = getSelectionLength();
+            removedText = getSelectedText();
+            insertedText = clipboard.toString();
+
             /**
              * Existing selections are overwritten by pasting. Therefore we have to delete
              * the selection first.
@@ -286,24 +430,20 @@ public class Engine implements IEngine, Observable, MementoOriginator {
 
             /** Places the cursor at the end of the pasted text. */
             cursorPosition += clipboardSize;
+
+            notifyTextChange(createTextChange(changeOffset, removedLength, insertedText));
         }
 
-        notifyTextChange();
         notifyCursorChange();
 
-        undoModule.save(createMemento());
+        saveUndoStep(changeOffset, removedText, insertedText, cursorBefore, selectionBefore);
     }
 
     /**
      * Recovers the most recent state (Memento) of the engine if applicable.
      */
     public void undoCommand() {
-        Memento memento = undoModule.undo();
-        recoverMemento(memento);
-
-        notifyTextChange();
-        notifyCursorChange();
-        notifySelectionChange();
+        restoreMemento(undoModule.undo());
     }
 
     /**
@@ -313,10 +453,43 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      * state transformations on the Engine. See also {@link UndoModule}.
      */
     public void redoCommand() {
-        Memento memento = undoModule.redo();
-        recoverMemento(memento);
+        restoreMemento(undoModule.redo());
+    }
 
-        notifyTextChange();
+    /**
+     * Recovers any version of the undo history. Only available if the
+     * {@link Engine#undoModule} keeps a tree of versions, see {@link UndoModule#jumpTo(int)}.
+     *
+     * @param version id of the version to be recovered.
+     */
+    public void jumpToVersion(int version) {
+        restoreMemento(undoModule.jumpTo(version));
+    }
+
+    /**
+     * Recovers a Memento returned by the {@link Engine#undoModule} and notifies the
+     * observers about the changed state. Nothing happens if there is no Memento, e.g.
+     * because there is nothing to undo.
+     *
+     * @param memento to be recovered or null.
+     */
+    private void restoreMemento(Memento memento) {
+        if (memento == null) {
+            return;
+        }
+
+        TextChange change;
+        if (memento.isEdit()) {
+            EditOperation edit = memento.getEdit();
+            change = createTextChange(edit.getOffset(), edit.getRemovedText().length(), edit.getInsertedText());
+            recoverMemento(memento);
+        } else {
+            Buffer previousBuffer = buffer;
+            recoverMemento(memento);
+            change = TextChange.between(previousBuffer, buffer, ++documentVersion);
+        }
+
+        notifyTextChange(change);
         notifyCursorChange();
         notifySelectionChange();
     }
@@ -337,16 +510,124 @@ public class Engine implements IEngine, Observable, MementoOriginator {
 
     /**
      * Replays previously recorded macro if there exists a recorded macro.
+     *
+     * The compiled macro is replayed as a single transaction, see
+     * {@link Engine#replay(Iterator, boolean)}.
      */
     public void replayRecording() {
-        List<Command> commands = recordModule.getReplayList();
-
         /**
          * A null-check for the list is not needed since we make sure in {@link RecordModule}
          * that null is never returned for this method.
          */
-        for (Command command : commands) {
-            command.execute(this);
+        List<Command> commands = recordModule.compile();
+        replay(commands.iterator(), RecordModule.canReplayAsTransaction(commands));
+    }
+
+    /**
+     * Saves the recorded macro to a file, see {@link MacroFile}.
+     *
+     * @param file to which the macro is written.
+     * @throws IOException if the file can't be written.
+     */
+    public void saveRecording(File file) throws IOException {
+        MacroFile.save(recordModule.getReplayList(), file);
+    }
+
+    /**
+     * Replaces the recorded macro by a macro loaded from a file.
+     *
+     * @param file from which the macro is read.
+     * @throws IOException if the file can't be read or isn't a macro file.
+     */
+    public void loadRecording(File file) throws IOException {
+        recordModule.load(MacroFile.load(file));
+    }
+
+    /**
+     * Replays a macro while it is read from a file, so the macro doesn't have to fit into
+     * memory. The recorded macro is not changed.
+     *
+     * If the file turns out to be truncated or corrupt, the commands before the error
+     * have already been executed. Their result is kept and saved as undo step, so it can
+     * be undone like a completely replayed macro.
+     *
+     * @param file from which the macro is read.
+     * @throws IOException if the file can't be read or isn't a complete macro file.
+     */
+    public void replayMacroFile(File file) throws IOException {
+        try (MacroReader reader = MacroFile.openReader(file)) {
+            replay(reader, reader.canReplayAsTransaction());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Executes the commands of a macro.
+     *
+     * If possible the macro is replayed as a single transaction: the intermediate states
+     * are neither saved as undo steps nor sent to observers. Afterwards the whole macro is
+     * saved as one undo step and observers are notified once about the resulting change.
+     *
+     * @param commands of the macro.
+     * @param isTransaction true if the macro can be replayed as a transaction.
+     */
+    private void replay(Iterator<Command> commands, boolean isTransaction) {
+        /** Without undo and observers, nothing needs the result of the transaction. */
+        if (!isTransaction || (!isUndoEnabled && observers.isEmpty())) {
+            commands.forEachRemaining(command -> command.execute(this));
+            return;
+        }
+
+        Buffer textBefore = buffer.getCopy();
+        int cursorBefore = cursorPosition;
+        Selection selectionBefore = getActiveSelection();
+        long versionBefore = documentVersion;
+
+        isInTransaction = true;
+        try {
+            commands.forEachRemaining(command -> command.execute(this));
+        } finally {
+            /**
+             * Also if a command fails, the commands executed before it have changed the
+             * text. Their result is saved and sent like a complete macro, so it can be
+             * undone, before the exception is passed on.
+             */
+            isInTransaction = false;
+            endTransaction(textBefore, cursorBefore, selectionBefore, versionBefore);
+        }
+    }
+
+    /**
+     * Saves the result of a transaction as one undo step and notifies observers about it.
+     *
+     * @param textBefore text before the transaction.
+     * @param cursorBefore cursor position before the transaction.
+     * @param selectionBefore selection before the transaction.
+     * @param versionBefore document version before the transaction.
+     */
+    private void endTransaction(Buffer textBefore, int cursorBefore, Selection selectionBefore, long versionBefore) {
+        /**
+         * Nobody has seen the intermediate versions, so the result is the next version.
+         * Misspelled words known for an intermediate version would match a later version.
+         */
+        documentVersion = versionBefore;
+        synchronized (misspelledRanges) {
+            misspelledRanges.invalidate();
+        }
+        TextChange change = TextChange.between(textBefore, buffer, versionBefore + 1);
+        if (change.getRemovedLength() > 0 || !change.getInsertedText().isEmpty()) {
+            String removedText = change.getRemovedLength() == 0 ? "" : textBefore.getCopy(new Selection(
+                    change.getOffset(), change.getOffset() + change.getRemovedLength())).toString();
+            saveUndoStep(change.getOffset(), removedText, change.getInsertedText(), cursorBefore, selectionBefore);
+            notifyTextChange(createTextChange(change.getOffset(), change.getRemovedLength(), change.getInsertedText()));
+        }
+        notifyCursorChange();
+        notifySelectionChange();
+
+        if (isSpellCheckDeferred) {
+            isSpellCheckDeferred = false;
+            spellCheck();
         }
     }
 
@@ -356,9 +637,77 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      * @param chars list of characters with which the engine needs to be filled.
      */
     public void openFile(List<Character> chars) {
-        buffer = new Buffer(chars);
+        openFile(new Buffer(chars));
+    }
+
+    /**
+     * Pastes the content of a file in the text editor and initializes the state accordingly.
+     * The passed array is used as text without copying it if the storage backend of
+     * Buffer allows it (see {@link Buffer#wrap(char[])}).
+     *
+     * @param chars array of characters with which the engine needs to be filled.
+     */
+    public void openFile(char[] chars) {
+        openFile(Buffer.wrap(chars));
+    }
+
+    /**
+     * Pastes the content of a file in the text editor like {@link Engine#openFile(char[])}.
+     * If undo journals are enabled, the undo history is restored from the journal of the
+     * file, provided that the journal belongs to the content of the file.
+     *
+     * @param chars array of characters with which the engine needs to be filled.
+     * @param file from which the characters were read.
+     */
+    public void openFile(char[] chars, File file) {
+        openFile(Buffer.wrap(chars), file);
+    }
+
+    /**
+     * Pastes the content of a file in the text editor like {@link Engine#openFile(char[], File)}.
+     * The Buffer is used as text, e.g. the result of {@link FileIO#readFile(File)}.
+     *
+     * @param fileBuffer Buffer containing the content of the opened file.
+     * @param file from which the content was read.
+     */
+    public void openFile(Buffer fileBuffer, File file) {
+        openFile(fileBuffer);
+
+        if (!isUndoJournalEnabled || undoModule.getMode() != UndoModule.Mode.OPERATION_LOG) {
+            return;
+        }
+        try {
+            UndoJournal journal = UndoJournal.open(UndoJournal.getJournalFile(file));
+            if (journal.matchesSavedContent(buffer.getSize(), UndoJournal.checksum(buffer))) {
+                journal.setUndoCount(journal.getSavedUndoCount());
+            } else {
+                journal.reset();
+            }
+            undoModule.attachJournal(journal);
+            journaledFile = file;
+        } catch (IOException e) {
+            System.out.println("Error while opening the undo journal.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Replaces the text with an opened file's content and resets cursor and selection.
+     * The Buffer is used as text without copying it, so it must not be modified
+     * afterwards.
+     *
+     * @param fileBuffer Buffer containing the content of the opened file.
+     */
+    public void openFile(Buffer fileBuffer) {
+        buffer = fileBuffer;
         cursorPosition = 0;
         isTextSelected = false;
+        documentVersion++;
+
+        /** The history of the previous text can't be applied to the opened text. */
+        undoModule.clear();
+        undoModule.setInitialState(createMemento());
+        journaledFile = null;
 
         notifyTextChange();
         notifyCursorChange();
@@ -371,7 +720,12 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      */
     public void saveFile(File file) {
         try {
-            FileIO.saveContentToFile(file, buffer.getContent());
+            FileIO.saveContentToFile(file, buffer);
+
+            UndoJournal journal = undoModule.getJournal();
+            if (journal != null && file.equals(journaledFile)) {
+                journal.markSaved(buffer.getSize(), UndoJournal.checksum(buffer));
+            }
         } catch (IOException e) {
             System.out.println("Error while saving buffer content to a file.");
             e.printStackTrace();
@@ -380,18 +734,164 @@ public class Engine implements IEngine, Observable, MementoOriginator {
 
     /**
      * Performs a complete spell check on all words currently written in the text editor.
+     * During a transaction the check is deferred until the transaction ends.
      */
     public void spellCheck() {
+        /**
+         * Intermediate versions of a transaction are discarded afterwards, so the result
+         * would belong to an unknown version. The check runs when the transaction ends.
+         */
+        if (isInTransaction) {
+            isSpellCheckDeferred = true;
+            return;
+        }
+
         /**
          * The {@link Engine#spellCheckModule} expects the current text as input and returns
          * a map of misspelled words. Each entry of the map contains the position (start
          * and end position) and value of a misspelled word.
          */
         misspelledWordSelections = spellCheckModule.getMisspelledWords(buffer);
+        synchronized (misspelledRanges) {
+            misspelledRanges.reset(misspelledWordSelections, documentVersion);
+        }
 
         notifyMisspelledWordsChange(misspelledWordSelections);
     }
 
+    /**
+     * Updates the misspelled words after a change of the text. If the known misspelled
+     * words belong to the text right before the change, only the words touched by the
+     * change are checked again. Otherwise a complete spell check is requested.
+     *
+     * @param change of the text.
+     */
+    private void spellCheck(TextChange change) {
+        if (!isSpellCheckEnabled) {
+            return;
+        }
+        synchronized (misspelledRanges) {
+            if (!misspelledRanges.canApply(change)) {
+                requestSpellCheck();
+                return;
+            }
+            misspelledRanges.applyChange(change, buffer, spellCheckModule);
+            misspelledWordSelections = misspelledRanges.getSelections();
+        }
+        notifyMisspelledWordsChange(misspelledWordSelections);
+    }
+
+    /**
+     * Requests a spell check of the current text on a background thread. The check works
+     * on a snapshot of the text and delivers its result range by range, starting with the
+     * viewport. A result is only applied if the text hasn't changed in the meantime,
+     * otherwise it is discarded since a newer check has been requested.
+     */
+    private void requestSpellCheck() {
+        if (!isSpellCheckEnabled) {
+            return;
+        }
+        asyncSpellChecker.request(buffer.getCopy(), documentVersion, (start, end, ranges, version, isComplete) ->
+                spellCheckResultExecutor.execute(() -> {
+                    List<Selection> selections;
+                    synchronized (misspelledRanges) {
+                        if (version != documentVersion) {
+                            return;
+                        }
+                        misspelledRanges.addCheckedRange(start, end, ranges, version, isComplete);
+                        selections = misspelledRanges.getSelections();
+                        misspelledWordSelections = selections;
+                    }
+                    notifyMisspelledWordsChange(selections);
+                })
+        );
+    }
+
+    /**
+     * Returns suggestions for a misspelled word. Suggestions are only available once the
+     * index of the dictionary has been built in the background, which is started by the
+     * first call of this method.
+     *
+     * @param word to be corrected.
+     * @param maxCount maximum number of returned suggestions.
+     * @return list of suggested words ordered by similarity, which may be empty.
+     */
+    public List<String> getSuggestions(String word, int maxCount) {
+        return suggestionModule.getSuggestions(word, maxCount);
+    }
+
+    /**
+     * Sets the range of the text that is visible to the user. Background spell checks
+     * check this range first and deliver its result before checking the rest of the text.
+     *
+     * @param start of the visible range.
+     * @param end of the visible range (exclusive).
+     */
+    public void setViewport(int start, int end) {
+        asyncSpellChecker.setViewport(start, end);
+    }
+
+    /**
+     * Sets the executor on which results of background spell checks are applied and
+     * observers are notified about them.
+     *
+     * @param executor e.g. the event thread of the GUI.
+     */
+    public void setSpellCheckResultExecutor(Executor executor) {
+        this.spellCheckResultExecutor = executor;
+    }
+
+    /**
+     * Returns the line (0-based) that contains a position in the text. Lines are separated
+     * by '\n'. The lookup uses an index that is updated incrementally on every edit, so it
+     * doesn't scan the text.
+     *
+     * @param position in the text, 0 <= position <= length of the text.
+     * @return the line containing the position.
+     */
+    public int offsetToLine(int position) {
+        return buffer.offsetToLine(position);
+    }
+
+    /**
+     * Returns the position in the text at which a line (0-based) starts.
+     *
+     * @param line 0 <= line < {@link Engine#lineCount()}.
+     * @return position of the first character of the line.
+     */
+    public int lineToOffset(int line) {
+        return buffer.lineToOffset(line);
+    }
+
+    /**
+     * Returns the number of lines in the text.
+     *
+     * @return the number of lines, which is at least 1.
+     */
+    public int lineCount() {
+        return buffer.getLineCount();
+    }
+
+    /**
+     * Returns the length of a line (0-based) including its terminating '\n'.
+     *
+     * @param line 0 <= line < {@link Engine#lineCount()}.
+     * @return the length of the line.
+     */
+    public int lineLength(int line) {
+        return buffer.getLineLength(line);
+    }
+
+    /**
+     * Moves the cursor to the beginning of a line.
+     *
+     * @param line 0-based line, which is clamped to the existing lines.
+     */
+    public void goToLine(int line) {
+        int clampedLine = Math.max(0, Math.min(line, lineCount() - 1));
+        updateCursor(lineToOffset(clampedLine));
+    }
+
     /**
      * Helper method that deletes the currently selected text in case there is a selection.
      *
@@ -413,6 +913,92 @@ public class Engine implements IEngine, Observable, MementoOriginator {
         return false;
     }
 
+    /**
+     * Returns the position at which a change of the text starts: the start of the
+     * selection if a selection is active or the cursor position otherwise.
+     *
+     * @return start position of the next change.
+     */
+    private int getSelectionStart() {
+        if (isTextSelected) {
+            return Math.min(selection.getSelectionBase(), selection.getSelectionEnd());
+        }
+        return cursorPosition;
+    }
+
+    /**
+     * Returns the number of characters an edit replaces because they are selected.
+     *
+     * @return length of the active selection or 0 if there is none.
+     */
+    private int getSelectionLength() {
+        return isTextSelected ? selection.getSelectionSize() : 0;
+    }
+
+    /**
+     * Returns a copy of the active selection.
+     *
+     * @return the copied selection or null if no text is selected.
+     */
+    private Selection getActiveSelection() {
+        return isTextSelected ? selection.getCopy() : null;
+    }
+
+    /**
+     * Returns the selected text.
+     *
+     * @return the selected text or an empty string if no text is selected.
+     */
+    private String getSelectedText() {
+        return isTextSelected ? buffer.getCopy(selection).toString() : "";
+    }
+
+    /**
+     * Saves an undo step after an edit. In {@link UndoModule.Mode#SNAPSHOT} the complete
+     * current state is saved. In {@link UndoModule.Mode#TREE} the complete state is saved
+     * together with the edit, and in {@link UndoModule.Mode#OPERATION_LOG} only the edit.
+     * In both cases only edits that changed the text are saved.
+     *
+     * @param offset at which the text changed.
+     * @param removedText text removed by the edit.
+     * @param insertedText text inserted by the edit.
+     * @param cursorBefore cursor position before the edit.
+     * @param selectionBefore active selection before the edit or null.
+     */
+    private void saveUndoStep(int offset, String removedText, String insertedText,
+                              int cursorBefore, Selection selectionBefore) {
+        if (isInTransaction || !isUndoEnabled) {
+            return;
+        }
+        if (undoModule.getMode() == UndoModule.Mode.SNAPSHOT) {
+            undoModule.save(createMemento());
+            return;
+        }
+
+        EditOperation edit = new EditOperation(offset, removedText, insertedText,
+                cursorBefore, cursorPosition, selectionBefore, getActiveSelection());
+        if (!edit.changesText()) {
+            return;
+        }
+        if (undoModule.getMode() == UndoModule.Mode.TREE) {
+            undoModule.save(createMemento(edit));
+        } else {
+            undoModule.save(new Memento(edit));
+        }
+    }
+
+    /**
+     * Creates a TextChange with the next document version.
+     *
+     * @param offset at which the text changed.
+     * @param removedLength number of removed characters.
+     * @param insertedText text inserted at offset.
+     * @return the created TextChange.
+     */
+    private TextChange createTextChange(int offset, int removedLength, String insertedText) {
+        return new TextChange(offset, removedLength, insertedText, ++documentVersion);
+    }
+
     /**
      * Recovers a given Memento object such that the new Engine state reflects
      * the given Memento.
@@ -420,6 +1006,22 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      * @param memento object to be restored.
      */
     public void recoverMemento(Memento memento) {
+        /** A Memento with an edit is applied to the current state instead of replacing it. */
+        if (memento.isEdit()) {
+            EditOperation edit = memento.getEdit();
+            int offset = edit.getOffset();
+            if (!edit.getRemovedText().isEmpty()) {
+                buffer.deleteInterval(offset, offset + edit.getRemovedText().length());
+            }
+            if (!edit.getInsertedText().isEmpty()) {
+                buffer.insertAtPosition(Buffer.wrap(edit.getInsertedText().toCharArray()), offset);
+            }
+            this.cursorPosition = edit.getCursorAfter();
+            this.isTextSelected = edit.getSelectionAfter() != null;
+            this.selection = isTextSelected ? edit.getSelectionAfter().getCopy() : new Selection();
+            return;
+        }
+
         this.buffer = memento.getBuffer();
         this.clipboard = memento.getClipboard();
         this.selection = memento.getSelection();
@@ -441,6 +1043,22 @@ public class Engine implements IEngine, Observable, MementoOriginator {
         );
     }
 
+    /**
+     * Creates a Memento of the current state that also knows the edit which led to it.
+     *
+     * @param edit that led to the current state.
+     * @return created Memento object.
+     */
+    private Memento createMemento(EditOperation edit) {
+        return new Memento(
+                buffer.getCopy(),
+                clipboard.getCopy(),
+                selection.getCopy(),
+                cursorPosition,
+                edit
+        );
+    }
+
     /**
      * Registers an observer so that he is updated in the future when relevant events happen.
      *
@@ -465,8 +1083,26 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      * providing the new state of the text content.
      */
     public void notifyTextChange() {
+        if (isInTransaction) {
+            return;
+        }
         observers.forEach(o -> o.updateText(buffer.toString()));
-        spellCheck();
+        requestSpellCheck();
+    }
+
+    /**
+     * Notifies each registered observer that the text content has been changed by providing
+     * only the change. Observers can apply it in O(size of the change) instead of replacing
+     * the whole text.
+     *
+     * @param change describing the modification of the text.
+     */
+    public void notifyTextChange(TextChange change) {
+        if (isInTransaction) {
+            return;
+        }
+        observers.forEach(o -> o.updateText(change));
+        spellCheck(change);
     }
 
     /**
@@ -474,6 +1110,9 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      * providing the new state of the cursor.
      */
     public void notifyCursorChange() {
+        if (isInTransaction) {
+            return;
+        }
         observers.forEach(o -> o.updateCursor(cursorPosition));
     }
 
@@ -482,6 +1121,9 @@ public class Engine implements IEngine, Observable, MementoOriginator {
      * providing the new state of the selection.
      */
     public void notifySelectionChange() {
+        if (isInTransaction) {
+            return;
+        }
         observers.forEach(o -> o.updateSelection(isTextSelected, selection));
     }
 
@@ -497,6 +1139,10 @@ public class Engine implements IEngine, Observable, MementoOriginator {
         return recordModule;
     }
 
+    public UndoModule getUndoModule() {
+        return undoModule;
+    }
+
     @VisibleForTesting
     public int getCursorPosition() {
         return cursorPosition;
@@ -512,9 +1158,41 @@ public class Engine implements IEngine, Observable, MementoOriginator {
         return buffer;
     }
 
+    /**
+     * Enables or disables the automatic spell check after every change of the text. An
+     * explicit {@link Engine#spellCheck()} is always performed.
+     *
+     * @param isSpellCheckEnabled false to disable the automatic spell check.
+     */
+    public void setSpellCheckEnabled(boolean isSpellCheckEnabled) {
+        this.isSpellCheckEnabled = isSpellCheckEnabled;
+    }
+
+    /**
+     * Enables or disables saving edits as undo steps.
+     *
+     * @param isUndoEnabled false to not save undo steps.
+     */
+    public void setUndoEnabled(boolean isUndoEnabled) {
+        this.isUndoEnabled = isUndoEnabled;
+    }
+
+    public void setUndoJournalEnabled(boolean isUndoJournalEnabled) {
+        this.isUndoJournalEnabled = isUndoJournalEnabled;
+    }
+
+    @VisibleForTesting
+    public void setUndoModule(UndoModule undoModule) {
+        this.undoModule = undoModule;
+        undoModule.setInitialState(createMemento());
+    }
+
     @VisibleForTesting
     public void setBuffer(Buffer buffer) {
         this.buffer = buffer;
+        synchronized (misspelledRanges) {
+            misspelledRanges.invalidate();
+        }
     }
 
     @VisibleForTesting
@@ -542,6 +1220,15 @@ public class Engine implements IEngine, Observable, MementoOriginator {
         return observers;
     }
 
+    /**
+     * Returns the version of the text content which is incremented with every change.
+     *
+     * @return the current document version.
+     */
+    public long getDocumentVersion() {
+        return documentVersion;
+    }
+
     public List<Selection> getMisspelledWordSelections() {
         return misspelledWordSelections;
     }
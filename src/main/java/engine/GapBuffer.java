@@ -0,0 +1,155 @@
+package engine;
+
+import engine.interfaces.ITextStorage;
+
+/**
+ * This class stores the characters of a Buffer in a gap buffer: a single char
+ * array with an unused region (the gap) that is kept at the position of the most
+ * recent edit.
+ *
+ * Inserting and deleting at the gap only moves the gap boundaries, so typing and
+ * deleting next to the cursor is O(1) amortized. Moving the gap to a new position
+ * costs as many array moves as characters lie between the old and the new position,
+ * which is cheap for the local edits a text editor mostly performs. Each character
+ * costs 2 bytes instead of a boxed Character in a list.
+ */
+public class GapBuffer implements ITextStorage {
+    /** Capacity of the backing array of an empty gap buffer. */
+    private static final int MIN_CAPACITY = 16;
+
+    /** Backing array which contains the text before and after the gap. */
+    private char[] chars;
+
+    /** Index of the first unused element in {@link GapBuffer#chars}. */
+    private int gapStart;
+
+    /** Index of the first used element after the gap in {@link GapBuffer#chars}. */
+    private int gapEnd;
+
+    public GapBuffer() {
+        this(new char[0], 0, 0);
+    }
+
+    /**
+     * Creates a gap buffer that contains a range of characters of an array. The
+     * characters are copied, so later modifications of the array don't affect the
+     * gap buffer.
+     *
+     * @param source array containing the initial text.
+     * @param offset index of the first character in {@code source}.
+     * @param count number of characters to be copied.
+     */
+    public GapBuffer(char[] source, int offset, int count) {
+        chars = new char[Math.max(MIN_CAPACITY, count + count / 8)];
+        System.arraycopy(source, offset, chars, 0, count);
+        gapStart = count;
+        gapEnd = chars.length;
+    }
+
+    public int length() {
+        return chars.length - gapLength();
+    }
+
+    public char charAt(int position) {
+        return position < gapStart ? chars[position] : chars[position + gapLength()];
+    }
+
+    public void insert(int position, char c) {
+        ensureGap(1);
+        moveGap(position);
+        chars[gapStart++] = c;
+    }
+
+    public void insert(int position, char[] source, int offset, int count) {
+        ensureGap(count);
+        moveGap(position);
+        System.arraycopy(source, offset, chars, gapStart, count);
+        gapStart += count;
+    }
+
+    public void delete(int start, int end) {
+        moveGap(start);
+        gapEnd += end - start;
+
+        /** Give memory back after large deletions, e.g. after the whole text was cut. */
+        if (chars.length > MIN_CAPACITY && length() < chars.length / 4) {
+            resize(Math.max(MIN_CAPACITY, length() * 2));
+        }
+    }
+
+    public void getChars(int start, int end, char[] dst, int dstBegin) {
+        if (end <= gapStart) {
+            System.arraycopy(chars, start, dst, dstBegin, end - start);
+        } else if (start >= gapStart) {
+            System.arraycopy(chars, start + gapLength(), dst, dstBegin, end - start);
+        } else {
+            /** The range spans the gap, so copy both parts separately. */
+            int firstPart = gapStart - start;
+            System.arraycopy(chars, start, dst, dstBegin, firstPart);
+            System.arraycopy(chars, gapEnd, dst, dstBegin + firstPart, end - gapStart);
+        }
+    }
+
+    public GapBuffer copy() {
+        return copy(0, length());
+    }
+
+    public GapBuffer copy(int start, int end) {
+        char[] range = new char[end - start];
+        getChars(start, end, range, 0);
+        return new GapBuffer(range, 0, range.length);
+    }
+
+    private int gapLength() {
+        return gapEnd - gapStart;
+    }
+
+    /**
+     * Moves the gap such that it starts at the given position. Only the characters
+     * between the current gap start and the new position are moved.
+     *
+     * @param position new start of the gap.
+     */
+    private void moveGap(int position) {
+        if (position < gapStart) {
+            int count = gapStart - position;
+            System.arraycopy(chars, position, chars, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (position > gapStart) {
+            int count = position - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    /**
+     * Makes sure that the gap is large enough to take the given number of characters.
+     * The backing array grows geometrically to keep insertions O(1) amortized.
+     *
+     * @param required number of characters that are going to be inserted.
+     */
+    private void ensureGap(int required) {
+        if (gapLength() < required) {
+            resize(Math.max(chars.length * 2, length() + required + MIN_CAPACITY));
+        }
+    }
+
+    /**
+     * Allocates a new backing array of the given capacity and moves the text
+     * before and after the gap into it.
+     *
+     * @param capacity of the new backing array, must be >= length().
+     */
+    private void resize(int capacity) {
+        char[] resized = new char[capacity];
+        int tailLength = chars.length - gapEnd;
+
+        System.arraycopy(chars, 0, resized, 0, gapStart);
+        System.arraycopy(chars, gapEnd, resized, capacity - tailLength, tailLength);
+
+        chars = resized;
+        gapEnd = capacity - tailLength;
+    }
+}
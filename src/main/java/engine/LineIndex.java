@@ -0,0 +1,361 @@
+package engine;
+
+import engine.interfaces.ITextStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class maps character offsets of a text to lines and vice versa. A line ends
+ * after a '\n' character, so a text with n newlines has n + 1 lines.
+ *
+ * The index stores the length of every line (including its '\n') in blocks of at most
+ * {@link LineIndex#BLOCK_CAPACITY} lines. Two Fenwick trees over the blocks hold the
+ * number of characters and lines per block, so that the block of a line or offset is
+ * found in O(log blocks) and the position within the block with a short scan.
+ *
+ * The index is updated incrementally for every insertion and deletion. An edit only
+ * touches the lines it affects and updates both Fenwick trees in O(log blocks). Only
+ * when a block overflows or becomes empty, the Fenwick trees are rebuilt, which is
+ * O(blocks).
+ */
+public class LineIndex {
+    /** Maximum number of lines stored in one block. */
+    private static final int BLOCK_CAPACITY = 1024;
+
+    /** Blocks of line lengths in document order. Never empty. */
+    private List<Block> blocks;
+
+    /** Fenwick tree over the number of characters per block (1-based). */
+    private int[] charTree;
+
+    /** Fenwick tree over the number of lines per block (1-based). */
+    private int[] lineTree;
+
+    private int charCount;
+    private int lineCount;
+
+    /**
+     * Creates the index of an empty text which consists of one empty line.
+     */
+    public LineIndex() {
+        this(new int[]{0}, 1);
+    }
+
+    private LineIndex(int[] lineLengths, int count) {
+        blocks = new ArrayList<>();
+        for (int start = 0; start < count; start += BLOCK_CAPACITY / 2) {
+            int end = Math.min(count, start + BLOCK_CAPACITY / 2);
+            blocks.add(new Block(lineLengths, start, end));
+        }
+        rebuildTrees();
+    }
+
+    /**
+     * Creates the index of a text by scanning it once for newlines.
+     *
+     * @param text to be indexed.
+     * @return the created index.
+     */
+    static LineIndex build(ITextStorage text) {
+        LineLengths lengths = new LineLengths();
+        char[] chunk = new char[8192];
+        int lineLength = 0;
+
+        for (int start = 0; start < text.length(); start += chunk.length) {
+            int end = Math.min(text.length(), start + chunk.length);
+            text.getChars(start, end, chunk, 0);
+            for (int i = 0; i < end - start; i++) {
+                lineLength++;
+                if (chunk[i] == '\n') {
+                    lengths.add(lineLength);
+                    lineLength = 0;
+                }
+            }
+        }
+        lengths.add(lineLength);
+
+        return new LineIndex(lengths.values, lengths.count);
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the line that contains the character at an offset. The offset after the
+     * last character belongs to the last line.
+     *
+     * @param offset in the text, 0 <= offset <= length of the text.
+     * @return the 0-based line containing the offset.
+     */
+    public int offsetToLine(int offset) {
+        if (offset < 0 || offset > charCount) {
+            throw new IndexOutOfBoundsException("Invalid offset: " + offset);
+        }
+        if (offset == charCount) {
+            return lineCount - 1;
+        }
+        int blockIndex = findInTree(charTree, offset);
+        int remaining = offset - prefixSum(charTree, blockIndex);
+        Block block = blocks.get(blockIndex);
+
+        int line = 0;
+        while (remaining >= block.lengths[line]) {
+            remaining -= block.lengths[line];
+            line++;
+        }
+        return prefixSum(lineTree, blockIndex) + line;
+    }
+
+    /**
+     * Returns the offset of the first character of a line.
+     *
+     * @param line 0-based line, 0 <= line < getLineCount().
+     * @return offset at which the line starts.
+     */
+    public int lineToOffset(int line) {
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("Invalid line: " + line);
+        }
+        int blockIndex = findInTree(lineTree, line);
+        int lineInBlock = line - prefixSum(lineTree, blockIndex);
+        Block block = blocks.get(blockIndex);
+
+        int offset = prefixSum(charTree, blockIndex);
+        for (int i = 0; i < lineInBlock; i++) {
+            offset += block.lengths[i];
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the length of a line including its terminating '\n'.
+     *
+     * @param line 0-based line, 0 <= line < getLineCount().
+     * @return length of the line.
+     */
+    public int getLineLength(int line) {
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("Invalid line: " + line);
+        }
+        int blockIndex = findInTree(lineTree, line);
+        return blocks.get(blockIndex).lengths[line - prefixSum(lineTree, blockIndex)];
+    }
+
+    /**
+     * Updates the index after characters have been inserted into the text.
+     *
+     * @param offset at which the characters were inserted.
+     * @param chars array containing the inserted characters.
+     * @param start index of the first inserted character in {@code chars}.
+     * @param count number of inserted characters.
+     */
+    void insert(int offset, char[] chars, int start, int count) {
+        int line = offsetToLine(offset);
+        int lineLength = getLineLength(line);
+        int head = offset - lineToOffset(line);
+
+        /** Split the affected line at every inserted newline. */
+        LineLengths lengths = new LineLengths();
+        int current = head;
+        for (int i = start; i < start + count; i++) {
+            current++;
+            if (chars[i] == '\n') {
+                lengths.add(current);
+                current = 0;
+            }
+        }
+        lengths.add(current + lineLength - head);
+
+        replaceLines(line, line, lengths);
+    }
+
+    /**
+     * Updates the index after the characters in the range [start, end) have been
+     * deleted from the text. The lines containing start and end are merged.
+     *
+     * @param start of the deleted range.
+     * @param end of the deleted range.
+     */
+    void delete(int start, int end) {
+        int firstLine = offsetToLine(start);
+        int lastLine = offsetToLine(end);
+        int head = start - lineToOffset(firstLine);
+        int tail = lineToOffset(lastLine) + getLineLength(lastLine) - end;
+
+        LineLengths lengths = new LineLengths();
+        lengths.add(head + tail);
+        replaceLines(firstLine, lastLine, lengths);
+    }
+
+    /**
+     * Replaces the lines firstLine..lastLine (inclusive) by lines of new lengths.
+     */
+    private void replaceLines(int firstLine, int lastLine, LineLengths lengths) {
+        int blockIndex = findInTree(lineTree, firstLine);
+        int blockStart = prefixSum(lineTree, blockIndex);
+        Block block = blocks.get(blockIndex);
+        int removed = lastLine - firstLine + 1;
+
+        /** Common case: the edit stays within a block that has enough room. */
+        if (lastLine - blockStart < block.count &&
+                block.count - removed + lengths.count <= BLOCK_CAPACITY) {
+            int charDelta = block.replace(firstLine - blockStart, removed, lengths);
+            add(charTree, blockIndex, charDelta);
+            add(lineTree, blockIndex, lengths.count - removed);
+            charCount += charDelta;
+            lineCount += lengths.count - removed;
+            return;
+        }
+
+        /** Otherwise rebuild the affected blocks from the line lengths around the edit. */
+        int lastBlockIndex = findInTree(lineTree, lastLine);
+        LineLengths merged = new LineLengths();
+        for (int i = blockIndex; i <= lastBlockIndex; i++) {
+            Block current = blocks.get(i);
+            int currentStart = prefixSum(lineTree, i);
+            for (int j = 0; j < current.count; j++) {
+                int line = currentStart + j;
+                if (line == firstLine) {
+                    merged.addAll(lengths);
+                }
+                if (line < firstLine || line > lastLine) {
+                    merged.add(current.lengths[j]);
+                }
+            }
+        }
+
+        List<Block> replacement = new ArrayList<>();
+        for (int start = 0; start < merged.count; start += BLOCK_CAPACITY / 2) {
+            replacement.add(new Block(merged.values, start, Math.min(merged.count, start + BLOCK_CAPACITY / 2)));
+        }
+        blocks.subList(blockIndex, lastBlockIndex + 1).clear();
+        blocks.addAll(blockIndex, replacement);
+        rebuildTrees();
+    }
+
+    private void rebuildTrees() {
+        charTree = new int[blocks.size() + 1];
+        lineTree = new int[blocks.size() + 1];
+        charCount = 0;
+        lineCount = 0;
+
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            charTree[i + 1] = block.charCount;
+            lineTree[i + 1] = block.count;
+            charCount += block.charCount;
+            lineCount += block.count;
+        }
+        /** Build both Fenwick trees in O(blocks) by pushing each sum to its parent. */
+        for (int i = 1; i < charTree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < charTree.length) {
+                charTree[parent] += charTree[i];
+                lineTree[parent] += lineTree[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the values of all blocks before the given block.
+     */
+    private static int prefixSum(int[] tree, int blockIndex) {
+        int sum = 0;
+        for (int i = blockIndex; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private static void add(int[] tree, int blockIndex, int delta) {
+        for (int i = blockIndex + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Finds the block in which the prefix sum of the tree exceeds a value. If the value
+     * is at least the total sum, the last block is returned.
+     */
+    private int findInTree(int[] tree, int value) {
+        int index = 0;
+        for (int step = Integer.highestOneBit(tree.length); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next < tree.length && tree[next] <= value) {
+                index = next;
+                value -= tree[next];
+            }
+        }
+        return Math.min(index, blocks.size() - 1);
+    }
+
+    /**
+     * Lengths of consecutive lines.
+     */
+    private static class Block {
+        int[] lengths;
+        int count;
+        int charCount;
+
+        Block(int[] source, int start, int end) {
+            count = end - start;
+            lengths = new int[Math.max(count, 8)];
+            System.arraycopy(source, start, lengths, 0, count);
+            for (int i = 0; i < count; i++) {
+                charCount += lengths[i];
+            }
+        }
+
+        /**
+         * Replaces lines of this block and returns the change of the character count.
+         */
+        int replace(int first, int removed, LineLengths replacement) {
+            int newCount = count - removed + replacement.count;
+            if (newCount > lengths.length) {
+                int[] resized = new int[Math.min(BLOCK_CAPACITY, newCount * 2)];
+                System.arraycopy(lengths, 0, resized, 0, count);
+                lengths = resized;
+            }
+
+            int delta = 0;
+            for (int i = first; i < first + removed; i++) {
+                delta -= lengths[i];
+            }
+            System.arraycopy(lengths, first + removed, lengths, first + replacement.count,
+                    count - first - removed);
+            for (int i = 0; i < replacement.count; i++) {
+                lengths[first + i] = replacement.values[i];
+                delta += replacement.values[i];
+            }
+
+            count = newCount;
+            charCount += delta;
+            return delta;
+        }
+    }
+
+    /**
+     * Growable list of primitive line lengths.
+     */
+    private static class LineLengths {
+        int[] values = new int[4];
+        int count;
+
+        void add(int length) {
+            if (count == values.length) {
+                int[] resized = new int[values.length * 2];
+                System.arraycopy(values, 0, resized, 0, count);
+                values = resized;
+            }
+            values[count++] = length;
+        }
+
+        void addAll(LineLengths lengths) {
+            for (int i = 0; i < lengths.count; i++) {
+                add(lengths.values[i]);
+            }
+        }
+    }
+}
@@ -2,6 +2,9 @@ package engine;
 
 import engine.interfaces.IMemento;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Memento object that can store complete Engine states.
  *
@@ -12,13 +15,63 @@ import engine.interfaces.IMemento;
  *     <li>cursor position</li>
  *     <li>selection start and end positions</li>
  * </ul>
+ *
+ * Alternatively a Memento stores only an {@link EditOperation}. Such a Memento
+ * describes the state that results from applying the edit to the current state. It is
+ * used by the operation log mode of the {@link UndoModule}, which doesn't keep copies
+ * of the text.
+ *
+ * Mementos that are rarely accessed can be compressed, see {@link Memento#compress()}.
+ * Compression may happen on a background thread, so the texts are only accessed while
+ * holding the lock of the Memento. They are decompressed when they are accessed. The
+ * {@link UndoModule} that keeps the Memento is told about every change of its size.
  */
 public class Memento implements IMemento {
+    /** Estimated number of bytes of a Memento without its text (objects, fields, headers). */
+    private static final int OVERHEAD_BYTES = 96;
+
+    /** Texts with fewer characters are not compressed, since they would hardly shrink. */
+    private static final int MIN_COMPRESSED_LENGTH = 64;
+
     private Buffer buffer;
     private Buffer clipboard;
     private Selection selection;
     private int cursorPosition;
 
+    /**
+     * Edit that led to this state. If the Memento has no Buffer, the edit is applied to
+     * the current state instead of replacing it. While the texts of the edit are
+     * compressed, it contains empty texts.
+     */
+    private EditOperation edit;
+
+    private final boolean isEdit;
+
+    /**
+     * Indicates if only the texts of the edit are counted by the size, because the
+     * Buffers share their storage with the previous state.
+     */
+    private boolean isOnlyEditCounted;
+
+    /** Estimated size in bytes, see {@link Memento#getSize()}. */
+    private long size;
+
+    /** History whose budget contains this Memento, or null. */
+    private UndoModule owner;
+
+    /** Bytes of the compressed texts before and after compression, 0 if nothing is compressed. */
+    private long uncompressedTextBytes;
+    private long compressedTextBytes;
+
+    /** Bytes by which compression reduced the size, see {@link Memento#getSize()}. */
+    private long sizeSavings;
+
+    /** Compressed texts, null if the corresponding text is not compressed. */
+    private CompressedText compressedBuffer;
+    private CompressedText compressedClipboard;
+    private CompressedText compressedRemovedText;
+    private CompressedText compressedInsertedText;
+
     public static Memento getInitialMemento() {
         return new Memento();
     }
@@ -31,6 +84,8 @@ public class Memento implements IMemento {
         this.clipboard = new Buffer();
         this.selection = new Selection();
         this.cursorPosition = 0;
+        this.isEdit = false;
+        this.size = computeSize();
     }
 
     /**
@@ -47,6 +102,118 @@ public class Memento implements IMemento {
         this.clipboard = clipboard;
         this.selection = selection;
         this.cursorPosition = cursorPosition;
+        this.isEdit = false;
+        this.size = computeSize();
+    }
+
+    /**
+     * Constructor for a complete state that also knows the edit which led to it.
+     *
+     * @param buffer text to be saved
+     * @param clipboard clipboard to be saved
+     * @param selection selection to be saved
+     * @param cursorPosition cursor position to be saved
+     * @param edit that led to this state
+     */
+    public Memento(Buffer buffer, Buffer clipboard, Selection selection, int cursorPosition, EditOperation edit) {
+        this(buffer, clipboard, selection, cursorPosition);
+        this.edit = edit;
+        this.isOnlyEditCounted = buffer.sharesStorageWithCopies() && clipboard.sharesStorageWithCopies();
+        this.size = computeSize();
+    }
+
+    /**
+     * Constructor for a Memento that describes a state relative to the current state.
+     *
+     * @param edit to be applied to the current state
+     */
+    public Memento(EditOperation edit) {
+        this.edit = edit;
+        this.isEdit = true;
+        this.isOnlyEditCounted = true;
+        this.size = computeSize();
+    }
+
+    /**
+     * Checks if this Memento stores an edit instead of a complete state. In this case
+     * {@link Memento#getEdit()} must be used instead of the other getters.
+     *
+     * @return true if this Memento stores an edit.
+     */
+    public boolean isEdit() {
+        return isEdit;
+    }
+
+    public synchronized EditOperation getEdit() {
+        decompress();
+        return edit;
+    }
+
+    /**
+     * Returns a copy of this Memento with another edit, e.g. after merging edits.
+     *
+     * @param edit of the copy.
+     * @return the copy.
+     */
+    public synchronized Memento withEdit(EditOperation edit) {
+        decompress();
+        return isEdit ? new Memento(edit) : new Memento(buffer, clipboard, selection, cursorPosition, edit);
+    }
+
+    /**
+     * Returns a Memento that reverts the edit of this Memento.
+     *
+     * @return Memento with the inverse edit.
+     */
+    public Memento inverse() {
+        return new Memento(getEdit().inverse());
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by this Memento. For a complete state
+     * this is an upper bound, since copies of a Buffer may share their storage. If the
+     * edit that led to a complete state is known and the Buffers share their storage
+     * with the previous state, only the size of the edit is counted. A gap buffer copies
+     * its characters, so its complete size is counted.
+     *
+     * While texts are compressed, their compressed size is counted instead.
+     *
+     * @return estimated size in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Adds this Memento to the budget of a history, which is told about changes of its
+     * size and compression from now on.
+     *
+     * @param owner history keeping this Memento.
+     */
+    synchronized void attach(UndoModule owner) {
+        this.owner = owner;
+        owner.compressionChanged(size, uncompressedTextBytes, compressedTextBytes, isCompressed() ? 1 : 0);
+    }
+
+    /**
+     * Removes this Memento from the budget of its history, e.g. when it is evicted.
+     */
+    synchronized void detach() {
+        if (owner != null) {
+            owner.compressionChanged(-size, -uncompressedTextBytes, -compressedTextBytes, isCompressed() ? -1 : 0);
+            owner = null;
+        }
+    }
+
+    synchronized boolean isAttachedTo(UndoModule undoModule) {
+        return owner == undoModule;
+    }
+
+    private long computeSize() {
+        if (isOnlyEditCounted) {
+            return OVERHEAD_BYTES + 2L * (edit.getRemovedText().length() + edit.getInsertedText().length());
+        }
+        return OVERHEAD_BYTES + 2L * (buffer.getSize() + clipboard.getSize());
     }
 
     /**
@@ -54,7 +221,8 @@ public class Memento implements IMemento {
      *
      * @return copy of text as Buffer object.
      */
-    public Buffer getBuffer() {
+    public synchronized Buffer getBuffer() {
+        decompress();
         return buffer.getCopy();
     }
 
@@ -63,7 +231,8 @@ public class Memento implements IMemento {
      *
      * @return copy of clipboard as Buffer object.
      */
-    public Buffer getClipboard() {
+    public synchronized Buffer getClipboard() {
+        decompress();
         return clipboard.getCopy();
     }
 
@@ -74,4 +243,108 @@ public class Memento implements IMemento {
     public int getCursorPosition() {
         return cursorPosition;
     }
+
+    /**
+     * Compresses the texts of this Memento that are large enough and not shared with
+     * other Buffers. Buffers whose copies share their storage stay uncompressed, since a
+     * compressed copy would use more memory than the shared storage.
+     *
+     * @return the texts that have been compressed, empty if nothing was compressed.
+     */
+    public synchronized List<CompressedText> compress() {
+        List<CompressedText> compressedTexts = new ArrayList<>();
+        boolean wasCompressed = isCompressed();
+
+        if (edit != null && compressedRemovedText == null &&
+                edit.getRemovedText().length() + edit.getInsertedText().length() >= MIN_COMPRESSED_LENGTH) {
+            compressedRemovedText = CompressedText.compress(edit.getRemovedText().toCharArray());
+            compressedInsertedText = CompressedText.compress(edit.getInsertedText().toCharArray());
+            compressedTexts.add(compressedRemovedText);
+            compressedTexts.add(compressedInsertedText);
+            edit = new EditOperation(edit.getOffset(), "", "", edit.getCursorBefore(), edit.getCursorAfter(),
+                    edit.getSelectionBefore(), edit.getSelectionAfter());
+        }
+        long savings = 0;
+        if (isOnlyEditCounted) {
+            for (CompressedText compressedText : compressedTexts) {
+                savings += compressedText.getUncompressedSize() - compressedText.getCompressedSize();
+            }
+        }
+        if (isCompressible(buffer)) {
+            compressedBuffer = CompressedText.compress(buffer.toCharArray());
+            compressedTexts.add(compressedBuffer);
+            buffer = null;
+            savings += isOnlyEditCounted ? 0 : compressedBuffer.getUncompressedSize() - compressedBuffer.getCompressedSize();
+        }
+        if (isCompressible(clipboard)) {
+            compressedClipboard = CompressedText.compress(clipboard.toCharArray());
+            compressedTexts.add(compressedClipboard);
+            clipboard = null;
+            savings += isOnlyEditCounted ? 0 : compressedClipboard.getUncompressedSize() - compressedClipboard.getCompressedSize();
+        }
+        if (compressedTexts.isEmpty()) {
+            return compressedTexts;
+        }
+
+        long uncompressed = 0;
+        long compressed = 0;
+        for (CompressedText compressedText : compressedTexts) {
+            uncompressed += compressedText.getUncompressedSize();
+            compressed += compressedText.getCompressedSize();
+        }
+        uncompressedTextBytes += uncompressed;
+        compressedTextBytes += compressed;
+        sizeSavings += savings;
+        size -= savings;
+        if (owner != null) {
+            owner.compressionChanged(-savings, uncompressed, compressed, wasCompressed ? 0 : 1);
+        }
+        return compressedTexts;
+    }
+
+    /**
+     * Checks if any text of this Memento is compressed.
+     *
+     * @return true if a text is compressed.
+     */
+    public synchronized boolean isCompressed() {
+        return compressedRemovedText != null || compressedBuffer != null || compressedClipboard != null;
+    }
+
+    private static boolean isCompressible(Buffer text) {
+        return text != null && !text.sharesStorageWithCopies() && text.getSize() >= MIN_COMPRESSED_LENGTH;
+    }
+
+    /**
+     * Restores the compressed texts. Must be called while holding the lock of the Memento.
+     */
+    private void decompress() {
+        if (!isCompressed()) {
+            return;
+        }
+        if (compressedRemovedText != null) {
+            edit = new EditOperation(edit.getOffset(),
+                    new String(compressedRemovedText.decompress()), new String(compressedInsertedText.decompress()),
+                    edit.getCursorBefore(), edit.getCursorAfter(), edit.getSelectionBefore(), edit.getSelectionAfter());
+            compressedRemovedText = null;
+            compressedInsertedText = null;
+        }
+        if (compressedBuffer != null) {
+            buffer = Buffer.wrap(compressedBuffer.decompress());
+            compressedBuffer = null;
+        }
+        if (compressedClipboard != null) {
+            clipboard = Buffer.wrap(compressedClipboard.decompress());
+            compressedClipboard = null;
+        }
+
+        size += sizeSavings;
+        if (owner != null) {
+            owner.compressionChanged(sizeSavings, -uncompressedTextBytes, -compressedTextBytes, -1);
+            owner.entryDecompressed(this);
+        }
+        sizeSavings = 0;
+        uncompressedTextBytes = 0;
+        compressedTextBytes = 0;
+    }
 }
@@ -0,0 +1,221 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static engine.Buffer.isWordChar;
+
+/**
+ * This class keeps the result of a spell check up to date while the text is edited.
+ *
+ * The misspelled words are stored as sorted, non-overlapping ranges in two int arrays.
+ * For every {@link TextChange} the ranges behind the change are shifted and only the
+ * words overlapping the changed range are checked again. So the cost of an edit
+ * depends on the size of the change and the number of misspelled words, but not on
+ * the length of the text.
+ *
+ * The ranges belong to a version of the text. A change can only be applied if it
+ * directly follows that version and the whole text has been checked, otherwise a
+ * complete spell check is necessary. A complete check may deliver its result range by
+ * range, see {@link MisspelledRanges#addCheckedRange(int, int, int[], long, boolean)}.
+ */
+public class MisspelledRanges {
+    /** Version of the text that is described if no spell check has been done yet. */
+    public static final long UNKNOWN_VERSION = -1;
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count = 0;
+
+    /** Version of the text the ranges belong to. */
+    private long version;
+
+    /** False while only parts of the text have been checked. */
+    private boolean isComplete = true;
+
+    /**
+     * Creates the ranges of an empty text, which has no misspelled words.
+     *
+     * @param version of the empty text.
+     */
+    public MisspelledRanges(long version) {
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Replaces all ranges by the result of a complete spell check.
+     *
+     * @param selections of the misspelled words in the text.
+     * @param version of the checked text.
+     */
+    public void reset(List<Selection> selections, long version) {
+        List<Selection> sorted = new ArrayList<>(selections);
+        sorted.sort((s1, s2) -> Integer.compare(s1.getSelectionBase(), s2.getSelectionBase()));
+
+        count = 0;
+        ensureCapacity(sorted.size());
+        for (Selection selection : sorted) {
+            starts[count] = selection.getSelectionBase();
+            ends[count] = selection.getSelectionEnd();
+            count++;
+        }
+        this.version = version;
+        isComplete = true;
+    }
+
+    /**
+     * Replaces the ranges in a range of the text by the result of checking it. The
+     * result of a check of a newer version of the text replaces all ranges.
+     *
+     * @param start of the checked range.
+     * @param end of the checked range (exclusive).
+     * @param misspelledRanges start and end positions of the misspelled words in the checked range.
+     * @param version of the checked text.
+     * @param isComplete true if the whole text has been checked now.
+     */
+    public void addCheckedRange(int start, int end, int[] misspelledRanges, long version, boolean isComplete) {
+        if (version != this.version) {
+            count = 0;
+            this.version = version;
+        }
+        replace(firstEndingAfter(start), firstStartingAtOrAfter(end), misspelledRanges);
+        this.isComplete = isComplete;
+    }
+
+    /**
+     * Marks the ranges as outdated, e.g. because the text was replaced without a change.
+     */
+    public void invalidate() {
+        version = UNKNOWN_VERSION;
+    }
+
+    /**
+     * Checks if a change directly follows the version of the ranges and can be applied.
+     *
+     * @param change to be applied.
+     * @return true if {@link MisspelledRanges#applyChange(TextChange, Buffer, SpellCheckModule)} can be used.
+     */
+    public boolean canApply(TextChange change) {
+        return version != UNKNOWN_VERSION && isComplete && change.getVersion() == version + 1;
+    }
+
+    /**
+     * Updates the ranges after a change of the text.
+     *
+     * @param change that has been applied to the text.
+     * @param buffer containing the text after the change.
+     * @param spellCheckModule used to check the words touched by the change.
+     */
+    public void applyChange(TextChange change, Buffer buffer, SpellCheckModule spellCheckModule) {
+        /**
+         * Expand the inserted range to the word boundaries in the new text. A word next to
+         * the change may have been split or joined with another word by the change.
+         */
+        int start = change.getOffset();
+        int end = change.getOffset() + change.getInsertedText().length();
+        while (start > 0 && isWordChar(buffer.getCharAtPosition(start - 1))) {
+            start--;
+        }
+        while (end < buffer.getSize() && isWordChar(buffer.getCharAtPosition(end))) {
+            end++;
+        }
+        /** End of the expanded range in the text before the change. */
+        int oldEnd = end - change.getLengthDelta();
+
+        /** Ranges [first, last) overlap the expanded range and are checked again. */
+        int first = firstEndingAfter(start);
+        int last = firstStartingAtOrAfter(oldEnd);
+        int next = replace(first, last, spellCheckModule.getMisspelledRanges(buffer, start, end));
+
+        /** Shift the ranges behind the change. */
+        for (int i = next; i < count; i++) {
+            starts[i] += change.getLengthDelta();
+            ends[i] += change.getLengthDelta();
+        }
+
+        version = change.getVersion();
+    }
+
+    /**
+     * Returns the misspelled words as selections ordered by position.
+     *
+     * @return list of selections of misspelled words.
+     */
+    public List<Selection> getSelections() {
+        List<Selection> selections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            selections.add(new Selection(starts[i], ends[i]));
+        }
+        return selections;
+    }
+
+    /**
+     * Replaces the ranges [first, last) by new ranges.
+     *
+     * @param ranges start and end positions of the new ranges.
+     * @return index of the first range behind the new ranges.
+     */
+    private int replace(int first, int last, int[] ranges) {
+        int rangeCount = ranges.length / 2;
+        int newCount = count - (last - first) + rangeCount;
+        ensureCapacity(newCount);
+        System.arraycopy(starts, last, starts, first + rangeCount, count - last);
+        System.arraycopy(ends, last, ends, first + rangeCount, count - last);
+        for (int i = 0; i < rangeCount; i++) {
+            starts[first + i] = ranges[2 * i];
+            ends[first + i] = ranges[2 * i + 1];
+        }
+        count = newCount;
+        return first + rangeCount;
+    }
+
+    /**
+     * Returns the index of the first range that ends after a position.
+     */
+    private int firstEndingAfter(int position) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] > position) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first range that starts at or after a position.
+     */
+    private int firstStartingAtOrAfter(int position) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] >= position) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int newLength = Math.max(capacity, starts.length * 2);
+            int[] newStarts = new int[newLength];
+            int[] newEnds = new int[newLength];
+            System.arraycopy(starts, 0, newStarts, 0, count);
+            System.arraycopy(ends, 0, newEnds, 0, count);
+            starts = newStarts;
+            ends = newEnds;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package engine;
+
+import engine.interfaces.ITextStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class stores the characters of a Buffer in a piece table.
+ *
+ * The text is never copied or modified in place. The initial text (e.g. the content of
+ * an opened file) is kept as read-only original array and every inserted character is
+ * appended to an append-only add buffer. The document is described by a list of pieces
+ * where each piece references a range in one of these arrays.
+ *
+ * Since the referenced arrays never change, copies of a piece table share them and only
+ * copy the list of pieces. This makes copies (e.g. for Mementos) proportional to the
+ * number of edits instead of the length of the text.
+ */
+public class PieceTable implements ITextStorage {
+    /** Read-only text the piece table was created with. */
+    private final char[] original;
+
+    /** Append-only buffer shared by this piece table and all of its copies. */
+    private final AddBuffer addBuffer;
+
+    /** Pieces describing the text in document order. */
+    private final List<Piece> pieces;
+
+    /**
+     * Document position at which each piece starts. pieceStarts[pieces.size()] is the
+     * length of the text. Kept up to date on every edit so that reads don't need to
+     * modify the piece table and can run on any thread.
+     */
+    private int[] pieceStarts;
+
+    public PieceTable() {
+        this(new char[0]);
+    }
+
+    /**
+     * Creates a piece table that uses the passed array as read-only original text.
+     * The array is not copied, so it must not be modified afterwards.
+     *
+     * @param original initial text of the piece table.
+     */
+    public PieceTable(char[] original) {
+        this(original, original.length);
+    }
+
+    /**
+     * Creates a piece table that uses the range [0, length) of the passed array as
+     * read-only original text, e.g. an array that was allocated larger while reading a
+     * file. The array is not copied, so it must not be modified afterwards.
+     *
+     * @param original array containing the initial text of the piece table.
+     * @param length number of characters of the initial text.
+     */
+    public PieceTable(char[] original, int length) {
+        this.original = original;
+        this.addBuffer = new AddBuffer();
+        this.pieces = new ArrayList<>();
+        if (length > 0) {
+            pieces.add(new Piece(original, 0, length));
+        }
+        rebuildPieceStarts(0);
+    }
+
+    private PieceTable(char[] original, AddBuffer addBuffer, List<Piece> pieces) {
+        this.original = original;
+        this.addBuffer = addBuffer;
+        this.pieces = pieces;
+        rebuildPieceStarts(0);
+    }
+
+    public int length() {
+        return pieceStarts[pieces.size()];
+    }
+
+    public char charAt(int position) {
+        int index = findPiece(position);
+        Piece piece = pieces.get(index);
+        return piece.source[piece.start + position - pieceStarts[index]];
+    }
+
+    public void insert(int position, char c) {
+        insert(position, new char[]{c}, 0, 1);
+    }
+
+    public void insert(int position, char[] chars, int offset, int count) {
+        if (count == 0) {
+            return;
+        }
+        Piece inserted = addBuffer.append(chars, offset, count);
+
+        /**
+         * Typing appends to the add buffer and inserts right behind the previously
+         * inserted characters. In this case the previous piece is extended instead of
+         * creating a new piece for every typed character.
+         */
+        int index = findPieceEndingAt(position);
+        if (index >= 0 && pieces.get(index).isFollowedBy(inserted)) {
+            Piece previous = pieces.get(index);
+            pieces.set(index, new Piece(previous.source, previous.start, previous.length + count));
+            rebuildPieceStarts(index);
+            return;
+        }
+
+        if (position == length()) {
+            pieces.add(inserted);
+            rebuildPieceStarts(pieces.size() - 1);
+            return;
+        }
+
+        index = findPiece(position);
+        int splitOffset = position - pieceStarts[index];
+        if (splitOffset == 0) {
+            pieces.add(index, inserted);
+        } else {
+            Piece piece = pieces.get(index);
+            pieces.set(index, piece.subPiece(0, splitOffset));
+            pieces.add(index + 1, inserted);
+            pieces.add(index + 2, piece.subPiece(splitOffset, piece.length));
+        }
+        rebuildPieceStarts(index);
+    }
+
+    public void delete(int start, int end) {
+        if (start == end) {
+            return;
+        }
+        int first = findPiece(start);
+        int last = findPiece(end - 1);
+
+        /** Keep the parts of the first and last piece that lie outside of the deleted range. */
+        Piece firstPiece = pieces.get(first);
+        Piece lastPiece = pieces.get(last);
+        Piece head = firstPiece.subPiece(0, start - pieceStarts[first]);
+        Piece tail = lastPiece.subPiece(end - pieceStarts[last], lastPiece.length);
+
+        pieces.subList(first, last + 1).clear();
+        if (tail.length > 0) {
+            pieces.add(first, tail);
+        }
+        if (head.length > 0) {
+            pieces.add(first, head);
+        }
+        rebuildPieceStarts(first);
+    }
+
+    public void getChars(int start, int end, char[] dst, int dstBegin) {
+        if (start == end) {
+            return;
+        }
+        int index = findPiece(start);
+        int pieceOffset = start - pieceStarts[index];
+
+        while (start < end) {
+            Piece piece = pieces.get(index);
+            int count = Math.min(piece.length - pieceOffset, end - start);
+            System.arraycopy(piece.source, piece.start + pieceOffset, dst, dstBegin, count);
+
+            start += count;
+            dstBegin += count;
+            pieceOffset = 0;
+            index++;
+        }
+    }
+
+    /**
+     * Creates a copy that shares the original text and the add buffer with this piece
+     * table. Only the list of pieces is copied.
+     *
+     * @return the copy.
+     */
+    public PieceTable copy() {
+        return new PieceTable(original, addBuffer, new ArrayList<>(pieces));
+    }
+
+    public PieceTable copy(int start, int end) {
+        List<Piece> range = new ArrayList<>();
+        if (start < end) {
+            int first = findPiece(start);
+            int last = findPiece(end - 1);
+
+            for (int i = first; i <= last; i++) {
+                Piece piece = pieces.get(i);
+                int from = i == first ? start - pieceStarts[i] : 0;
+                int to = i == last ? end - pieceStarts[i] : piece.length;
+                range.add(piece.subPiece(from, to));
+            }
+        }
+        return new PieceTable(original, addBuffer, range);
+    }
+
+    /**
+     * Returns the number of pieces that currently describe the text.
+     *
+     * @return number of pieces.
+     */
+    public int getPieceCount() {
+        return pieces.size();
+    }
+
+    /**
+     * Finds the piece that contains the character at a position with a binary search.
+     *
+     * @param position of a character, 0 <= position < length().
+     * @return index of the piece containing the position.
+     */
+    private int findPiece(int position) {
+        int index = Arrays.binarySearch(pieceStarts, 0, pieces.size(), position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Finds the piece that ends exactly at a position.
+     *
+     * @param position to be checked.
+     * @return index of the piece ending at the position or -1 if there is none.
+     */
+    private int findPieceEndingAt(int position) {
+        if (position == 0) {
+            return -1;
+        }
+        int index = findPiece(position - 1);
+        return pieceStarts[index + 1] == position ? index : -1;
+    }
+
+    /**
+     * Recomputes the start positions of all pieces beginning at the given index.
+     *
+     * @param fromIndex index of the first piece whose start position may have changed.
+     */
+    private void rebuildPieceStarts(int fromIndex) {
+        if (pieceStarts == null || pieceStarts.length < pieces.size() + 1) {
+            int[] resized = new int[Math.max(16, (pieces.size() + 1) * 2)];
+            if (pieceStarts != null) {
+                System.arraycopy(pieceStarts, 0, resized, 0, fromIndex + 1);
+            }
+            pieceStarts = resized;
+        }
+        for (int i = fromIndex; i < pieces.size(); i++) {
+            pieceStarts[i + 1] = pieceStarts[i] + pieces.get(i).length;
+        }
+    }
+
+    /**
+     * Immutable reference to a range of characters in the original text or in the
+     * add buffer.
+     */
+    private static class Piece {
+        final char[] source;
+        final int start;
+        final int length;
+
+        Piece(char[] source, int start, int length) {
+            this.source = source;
+            this.start = start;
+            this.length = length;
+        }
+
+        Piece subPiece(int from, int to) {
+            return new Piece(source, start + from, to - from);
+        }
+
+        /**
+         * Checks if a piece references the characters directly following this piece
+         * in the same array.
+         */
+        boolean isFollowedBy(Piece piece) {
+            return source == piece.source && start + length == piece.start;
+        }
+    }
+
+    /**
+     * Append-only storage for inserted characters. It consists of fixed-size blocks
+     * which are never reallocated, so characters written once never move and can be
+     * referenced by pieces of any copy of the piece table.
+     */
+    private static class AddBuffer {
+        private static final int BLOCK_SIZE = 64 * 1024;
+
+        private char[] block = new char[0];
+        private int used = 0;
+
+        /**
+         * Appends characters and returns the piece referencing them.
+         */
+        Piece append(char[] chars, int offset, int count) {
+            if (count > BLOCK_SIZE) {
+                /** Large insertions (e.g. pasting) get a block of their own. */
+                return new Piece(Arrays.copyOfRange(chars, offset, offset + count), 0, count);
+            }
+            if (block.length - used < count) {
+                block = new char[BLOCK_SIZE];
+                used = 0;
+            }
+            System.arraycopy(chars, offset, block, used, count);
+            Piece piece = new Piece(block, used, count);
+            used += count;
+            return piece;
+        }
+    }
+}
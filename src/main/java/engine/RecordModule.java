@@ -1,6 +1,11 @@
 package engine;
 
 import commands.Command;
+import commands.InsertCommand;
+import commands.InsertTextCommand;
+import commands.RedoCommand;
+import commands.UndoCommand;
+import commands.UpdateCursorCommand;
 import engine.interfaces.IRecordModule;
 
 import java.util.ArrayList;
@@ -8,6 +13,9 @@ import java.util.List;
 
 /**
  * This class handles recording and providing macros.
+ *
+ * Before a macro is replayed, it is compiled into an equivalent but shorter list of
+ * commands, see {@link RecordModule#compile()}.
  */
 public class RecordModule implements IRecordModule {
     /**
@@ -21,6 +29,12 @@ public class RecordModule implements IRecordModule {
      */
     private boolean isRecording;
 
+    /**
+     * Compiled version of {@link RecordModule#replayList}, null if it has to be compiled
+     * again because the macro changed.
+     */
+    private List<Command> compiledReplayList;
+
     public RecordModule() {
         replayList = new ArrayList<>();
     }
@@ -36,15 +50,96 @@ public class RecordModule implements IRecordModule {
     public void record(Command command) {
         if (isRecording) {
             replayList.add(command);
+            compiledReplayList = null;
         }
     }
 
     public RecordModule clear() {
         replayList.clear();
+        compiledReplayList = null;
         return this;
     }
 
+    /**
+     * Replaces the macro, e.g. by a macro loaded from a file.
+     *
+     * @param commands of the new macro.
+     */
+    public void load(List<Command> commands) {
+        replayList = new ArrayList<>(commands);
+        compiledReplayList = null;
+    }
+
     public List<Command> getReplayList() {
         return replayList;
     }
-}
\ No newline at end of file
+
+    /**
+     * Compiles the macro into a list of commands with the same effect:
+     * <ul>
+     *     <li>consecutive InsertCommands are fused into one {@link InsertTextCommand},</li>
+     *     <li>of consecutive UpdateCursorCommands only the last one is kept, since each
+     *     of them replaces the cursor position and selection of the previous one.</li>
+     * </ul>
+     * The result is cached until the macro changes.
+     *
+     * @return the compiled macro.
+     */
+    public List<Command> compile() {
+        if (compiledReplayList != null) {
+            return compiledReplayList;
+        }
+        List<Command> compiled = new ArrayList<>();
+        StringBuilder insertedText = new StringBuilder();
+
+        for (int i = 0; i < replayList.size(); i++) {
+            Command command = replayList.get(i);
+
+            if (command instanceof InsertCommand) {
+                insertedText.append(((InsertCommand) command).getCharacter());
+                continue;
+            }
+            addInsertedText(compiled, insertedText);
+
+            boolean isFollowedByCursorUpdate = i + 1 < replayList.size() &&
+                    replayList.get(i + 1) instanceof UpdateCursorCommand;
+            if (command instanceof UpdateCursorCommand && isFollowedByCursorUpdate) {
+                continue;
+            }
+            compiled.add(command);
+        }
+        addInsertedText(compiled, insertedText);
+
+        compiledReplayList = compiled;
+        return compiled;
+    }
+
+    /**
+     * Adds the collected characters as one command and resets the collector.
+     */
+    private static void addInsertedText(List<Command> compiled, StringBuilder insertedText) {
+        if (insertedText.length() == 1) {
+            compiled.add(new InsertCommand(insertedText.charAt(0)));
+        } else if (insertedText.length() > 1) {
+            compiled.add(new InsertTextCommand(insertedText.toString()));
+        }
+        insertedText.setLength(0);
+    }
+
+    /**
+     * Checks if a macro can be replayed as a single transaction, i.e. with one undo step
+     * and one notification of the observers. This isn't possible if the macro itself
+     * undoes or redoes steps, because its own steps are not saved during a transaction.
+     *
+     * @param commands of the macro.
+     * @return true if the macro can be replayed as a transaction.
+     */
+    public static boolean canReplayAsTransaction(List<Command> commands) {
+        for (Command command : commands) {
+            if (command instanceof UndoCommand || command instanceof RedoCommand) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
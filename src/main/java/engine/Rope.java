@@ -0,0 +1,330 @@
+package engine;
+
+import engine.interfaces.ITextStorage;
+
+/**
+ * This class stores the characters of a Buffer in a rope: a height-balanced (AVL)
+ * binary tree whose leaves reference ranges of char arrays and whose inner nodes
+ * cache the length of their subtree.
+ *
+ * All nodes are immutable. An edit creates new nodes only along the path to the
+ * edited position and shares every other node with the previous version. Therefore
+ * inserting, deleting, reading a character and copying a range take O(log n) and
+ * copying the whole rope is O(1), which makes the rope suitable for very large texts
+ * and for keeping many versions of a text (e.g. in Mementos).
+ */
+public class Rope implements ITextStorage {
+    /**
+     * Maximum length of a leaf created by inserting characters. Small leaves are merged
+     * up to this length so that typing doesn't create a leaf per character.
+     */
+    private static final int MAX_LEAF_LENGTH = 512;
+
+    private static final Leaf EMPTY = new Leaf(new char[0], 0, 0);
+
+    /** Root of the tree which represents the current text. */
+    private Node root;
+
+    public Rope() {
+        this(EMPTY);
+    }
+
+    /**
+     * Creates a rope that uses the passed array as text. The array is not copied but
+     * referenced by the leaves, so it must not be modified afterwards.
+     *
+     * @param chars initial text of the rope.
+     */
+    public Rope(char[] chars) {
+        this(chars, chars.length);
+    }
+
+    /**
+     * Creates a rope that uses the range [0, length) of the passed array as text. The
+     * array is not copied, so it must not be modified afterwards.
+     *
+     * @param chars array containing the initial text of the rope.
+     * @param length number of characters of the initial text.
+     */
+    public Rope(char[] chars, int length) {
+        this(build(chars, 0, length));
+    }
+
+    private Rope(Node root) {
+        this.root = root;
+    }
+
+    public int length() {
+        return root.length;
+    }
+
+    public char charAt(int position) {
+        Node node = root;
+        while (node instanceof Concat) {
+            Concat concat = (Concat) node;
+            if (position < concat.left.length) {
+                node = concat.left;
+            } else {
+                position -= concat.left.length;
+                node = concat.right;
+            }
+        }
+        Leaf leaf = (Leaf) node;
+        return leaf.chars[leaf.offset + position];
+    }
+
+    public void insert(int position, char c) {
+        insert(position, new Leaf(new char[]{c}, 0, 1));
+    }
+
+    public void insert(int position, char[] chars, int offset, int count) {
+        char[] copy = new char[count];
+        System.arraycopy(chars, offset, copy, 0, count);
+        insert(position, build(copy, 0, count));
+    }
+
+    /**
+     * Inserts the text of another rope. Since nodes are immutable, the other rope's
+     * tree is shared instead of copied, which makes this O(log n).
+     *
+     * @param position at which the text is inserted.
+     * @param rope whose text is inserted.
+     */
+    public void insert(int position, Rope rope) {
+        insert(position, rope.root);
+    }
+
+    public void delete(int start, int end) {
+        Node[] head = split(root, start);
+        Node[] tail = split(head[1], end - start);
+        root = join(head[0], tail[1]);
+    }
+
+    public void getChars(int start, int end, char[] dst, int dstBegin) {
+        getChars(root, start, end, dst, dstBegin);
+    }
+
+    /**
+     * Returns a copy that shares the complete tree with this rope. This is O(1).
+     *
+     * @return the copy.
+     */
+    public Rope copy() {
+        return new Rope(root);
+    }
+
+    public Rope copy(int start, int end) {
+        Node[] head = split(root, start);
+        return new Rope(split(head[1], end - start)[0]);
+    }
+
+    /**
+     * Returns the height of the tree, mainly to verify that it stays balanced.
+     *
+     * @return height of the tree, 0 for a single leaf.
+     */
+    public int getHeight() {
+        return root.height;
+    }
+
+    private void insert(int position, Node node) {
+        Node[] parts = split(root, position);
+        root = join(join(parts[0], node), parts[1]);
+    }
+
+    /**
+     * Builds a balanced tree whose leaves reference the range [start, end) of an array.
+     */
+    private static Node build(char[] chars, int start, int end) {
+        if (end - start <= MAX_LEAF_LENGTH) {
+            return start == end ? EMPTY : new Leaf(chars, start, end - start);
+        }
+        int middle = (start + end) >>> 1;
+        return new Concat(build(chars, start, middle), build(chars, middle, end));
+    }
+
+    private static void getChars(Node node, int start, int end, char[] dst, int dstBegin) {
+        if (start >= end) {
+            return;
+        }
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            System.arraycopy(leaf.chars, leaf.offset + start, dst, dstBegin, end - start);
+            return;
+        }
+        Concat concat = (Concat) node;
+        int leftLength = concat.left.length;
+        if (start < leftLength) {
+            getChars(concat.left, start, Math.min(end, leftLength), dst, dstBegin);
+        }
+        if (end > leftLength) {
+            int rightStart = Math.max(start, leftLength);
+            getChars(concat.right, rightStart - leftLength, end - leftLength,
+                    dst, dstBegin + rightStart - start);
+        }
+    }
+
+    /**
+     * Splits a tree into the text before and the text starting at a position.
+     *
+     * @return array with the tree of the first part at index 0 and of the second part at index 1.
+     */
+    private static Node[] split(Node node, int position) {
+        if (position <= 0) {
+            return new Node[]{EMPTY, node};
+        }
+        if (position >= node.length) {
+            return new Node[]{node, EMPTY};
+        }
+        if (node instanceof Leaf) {
+            /** Both parts reference the same array, so splitting a leaf doesn't copy. */
+            Leaf leaf = (Leaf) node;
+            return new Node[]{
+                    new Leaf(leaf.chars, leaf.offset, position),
+                    new Leaf(leaf.chars, leaf.offset + position, leaf.length - position)
+            };
+        }
+        Concat concat = (Concat) node;
+        if (position < concat.left.length) {
+            Node[] parts = split(concat.left, position);
+            return new Node[]{parts[0], join(parts[1], concat.right)};
+        } else {
+            Node[] parts = split(concat.right, position - concat.left.length);
+            return new Node[]{join(concat.left, parts[0]), parts[1]};
+        }
+    }
+
+    /**
+     * Concatenates two trees and keeps the result height-balanced. Joining trees of
+     * different heights descends the higher tree until both heights are about equal
+     * and rebalances on the way back, which is O(|height difference|).
+     */
+    private static Node join(Node left, Node right) {
+        if (left.length == 0) {
+            return right;
+        }
+        if (right.length == 0) {
+            return left;
+        }
+
+        /** Merge short text into the adjacent leaf to avoid fragmentation while typing. */
+        if (right instanceof Leaf && rightmostLeaf(left).length + right.length <= MAX_LEAF_LENGTH) {
+            return appendToRightmostLeaf(left, (Leaf) right);
+        }
+        if (left instanceof Leaf && leftmostLeaf(right).length + left.length <= MAX_LEAF_LENGTH) {
+            return prependToLeftmostLeaf((Leaf) left, right);
+        }
+
+        if (left.height > right.height + 1) {
+            Concat concat = (Concat) left;
+            return balance(concat.left, join(concat.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Concat concat = (Concat) right;
+            return balance(join(left, concat.left), concat.right);
+        }
+        return new Concat(left, right);
+    }
+
+    /**
+     * Creates a node of two subtrees whose heights differ by at most 2 and applies
+     * an AVL rotation if they differ by 2.
+     */
+    private static Node balance(Node left, Node right) {
+        if (left.height > right.height + 1) {
+            Concat concat = (Concat) left;
+            if (concat.left.height >= concat.right.height) {
+                return new Concat(concat.left, new Concat(concat.right, right));
+            }
+            Concat inner = (Concat) concat.right;
+            return new Concat(new Concat(concat.left, inner.left), new Concat(inner.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Concat concat = (Concat) right;
+            if (concat.right.height >= concat.left.height) {
+                return new Concat(new Concat(left, concat.left), concat.right);
+            }
+            Concat inner = (Concat) concat.left;
+            return new Concat(new Concat(left, inner.left), new Concat(inner.right, concat.right));
+        }
+        return new Concat(left, right);
+    }
+
+    private static Leaf rightmostLeaf(Node node) {
+        while (node instanceof Concat) {
+            node = ((Concat) node).right;
+        }
+        return (Leaf) node;
+    }
+
+    private static Leaf leftmostLeaf(Node node) {
+        while (node instanceof Concat) {
+            node = ((Concat) node).left;
+        }
+        return (Leaf) node;
+    }
+
+    private static Node appendToRightmostLeaf(Node node, Leaf leaf) {
+        if (node instanceof Leaf) {
+            return Leaf.merge((Leaf) node, leaf);
+        }
+        Concat concat = (Concat) node;
+        return new Concat(concat.left, appendToRightmostLeaf(concat.right, leaf));
+    }
+
+    private static Node prependToLeftmostLeaf(Leaf leaf, Node node) {
+        if (node instanceof Leaf) {
+            return Leaf.merge(leaf, (Leaf) node);
+        }
+        Concat concat = (Concat) node;
+        return new Concat(prependToLeftmostLeaf(leaf, concat.left), concat.right);
+    }
+
+    /**
+     * Immutable node of the tree with cached length and height of its subtree.
+     */
+    private abstract static class Node {
+        final int length;
+        final int height;
+
+        Node(int length, int height) {
+            this.length = length;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Leaf referencing a range of a char array. The referenced range is never modified.
+     */
+    private static class Leaf extends Node {
+        final char[] chars;
+        final int offset;
+
+        Leaf(char[] chars, int offset, int length) {
+            super(length, 0);
+            this.chars = chars;
+            this.offset = offset;
+        }
+
+        static Leaf merge(Leaf first, Leaf second) {
+            char[] merged = new char[first.length + second.length];
+            System.arraycopy(first.chars, first.offset, merged, 0, first.length);
+            System.arraycopy(second.chars, second.offset, merged, first.length, second.length);
+            return new Leaf(merged, 0, merged.length);
+        }
+    }
+
+    /**
+     * Inner node concatenating the text of its two subtrees.
+     */
+    private static class Concat extends Node {
+        final Node left;
+        final Node right;
+
+        Concat(Node left, Node right) {
+            super(left.length + right.length, Math.max(left.height, right.height) + 1);
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
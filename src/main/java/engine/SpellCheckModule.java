@@ -1,135 +1,242 @@
 package engine;
 
+import engine.interfaces.IDictionary;
 import engine.interfaces.ISpellCheckModule;
 
-import java.io.*;
-import java.util.*;
-import java.util.stream.Collectors;
-
-import static engine.Buffer.isSpecialChar;
-import static engine.Buffer.isWhitespaceCharacter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * This class realizes a spell checker that takes a Buffer object, processes it by
  * comparing its content with a dictionary, and returns the misspelled words in the
  * Buffer object.
+ *
+ * The dictionary is shared with all other SpellCheckModules, see {@link DictionaryRegistry}.
+ *
+ * Large ranges are split into chunks at word boundaries, which are checked in parallel
+ * on a ForkJoinPool. Since every chunk returns its misspelled words in order, joining
+ * the results of the chunks from left to right keeps the document order.
  */
 public class SpellCheckModule implements ISpellCheckModule {
-    /** Path to the dictionary that is loaded during initialization. */
-    private static String PATH_TO_DICTIONARY = "/dictionaries/british-english.txt";
+    /** Number of characters that are copied from the Buffer at once. */
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Minimum number of characters of a range that is checked in parallel, can be set
+     * with the system property {@code spellCheck.parallelThreshold}.
+     */
+    private static int defaultParallelThreshold = Integer.getInteger("spellCheck.parallelThreshold", 1 << 20);
+
+    /** Number of characters of the chunks that are checked by one task of a parallel check. */
+    private static final int PARALLEL_CHUNK_SIZE = 256 * 1024;
+
+    /** Loaded dictionary of correctly spelled words. */
+    private final IDictionary dictionary;
+
+    /** Ranges with at least this many characters are checked in parallel. */
+    private int parallelThreshold = defaultParallelThreshold;
 
-    /** Loaded dictionary as set of correctly spelled words. */
-    private Set<String> dictionary;
+    /** Pool running the tasks of parallel checks. */
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
 
     public SpellCheckModule() {
-        dictionary = new HashSet<>();
-        loadDictionary(PATH_TO_DICTIONARY);
+        this(DictionaryRegistry.get(DictionaryRegistry.getDefaultPath()));
+    }
+
+    /**
+     * @param dictionary of correctly spelled words.
+     */
+    public SpellCheckModule(IDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @return the dictionary of correctly spelled words.
+     */
+    public IDictionary getDictionary() {
+        return dictionary;
     }
 
     /**
-     * Returns misspelled words in the buffer by first transforming the buffer into
-     * a map in which words are mapped to its position in the buffer. As a second
-     * step each word in the map is spell checked and misspelled words are returned as
-     * a list of Selections.
+     * Returns misspelled words in the buffer as a list of Selections.
      *
      * @param buffer to be checked for misspelled words
      * @return list of selections of words that are considered misspelled
      */
     public List<Selection> getMisspelledWords(Buffer buffer) {
-        /** Transform buffer into Map<Selection, String>. */
-        Map<Selection, String> words = getWords(buffer);
-
-        /**
-         * Iterate over every map entry and filter them by misspelled words. The
-         * result is returned as list.
-         */
-        return words.entrySet()
-                .stream()
-                .filter(m -> isWordMisspelled(m.getValue()))
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return getMisspelledWords(buffer, 0, buffer.getSize());
     }
 
     /**
-     * This method processes a Buffer into a Map<Selection, String> in which each
-     * word is mapped to its start and end position in the buffer.
+     * Returns misspelled words in a range of the buffer. The range must start and end
+     * at word boundaries, otherwise the words at its borders are checked partially.
      *
-     * @param buffer to be transformed into word-map.
-     * @return map representation of the buffer which maps words to its position
-     * in the buffer.
+     * @param buffer to be checked for misspelled words
+     * @param start of the range to be checked
+     * @param end of the range to be checked (exclusive)
+     * @return list of selections of misspelled words ordered by their position
      */
-    private Map<Selection, String> getWords(Buffer buffer) {
-        Map<Selection, String> words = new HashMap<>();
-        StringBuilder word = new StringBuilder();
-
-        int indexStart = 0;
-        int indexEnd;
-
-        for (int i = 0; i < buffer.getContent().size(); i++) {
-            char c = buffer.getCharAtPosition(i);
-
-            if (isWhitespaceCharacter(c) || isSpecialChar(c)) {
-                /**
-                 * Whitespace character signals end of previous word. If word isn't empty,
-                 * we build it to a string and add it to the list. Then clean the StringBuilder.
-                 */
-                if (word.toString().length() > 0) {
-                    indexEnd = i;
-                    words.put(new Selection(indexStart, indexEnd), word.toString());
-                    word.setLength(0);
-                }
-            } else {
-                if (word.toString().length() == 0) {
-                    indexStart = i;
+    public List<Selection> getMisspelledWords(Buffer buffer, int start, int end) {
+        int[] ranges = getMisspelledRanges(buffer, start, end);
+        List<Selection> selections = new ArrayList<>(ranges.length / 2);
+        for (int i = 0; i < ranges.length; i += 2) {
+            selections.add(new Selection(ranges[i], ranges[i + 1]));
+        }
+        return selections;
+    }
+
+    /**
+     * Returns misspelled words in a range of the buffer as flat array of ranges: the
+     * start of the first word, its end, the start of the second word and so on. The
+     * range must start and end at word boundaries, see
+     * {@link SpellCheckModule#getMisspelledWords(Buffer, int, int)}.
+     *
+     * The characters are copied chunk by chunk into one array and scanned once. Words
+     * are looked up directly in that array, so no objects are created per word.
+     *
+     * @param buffer to be checked for misspelled words
+     * @param start of the range to be checked
+     * @param end of the range to be checked (exclusive)
+     * @return start and end positions of the misspelled words ordered by their position
+     */
+    public int[] getMisspelledRanges(Buffer buffer, int start, int end) {
+        if (end - start >= parallelThreshold && pool.getParallelism() > 1) {
+            return pool.invoke(new CheckTask(this, buffer, start, end));
+        }
+        return getMisspelledRangesSequentially(buffer, start, end);
+    }
+
+    /**
+     * Sets the minimum length of ranges that are checked in parallel.
+     *
+     * @param parallelThreshold number of characters, {@link Integer#MAX_VALUE} disables parallel checks.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Sets the pool that runs parallel checks. By default the common pool is used.
+     *
+     * @param pool running the tasks of parallel checks.
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Checks a range of the buffer on the calling thread, see
+     * {@link SpellCheckModule#getMisspelledRanges(Buffer, int, int)}.
+     */
+    private int[] getMisspelledRangesSequentially(Buffer buffer, int start, int end) {
+        char[] chars = new char[Math.max(Math.min(CHUNK_SIZE, end - start), 1)];
+        int[] ranges = new int[16];
+        int count = 0;
+
+        /** Number of characters of an unfinished word at the beginning of chars. */
+        int carried = 0;
+        int position = start;
+        while (position < end) {
+            if (carried == chars.length) {
+                /** The word is longer than the array. */
+                chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+            int length = Math.min(chars.length - carried, end - position);
+            buffer.getChars(position, position + length, chars, carried);
+            int limit = carried + length;
+            /** Position of chars[0] in the buffer. */
+            int offset = position - carried;
+
+            int wordStart = carried > 0 ? 0 : -1;
+            for (int i = carried; i < limit; i++) {
+                if (Buffer.isWordChar(chars[i])) {
+                    if (wordStart < 0) {
+                        wordStart = i;
+                    }
+                } else if (wordStart >= 0) {
+                    if (!dictionary.containsLowerCase(chars, wordStart, i)) {
+                        ranges = add(ranges, count, offset + wordStart, offset + i);
+                        count += 2;
+                    }
+                    wordStart = -1;
                 }
-                word.append(c);
             }
+
+            /** Move an unfinished word to the beginning, it is finished by the next chunk. */
+            carried = wordStart >= 0 ? limit - wordStart : 0;
+            if (carried > 0) {
+                System.arraycopy(chars, wordStart, chars, 0, carried);
+            }
+            position += length;
         }
 
-        /**
-         * Every character of Buffer has been traversed. However the last word might not have
-         * been saved to the list since a following whitespace char didn't exist (buffer end).
-         *
-         * In this case, StringBuilder word is not empty. We must build the string and add it
-         * to the list as last entry.
-         */
-        if (word.toString().length() > 0) {
-            indexEnd = buffer.getContent().size();
-            words.put(new Selection(indexStart, indexEnd), word.toString());
+        /** The last word ends with the range. */
+        if (carried > 0 && !dictionary.containsLowerCase(chars, 0, carried)) {
+            ranges = add(ranges, count, end - carried, end);
+            count += 2;
         }
 
-        return words;
+        return Arrays.copyOf(ranges, count);
     }
 
     /**
-     * Checks if a string is contained in the dictionary. The string is normalized
-     * because the dictionary is normalized too (all words are lowercase).
+     * Appends a range to the array of ranges, which grows if it is full.
      *
-     * @param word to be checked.
-     * @return true if words is not found in the dictionary. False otherwise.
+     * @return the array containing the range.
      */
-    private boolean isWordMisspelled(String word) {
-        return !dictionary.contains(word.toLowerCase());
+    private static int[] add(int[] ranges, int count, int start, int end) {
+        if (count + 2 > ranges.length) {
+            ranges = Arrays.copyOf(ranges, ranges.length * 2);
+        }
+        ranges[count] = start;
+        ranges[count + 1] = end;
+        return ranges;
     }
 
     /**
-     * Loads the file at location {@link SpellCheckModule#PATH_TO_DICTIONARY} and adds each
-     * line in the text file as word in the dictionary.
-     *
-     * Assumes that the dictionary file contains one (normalized) word per line.
-     *
-     * @param path to the dictionary file
+     * Checks a range of a Buffer by splitting it into two halves at a word boundary
+     * until the parts are small enough to be checked sequentially.
      */
-    private void loadDictionary(String path) {
-        InputStream inputStream = SpellCheckModule.class.getResourceAsStream(path);
+    private static final class CheckTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final SpellCheckModule module;
+        private final Buffer buffer;
+        private final int start;
+        private final int end;
+
+        CheckTask(SpellCheckModule module, Buffer buffer, int start, int end) {
+            this.module = module;
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(inputStream))) {
-            String word;
-            while ((word = br.readLine()) != null) {
-                dictionary.add(word);
+        @Override
+        protected int[] compute() {
+            if (end - start <= PARALLEL_CHUNK_SIZE) {
+                return module.getMisspelledRangesSequentially(buffer, start, end);
+            }
+            /** Move the middle behind the word it is in, so no word is split. */
+            int middle = start + (end - start) / 2;
+            while (middle < end && Buffer.isWordChar(buffer.getCharAtPosition(middle))) {
+                middle++;
             }
-        } catch (IOException e) {
-            System.out.println("Can't load dictionary. " + e.getMessage());
+            if (middle == end) {
+                return module.getMisspelledRangesSequentially(buffer, start, end);
+            }
+
+            CheckTask left = new CheckTask(module, buffer, start, middle);
+            left.fork();
+            int[] rightRanges = new CheckTask(module, buffer, middle, end).compute();
+            int[] leftRanges = left.join();
+
+            int[] ranges = Arrays.copyOf(leftRanges, leftRanges.length + rightRanges.length);
+            System.arraycopy(rightRanges, 0, ranges, leftRanges.length, rightRanges.length);
+            return ranges;
         }
     }
 }
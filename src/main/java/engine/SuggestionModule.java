@@ -0,0 +1,377 @@
+package engine;
+
+import engine.interfaces.IDictionary;
+import engine.interfaces.ISuggestionModule;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class suggests words of a dictionary for misspelled words with the symmetric
+ * delete algorithm (SymSpell). Two words have an edit distance of at most 2 only if
+ * they have a common variant with at most 2 characters deleted from each of them. So
+ * the variants of all words of the dictionary are indexed once, and a lookup only
+ * generates the few variants of the misspelled word and verifies the words found with
+ * them, instead of comparing the misspelled word with every word of the dictionary.
+ *
+ * Like in SymSpell, only the first {@link SuggestionModule#PREFIX_LENGTH} characters
+ * of a word are used for its variants, which keeps the index small. The index stores a
+ * hash of each variant together with the index of its word in one sorted long array,
+ * so it doesn't need a String per variant.
+ *
+ * The index is built on a background thread on the first request. Until it is ready,
+ * no suggestions are returned, so the caller never waits for it.
+ *
+ * The index of a large dictionary needs tens of megabytes and about a second to build,
+ * so Engines share one SuggestionModule per dictionary, see
+ * {@link SuggestionModule#forDictionary(IDictionary)}.
+ */
+public class SuggestionModule implements ISuggestionModule {
+    /** Maximum edit distance of suggestions. */
+    public static final int MAX_DISTANCE = 2;
+
+    /** Number of characters at the beginning of a word from which variants are generated. */
+    private static final int PREFIX_LENGTH = 7;
+
+    /** Number of variants of a prefix: itself, without one and without two characters. */
+    private static final int MAX_VARIANTS = 1 + PREFIX_LENGTH + PREFIX_LENGTH * (PREFIX_LENGTH - 1) / 2;
+
+    /** Single daemon thread shared by all SuggestionModules that builds the indexes. */
+    private static final ExecutorService INDEXER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "suggestion-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Shared SuggestionModules by their dictionary. Dictionaries are compared by identity.
+     * An unused SuggestionModule and its index can be garbage collected, so the values
+     * are weak as well, otherwise they would keep their dictionary reachable.
+     */
+    private static final Map<IDictionary, WeakReference<SuggestionModule>> shared = new WeakHashMap<>();
+
+    private final IDictionary dictionary;
+
+    /** Index of the dictionary, null until it is requested for the first time. */
+    private final AtomicReference<Future<Index>> index = new AtomicReference<>();
+
+    /**
+     * @param dictionary of which words are suggested.
+     */
+    public SuggestionModule(IDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Returns the SuggestionModule shared by all users of a dictionary. It is created if
+     * the dictionary has none yet.
+     *
+     * @param dictionary of which words are suggested.
+     * @return the shared SuggestionModule of the dictionary.
+     */
+    public static synchronized SuggestionModule forDictionary(IDictionary dictionary) {
+        WeakReference<SuggestionModule> reference = shared.get(dictionary);
+        SuggestionModule suggestionModule = reference != null ? reference.get() : null;
+        if (suggestionModule == null) {
+            suggestionModule = new SuggestionModule(dictionary);
+            shared.put(dictionary, new WeakReference<>(suggestionModule));
+        }
+        return suggestionModule;
+    }
+
+    /**
+     * Starts building the index in the background if it hasn't been started yet.
+     */
+    public void prepare() {
+        if (index.get() == null) {
+            FutureTask<Index> task = new FutureTask<>(() -> Index.build(dictionary));
+            if (index.compareAndSet(null, task)) {
+                INDEXER.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Checks if the index has been built, i.e. if suggestions are returned.
+     *
+     * @return true if the index is ready.
+     */
+    public boolean isReady() {
+        Future<Index> future = index.get();
+        return future != null && future.isDone();
+    }
+
+    /**
+     * Builds the index if necessary and waits until it is ready.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public void awaitReady() throws InterruptedException {
+        prepare();
+        getIndex(true);
+    }
+
+    /**
+     * Returns words of the dictionary with an edit distance of at most
+     * {@link SuggestionModule#MAX_DISTANCE} (insertions, deletions, substitutions and
+     * transpositions of adjacent characters). Suggestions are ordered by distance. If
+     * the word is capitalized, so are the suggestions.
+     *
+     * If the index isn't ready yet, its construction is started and no suggestions
+     * are returned.
+     *
+     * @param word to be corrected.
+     * @param maxCount maximum number of returned suggestions.
+     * @return list of suggested words, which may be empty.
+     */
+    public List<String> getSuggestions(String word, int maxCount) {
+        prepare();
+        Index currentIndex;
+        try {
+            currentIndex = getIndex(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+        if (currentIndex == null || word.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> suggestions = currentIndex.lookup(word.toLowerCase(), maxCount);
+        if (Character.isUpperCase(word.charAt(0))) {
+            suggestions.replaceAll(suggestion -> Character.toUpperCase(suggestion.charAt(0)) + suggestion.substring(1));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Returns the approximate number of bytes of the index including the words it
+     * references, or 0 if it isn't ready yet.
+     *
+     * @return memory footprint of the index.
+     */
+    public long getMemorySize() {
+        try {
+            Index currentIndex = getIndex(false);
+            return currentIndex == null ? 0 : currentIndex.memorySize;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    /**
+     * @param wait true to wait for the index to be built.
+     * @return the index or null if it isn't ready and shouldn't be waited for.
+     */
+    private Index getIndex(boolean wait) throws InterruptedException {
+        Future<Index> future = index.get();
+        if (future == null || (!wait && !future.isDone())) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            System.out.println("Can't build suggestion index. " + e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Sorted hashes of the variants of the words of a dictionary.
+     */
+    private static class Index {
+        final String[] words;
+
+        /** Hash of a variant in the upper and index of its word in the lower 32 bits, sorted. */
+        final long[] entries;
+
+        final long memorySize;
+
+        Index(String[] words, long[] entries) {
+            this.words = words;
+            this.entries = entries;
+
+            /** Object headers and array references of the Strings, plus their characters. */
+            long size = 8L * entries.length + 4L * words.length;
+            for (String word : words) {
+                size += 40 + 2L * word.length();
+            }
+            memorySize = size;
+        }
+
+        static Index build(IDictionary dictionary) {
+            /**
+             * The size isn't used to presize the list, since an affix dictionary would have
+             * to enumerate all its words for it.
+             */
+            List<String> wordList = new ArrayList<>();
+            dictionary.forEachWord(wordList::add);
+            String[] words = wordList.toArray(new String[0]);
+
+            long[] entries = new long[1024];
+            int count = 0;
+            int[] hashes = new int[MAX_VARIANTS];
+            for (int i = 0; i < words.length; i++) {
+                int variantCount = getVariantHashes(words[i], hashes);
+                if (count + variantCount > entries.length) {
+                    entries = Arrays.copyOf(entries, Math.max(entries.length * 2, count + variantCount));
+                }
+                for (int j = 0; j < variantCount; j++) {
+                    entries[count++] = toEntry(hashes[j], i);
+                }
+            }
+            entries = Arrays.copyOf(entries, count);
+            Arrays.sort(entries);
+
+            /** Words with repeated characters have equal variants, which are only kept once. */
+            int unique = 0;
+            for (int i = 0; i < entries.length; i++) {
+                if (unique == 0 || entries[i] != entries[unique - 1]) {
+                    entries[unique++] = entries[i];
+                }
+            }
+            return new Index(words, Arrays.copyOf(entries, unique));
+        }
+
+        List<String> lookup(String word, int maxCount) {
+            int[] hashes = new int[MAX_VARIANTS];
+            int variantCount = getVariantHashes(word, hashes);
+
+            /** Verify every word that shares a variant with the misspelled word. */
+            Set<Integer> candidates = new HashSet<>();
+            List<String> suggestions = new ArrayList<>();
+            List<Integer> distances = new ArrayList<>();
+            int[][] rows = new int[3][word.length() + MAX_DISTANCE + 2];
+            for (int variant = 0; variant < variantCount; variant++) {
+                int hash = hashes[variant];
+                for (int i = firstEntry(hash); i < entries.length && (int) (entries[i] >> 32) == hash; i++) {
+                    int wordIndex = (int) entries[i];
+                    if (!candidates.add(wordIndex)) {
+                        continue;
+                    }
+                    String candidate = words[wordIndex];
+                    int distance = getDistance(word, candidate, rows);
+                    if (distance <= MAX_DISTANCE) {
+                        suggestions.add(candidate);
+                        distances.add(distance);
+                    }
+                }
+            }
+
+            Integer[] order = new Integer[suggestions.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingInt(distances::get)
+                    .thenComparingInt(i -> Math.abs(suggestions.get(i).length() - word.length()))
+                    .thenComparing(suggestions::get));
+
+            List<String> result = new ArrayList<>(Math.min(maxCount, order.length));
+            for (int i = 0; i < order.length && i < maxCount; i++) {
+                result.add(suggestions.get(order[i]));
+            }
+            return result;
+        }
+
+        /**
+         * Returns the index of the first entry of a hash.
+         */
+        private int firstEntry(int hash) {
+            int position = Arrays.binarySearch(entries, toEntry(hash, 0));
+            return position >= 0 ? position : -position - 1;
+        }
+
+        private static long toEntry(int hash, int wordIndex) {
+            return ((long) hash << 32) | (wordIndex & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Computes the hashes of the variants of the prefix of a word with up to
+         * {@link SuggestionModule#MAX_DISTANCE} characters deleted.
+         *
+         * @param hashes array receiving the hashes, at least {@link SuggestionModule#MAX_VARIANTS} long.
+         * @return the number of variants.
+         */
+        private static int getVariantHashes(String word, int[] hashes) {
+            int length = Math.min(word.length(), PREFIX_LENGTH);
+            int count = 0;
+            hashes[count++] = hash(word, length, -1, -1);
+            for (int i = 0; i < length; i++) {
+                hashes[count++] = hash(word, length, i, -1);
+                for (int j = i + 1; j < length; j++) {
+                    hashes[count++] = hash(word, length, i, j);
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Hashes the first characters of a word without the characters at two positions.
+         */
+        private static int hash(String word, int length, int skip1, int skip2) {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                if (i != skip1 && i != skip2) {
+                    hash = 31 * hash + word.charAt(i);
+                }
+            }
+            /** Mix in the number of characters, so that variants of different length rarely collide. */
+            return hash * 31 + length - (skip1 >= 0 ? 1 : 0) - (skip2 >= 0 ? 1 : 0);
+        }
+
+        /**
+         * Computes the optimal string alignment distance of two words, i.e. the number of
+         * insertions, deletions, substitutions and transpositions of adjacent characters.
+         *
+         * @param rows three arrays that are long enough for the second word.
+         * @return the distance or a value above {@link SuggestionModule#MAX_DISTANCE}.
+         */
+        private static int getDistance(String a, String b, int[][] rows) {
+            if (Math.abs(a.length() - b.length()) > MAX_DISTANCE || b.length() + 1 > rows[0].length) {
+                return MAX_DISTANCE + 1;
+            }
+            int[] previousPrevious = rows[0];
+            int[] previous = rows[1];
+            int[] current = rows[2];
+            for (int j = 0; j <= b.length(); j++) {
+                previous[j] = j;
+            }
+            for (int i = 1; i <= a.length(); i++) {
+                current[0] = i;
+                int rowMinimum = i;
+                for (int j = 1; j <= b.length(); j++) {
+                    int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                    int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                    if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                        distance = Math.min(distance, previousPrevious[j - 2] + 1);
+                    }
+                    current[j] = distance;
+                    rowMinimum = Math.min(rowMinimum, distance);
+                }
+                if (rowMinimum > MAX_DISTANCE) {
+                    return MAX_DISTANCE + 1;
+                }
+                int[] recycled = previousPrevious;
+                previousPrevious = previous;
+                previous = current;
+                current = recycled;
+            }
+            return previous[b.length()];
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package engine;
+
+/**
+ * This class describes a single modification of the text content: at an offset, a
+ * number of characters were removed and then a text was inserted. Observers can apply
+ * a TextChange to their copy of the text instead of replacing the complete text.
+ *
+ * Every TextChange carries the version of the text it produces. Versions are
+ * incremented by one for every change, so an observer can detect if it missed a change.
+ */
+public class TextChange {
+    /** Number of characters compared at once in {@link TextChange#between(Buffer, Buffer, long)}. */
+    private static final int COMPARE_CHUNK_SIZE = 4096;
+
+    private final int offset;
+    private final int removedLength;
+    private final String insertedText;
+    private final long version;
+
+    /**
+     * @param offset position at which characters were removed and inserted
+     * @param removedLength number of characters removed at offset
+     * @param insertedText text inserted at offset after the removal
+     * @param version version of the text after this change
+     */
+    public TextChange(int offset, int removedLength, String insertedText, long version) {
+        this.offset = offset;
+        this.removedLength = removedLength;
+        this.insertedText = insertedText;
+        this.version = version;
+    }
+
+    /**
+     * Computes the change that turns one text into another by skipping their common
+     * prefix and suffix. The texts are compared in chunks, so this is cheap compared to
+     * replacing the whole text in an observer, but still O(n) in the worst case.
+     *
+     * @param before text before the change
+     * @param after text after the change
+     * @param version version of the text after the change
+     * @return the computed TextChange
+     */
+    public static TextChange between(Buffer before, Buffer after, long version) {
+        int maxLength = Math.min(before.getSize(), after.getSize());
+        char[] beforeChunk = new char[COMPARE_CHUNK_SIZE];
+        char[] afterChunk = new char[COMPARE_CHUNK_SIZE];
+
+        int prefix = 0;
+        while (prefix < maxLength) {
+            int count = Math.min(COMPARE_CHUNK_SIZE, maxLength - prefix);
+            before.getChars(prefix, prefix + count, beforeChunk, 0);
+            after.getChars(prefix, prefix + count, afterChunk, 0);
+
+            int i = 0;
+            while (i < count && beforeChunk[i] == afterChunk[i]) {
+                i++;
+            }
+            prefix += i;
+            if (i < count) {
+                break;
+            }
+        }
+
+        int suffix = 0;
+        while (suffix < maxLength - prefix) {
+            int count = Math.min(COMPARE_CHUNK_SIZE, maxLength - prefix - suffix);
+            before.getChars(before.getSize() - suffix - count, before.getSize() - suffix, beforeChunk, 0);
+            after.getChars(after.getSize() - suffix - count, after.getSize() - suffix, afterChunk, 0);
+
+            int i = count - 1;
+            while (i >= 0 && beforeChunk[i] == afterChunk[i]) {
+                i--;
+            }
+            suffix += count - 1 - i;
+            if (i >= 0) {
+                break;
+            }
+        }
+
+        char[] inserted = new char[after.getSize() - prefix - suffix];
+        after.getChars(prefix, prefix + inserted.length, inserted, 0);
+        return new TextChange(prefix, before.getSize() - prefix - suffix, new String(inserted), version);
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getRemovedLength() {
+        return removedLength;
+    }
+
+    public String getInsertedText() {
+        return insertedText;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the change of the text length caused by this change.
+     *
+     * @return number of inserted minus number of removed characters.
+     */
+    public int getLengthDelta() {
+        return insertedText.length() - removedLength;
+    }
+
+    @Override
+    public String toString() {
+        return "TextChange{offset=" + offset + ", removedLength=" + removedLength +
+                ", insertedText='" + insertedText + "', version=" + version + "}";
+    }
+}
@@ -1,37 +1,636 @@
 package engine;
 
 import engine.interfaces.MementoCaretaker;
+import io.UndoJournal;
 
-import java.util.Stack;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class handles Undos and Redos by using the Memento design pattern.
  *
- * It does so by maintaining Mementos (state of Engine) over two stacks.
+ * It does so by maintaining Mementos over two stacks. Depending on the {@link Mode}
+ * a Memento is either a complete state of the Engine or a single edit.
+ *
+ * The history is bounded by a maximum number of entries and a maximum number of bytes.
+ * If a new entry exceeds the budget, the oldest entries are evicted, so they can't be
+ * undone anymore.
+ *
+ * In {@link Mode#OPERATION_LOG} consecutive edits are grouped into one undo step, see
+ * {@link EditOperation#merge(EditOperation)}. A group ends when the Engine calls
+ * {@link UndoModule#endGroup()} (e.g. the cursor was moved), after an undo or redo, or
+ * if no edit was saved for longer than the group timeout.
+ *
+ * In {@link Mode#TREE} the history is a tree of versions instead of two stacks. If the
+ * tree exceeds the budget, the oldest versions that are no ancestors of the current
+ * version are discarded, see {@link UndoModule#evictOldestVersions()}.
+ *
+ * Optionally the history of {@link Mode#OPERATION_LOG} is kept in an {@link UndoJournal}
+ * instead of the stacks. Then only a small window of recently used entries is kept in
+ * memory and older entries are read from the journal when they are undone. The budget
+ * applies to the records of the journal.
+ *
+ * Entries that are older than a number of steps are rarely undone, so they are
+ * compressed by a background thread, see {@link Memento#compress()}. Compressed entries
+ * count with their compressed size against the budget. They are decompressed when they
+ * are undone and compressed again once they are old enough.
  */
 public class UndoModule implements MementoCaretaker {
-    private Stack<Memento> undoStack;
-    private Stack<Memento> redoStack;
+    /**
+     * The ways in which the history can be stored.
+     */
+    public enum Mode {
+        /** Every Memento is a complete state of the Engine after an edit. */
+        SNAPSHOT,
+        /**
+         * Every Memento only contains the edit that led to the state. Memory per undo
+         * step is proportional to the size of the edit.
+         */
+        OPERATION_LOG,
+        /**
+         * Every Memento is a complete state and a node of a tree of versions. Saving
+         * after an undo starts a new branch instead of discarding the undone states, and
+         * every version can be recovered directly, see {@link UndoModule#jumpTo(int)}.
+         * Since a Memento references a copy of the Buffer, this is only efficient with a
+         * storage backend whose copies share their structure (the rope). A gap buffer is
+         * copied completely for every version and counts with its complete size against
+         * the budget, so fewer versions are kept.
+         */
+        TREE
+    }
+
+    /**
+     * Mode of newly created UndoModules. It can be chosen at startup with the
+     * system property {@code undo.mode}, e.g. {@code -Dundo.mode=SNAPSHOT}.
+     */
+    private static Mode defaultMode =
+            Mode.valueOf(System.getProperty("undo.mode", Mode.OPERATION_LOG.name()));
+
+    /** Default maximum number of entries, can be set with the system property {@code undo.maxEntries}. */
+    private static int defaultMaxEntries = Integer.getInteger("undo.maxEntries", 10000);
+
+    /** Default maximum number of bytes, can be set with the system property {@code undo.maxBytes}. */
+    private static long defaultMaxBytes = Long.getLong("undo.maxBytes", 64L * 1024 * 1024);
+
+    /**
+     * Default idle time in milliseconds after which a new undo step starts. It can be set
+     * with the system property {@code undo.groupTimeout}, 0 disables grouping.
+     */
+    private static long defaultGroupTimeout = Long.getLong("undo.groupTimeout", 1000);
+
+    /**
+     * Number of journal entries kept in memory, can be set with the system property
+     * {@code undo.hotWindow}.
+     */
+    private static int hotWindowSize = Integer.getInteger("undo.hotWindow", 128);
+
+    /**
+     * Number of steps after which an entry is compressed, can be set with the system
+     * property {@code undo.compressAfter}, 0 disables compression.
+     */
+    private static int defaultCompressAfter = Integer.getInteger("undo.compressAfter", 100);
+
+    /** Single daemon thread shared by all UndoModules that compresses old entries. */
+    private static final ExecutorService COMPRESSOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "undo-compression");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Mode mode;
+
+    /** Stacks with the most recent entry at the head and the oldest entry at the tail. */
+    private Deque<Memento> undoStack;
+    private Deque<Memento> redoStack;
+
+    private int maxEntries;
+    private long maxBytes;
+
+    /**
+     * Estimated number of bytes of all Mementos on both stacks or in the tree. It changes
+     * when the compression thread compresses an entry.
+     */
+    private final AtomicLong retainedSize = new AtomicLong();
+
+    /** Number of entries evicted because the budget was exceeded. */
+    private long evictedCount = 0;
+
+    private long groupTimeout = defaultGroupTimeout;
+
+    /** Indicates if the next edit may be merged into the most recent entry. */
+    private boolean isGroupOpen = false;
+
+    /** Time of the most recent save in milliseconds. */
+    private long lastSaveTime;
+
+    /** Journal containing the history or null if the history is kept in the stacks. */
+    private UndoJournal journal;
+
+    /**
+     * All versions of {@link Mode#TREE} by their id, oldest first. Ids are never reused,
+     * so the ids of evicted versions are missing.
+     */
+    private Map<Integer, Version> versions = new LinkedHashMap<>();
+
+    /** Id of the next version of {@link Mode#TREE}. The initial root has the id 0. */
+    private int nextVersionId = 0;
+
+    /** Version of {@link Mode#TREE} that represents the current state. */
+    private Version currentVersion;
+
+    /** Number of newer steps after which the texts of an entry are compressed. */
+    private int compressAfter = defaultCompressAfter;
+
+    /** Executor running the compression of old entries. */
+    private Executor compressionExecutor = COMPRESSOR;
+
+    /**
+     * The most recent saved or decompressed entries, oldest first, which are not yet old
+     * enough to be compressed.
+     */
+    private Deque<Memento> uncompressedEntries = new ArrayDeque<>();
+
+    /** Bytes of the compressed texts of all entries before and after they were compressed. */
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong compressedEntryCount = new AtomicLong();
+
+    /** Recently used entries of the {@link UndoModule#journal} by their index. */
+    private Map<Integer, Memento> hotEntries = new LinkedHashMap<Integer, Memento>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Memento> eldest) {
+            return size() > hotWindowSize;
+        }
+    };
 
     public UndoModule() {
-        undoStack = new Stack<>();
-        redoStack = new Stack<>();
+        this(defaultMode);
+    }
+
+    public UndoModule(Mode mode) {
+        this(mode, defaultMaxEntries, defaultMaxBytes);
+    }
+
+    /**
+     * @param mode in which the history is stored.
+     * @param maxEntries maximum number of entries on both stacks.
+     * @param maxBytes maximum estimated number of bytes of all entries.
+     */
+    public UndoModule(Mode mode, int maxEntries, long maxBytes) {
+        this.mode = mode;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        undoStack = new ArrayDeque<>();
+        redoStack = new ArrayDeque<>();
+    }
+
+    public Mode getMode() {
+        return mode;
     }
 
     public void save(Memento memento) {
+        long now = System.currentTimeMillis();
+        if (journal != null) {
+            saveToJournal(memento.getEdit(), now);
+            return;
+        }
+        if (mode == Mode.TREE) {
+            saveToTree(memento, now);
+            return;
+        }
+        memento = mergeIntoGroup(memento, now);
+
         undoStack.push(memento);
+        memento.attach(this);
+        scheduleCompression(memento);
 
         /** Clear redoStack to implement mose common undo/redo policy. */
+        redoStack.forEach(Memento::detach);
         redoStack.clear();
+
+        evictOldestEntries();
+
+        isGroupOpen = mode == Mode.OPERATION_LOG && groupTimeout > 0;
+        lastSaveTime = now;
+    }
+
+    /**
+     * Appends an edit to the {@link UndoModule#journal} or replaces the most recent
+     * entry if the edit belongs to its group.
+     */
+    private void saveToJournal(EditOperation edit, long now) {
+        int undoCount = journal.getUndoCount();
+        removeHotEntriesFrom(undoCount);
+
+        EditOperation merged = null;
+        if (isGroupOpen && now - lastSaveTime <= groupTimeout && undoCount > 0) {
+            merged = getJournalEntry(undoCount - 1).getEdit().merge(edit);
+        }
+        if (merged != null) {
+            journal.truncate(undoCount - 1);
+            removeHotEntriesFrom(undoCount - 1);
+            edit = merged;
+        }
+        journal.append(edit);
+        hotEntries.put(journal.getEntryCount() - 1, new Memento(edit));
+        evictOldestEntries();
+
+        isGroupOpen = groupTimeout > 0;
+        lastSaveTime = now;
+    }
+
+    /**
+     * Adds a state as new version below the current version. If the edit that led to
+     * the state belongs to the group of the current version, the current version is
+     * replaced instead.
+     */
+    private void saveToTree(Memento memento, long now) {
+        Version current = getCurrentTreeVersion();
+
+        if (isGroupOpen && now - lastSaveTime <= groupTimeout && current.parent != null &&
+                current.children.isEmpty() && memento.getEdit() != null && current.memento.getEdit() != null) {
+            EditOperation merged = current.memento.getEdit().merge(memento.getEdit());
+            if (merged != null) {
+                current.memento.detach();
+                if (uncompressedEntries.peekLast() == current.memento) {
+                    uncompressedEntries.removeLast();
+                }
+                current.memento = memento.withEdit(merged);
+                current.memento.attach(this);
+                scheduleCompression(current.memento);
+                lastSaveTime = now;
+                return;
+            }
+        }
+
+        Version version = new Version(nextVersionId++, current, memento);
+        versions.put(version.id, version);
+        current.children.add(version);
+        current.lastChild = version;
+        currentVersion = version;
+        memento.attach(this);
+        scheduleCompression(memento);
+        evictOldestEntries();
+
+        isGroupOpen = groupTimeout > 0;
+        lastSaveTime = now;
+    }
+
+    /**
+     * Sets the state at which the history starts, e.g. after a file has been opened. It
+     * is the root of the tree in {@link Mode#TREE} and ignored in the other modes.
+     *
+     * @param memento initial state.
+     */
+    public void setInitialState(Memento memento) {
+        if (mode == Mode.TREE) {
+            versions.values().forEach(version -> version.memento.detach());
+            versions.clear();
+            nextVersionId = 0;
+            currentVersion = new Version(nextVersionId++, null, memento);
+            versions.put(currentVersion.id, currentVersion);
+        }
+    }
+
+    /**
+     * Recovers any version of the tree in {@link Mode#TREE}. Undo and redo continue from
+     * that version. This is O(1) since every version references its complete state.
+     *
+     * @param id of the version.
+     * @return the state of the version.
+     * @throws IllegalArgumentException if the version doesn't exist or has been evicted.
+     */
+    public Memento jumpTo(int id) {
+        if (mode != Mode.TREE) {
+            throw new IllegalStateException("Versions are only available in mode " + Mode.TREE);
+        }
+        endGroup();
+        getCurrentTreeVersion();
+        currentVersion = getVersion(id);
+        return currentVersion.memento;
+    }
+
+    /**
+     * Returns the id of the version that represents the current state in {@link Mode#TREE}.
+     *
+     * @return id of the current version.
+     */
+    public int getCurrentVersion() {
+        return getCurrentTreeVersion().id;
+    }
+
+    /**
+     * Returns the id of the version from which a version was created in {@link Mode#TREE}.
+     *
+     * @param id of a version.
+     * @return id of the parent version or -1 for the root.
+     * @throws IllegalArgumentException if the version doesn't exist or has been evicted.
+     */
+    public int getParentVersion(int id) {
+        Version parent = getVersion(id).parent;
+        return parent != null ? parent.id : -1;
+    }
+
+    /**
+     * Checks if a version of the tree in {@link Mode#TREE} exists, i.e. it has been
+     * created and not been evicted.
+     *
+     * @param id of a version.
+     * @return true if the version exists.
+     */
+    public boolean hasVersion(int id) {
+        return versions.containsKey(id);
+    }
+
+    private Version getVersion(int id) {
+        Version version = versions.get(id);
+        if (version == null) {
+            throw new IllegalArgumentException("Version " + id + " doesn't exist or has been evicted.");
+        }
+        return version;
+    }
+
+    /**
+     * Returns the current version of the tree. The tree is created with the initial
+     * state of the Engine as root if no initial state has been set.
+     */
+    private Version getCurrentTreeVersion() {
+        if (currentVersion == null) {
+            setInitialState(Memento.getInitialMemento());
+        }
+        return currentVersion;
+    }
+
+    /**
+     * Keeps the history in a journal from now on. The current history is discarded and
+     * replaced by the history in the journal. Only supported in {@link Mode#OPERATION_LOG}.
+     *
+     * @param journal containing the history.
+     */
+    public void attachJournal(UndoJournal journal) {
+        if (mode != Mode.OPERATION_LOG) {
+            throw new IllegalStateException("A journal requires mode " + Mode.OPERATION_LOG);
+        }
+        clear();
+        this.journal = journal;
+    }
+
+    public UndoJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Discards the complete history. An attached journal is closed.
+     */
+    public void clear() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("Error while closing the undo journal.");
+                e.printStackTrace();
+            }
+            journal = null;
+        }
+        hotEntries.clear();
+        uncompressedEntries.clear();
+        versions.values().forEach(version -> version.memento.detach());
+        versions.clear();
+        currentVersion = null;
+        undoStack.forEach(Memento::detach);
+        undoStack.clear();
+        redoStack.forEach(Memento::detach);
+        redoStack.clear();
+        evictedCount = 0;
+        endGroup();
+    }
+
+    /**
+     * Returns an entry of the {@link UndoModule#journal}. Entries that are not in memory
+     * are read from the journal.
+     */
+    private Memento getJournalEntry(int index) {
+        Memento memento = hotEntries.get(index);
+        if (memento == null) {
+            memento = new Memento(journal.read(index));
+            hotEntries.put(index, memento);
+        }
+        return memento;
+    }
+
+    private void removeHotEntriesFrom(int index) {
+        hotEntries.keySet().removeIf(key -> key >= index);
+    }
+
+    /**
+     * Ends the current group, so that the next edit becomes a new undo step.
+     */
+    public void endGroup() {
+        isGroupOpen = false;
+    }
+
+    /**
+     * Sets the idle time after which a new undo step starts.
+     *
+     * @param groupTimeout time in milliseconds, 0 disables grouping.
+     */
+    public void setGroupTimeout(long groupTimeout) {
+        this.groupTimeout = groupTimeout;
+        endGroup();
+    }
+
+    /**
+     * Sets after how many steps an entry is compressed.
+     *
+     * @param compressAfter number of steps, 0 disables compression.
+     */
+    public void setCompressAfter(int compressAfter) {
+        this.compressAfter = compressAfter;
+        if (compressAfter <= 0) {
+            uncompressedEntries.clear();
+        }
+    }
+
+    /**
+     * Sets the executor that compresses old entries, e.g. to compress them synchronously
+     * in tests. By default a shared background thread is used.
+     *
+     * @param compressionExecutor executor running the compression.
+     */
+    public void setCompressionExecutor(Executor compressionExecutor) {
+        this.compressionExecutor = compressionExecutor;
+    }
+
+    /**
+     * Remembers a new entry and compresses the entry that became older than
+     * {@link UndoModule#compressAfter} steps with it.
+     */
+    private void scheduleCompression(Memento memento) {
+        if (compressAfter <= 0) {
+            return;
+        }
+        uncompressedEntries.addLast(memento);
+        /** Decompressed entries may have made the queue longer than one entry above the limit. */
+        while (uncompressedEntries.size() > compressAfter) {
+            Memento oldEntry = uncompressedEntries.removeFirst();
+            compressionExecutor.execute(() -> compress(oldEntry));
+        }
+    }
+
+    /**
+     * Compresses an entry if it is still part of the history. The compression is
+     * accounted by {@link UndoModule#compressionChanged(long, long, long, int)}.
+     */
+    private void compress(Memento memento) {
+        if (memento.isAttachedTo(this)) {
+            memento.compress();
+        }
+    }
+
+    /**
+     * Is called by a Memento of this history when its size or compression changes, when
+     * it is added to the history or when it is removed. It may be called by the
+     * compression thread.
+     *
+     * @param sizeDelta change of the size of the Memento.
+     * @param uncompressedDelta change of the uncompressed bytes of its compressed texts.
+     * @param compressedDelta change of the compressed bytes of its compressed texts.
+     * @param compressedEntryDelta change of the number of compressed entries.
+     */
+    void compressionChanged(long sizeDelta, long uncompressedDelta, long compressedDelta, int compressedEntryDelta) {
+        retainedSize.addAndGet(sizeDelta);
+        uncompressedBytes.addAndGet(uncompressedDelta);
+        compressedBytes.addAndGet(compressedDelta);
+        compressedEntryCount.addAndGet(compressedEntryDelta);
+    }
+
+    /**
+     * Is called by a Memento of this history when it has been decompressed because it is
+     * accessed. This happens on the thread using the history, e.g. during an undo. The
+     * entry is compressed again once {@link UndoModule#compressAfter} newer entries are
+     * saved. It isn't compressed right away, since its texts are being accessed.
+     *
+     * @param memento decompressed entry.
+     */
+    void entryDecompressed(Memento memento) {
+        if (compressAfter > 0) {
+            uncompressedEntries.remove(memento);
+            uncompressedEntries.addLast(memento);
+        }
+    }
+
+    /**
+     * Returns the number of entries of the history whose texts are compressed.
+     *
+     * @return number of compressed entries.
+     */
+    public long getCompressedEntryCount() {
+        return compressedEntryCount.get();
+    }
+
+    /**
+     * Returns the number of bytes saved by the compressed entries of the history.
+     *
+     * @return uncompressed minus compressed bytes of all compressed texts.
+     */
+    public long getCompressionSavings() {
+        return uncompressedBytes.get() - compressedBytes.get();
+    }
+
+    /**
+     * Returns the ratio of the compressed size to the uncompressed size of all
+     * compressed texts of the history.
+     *
+     * @return compression ratio, 1.0 if nothing has been compressed.
+     */
+    public double getCompressionRatio() {
+        long uncompressed = uncompressedBytes.get();
+        return uncompressed > 0 ? (double) compressedBytes.get() / uncompressed : 1.0;
+    }
+
+    /**
+     * Merges a new edit with the most recent entry if the current group is still open.
+     * The merged entry is removed from the stack.
+     *
+     * @return the merged Memento or the passed Memento if it couldn't be merged.
+     */
+    private Memento mergeIntoGroup(Memento memento, long now) {
+        if (!isGroupOpen || now - lastSaveTime > groupTimeout ||
+                undoStack.isEmpty() || !memento.isEdit()) {
+            return memento;
+        }
+        EditOperation merged = undoStack.peek().getEdit().merge(memento.getEdit());
+        if (merged == null) {
+            return memento;
+        }
+        Memento mergedMemento = undoStack.pop();
+        mergedMemento.detach();
+        if (uncompressedEntries.peekLast() == mergedMemento) {
+            uncompressedEntries.removeLast();
+        }
+        return new Memento(merged);
     }
 
     /**
      * Is called for every undo operation. Last Memento (state) in {@link UndoModule#undoStack}
      * will be reverted and pushed to the {@link UndoModule#redoStack}.
      *
+     * In {@link Mode#OPERATION_LOG} the returned Memento contains the inverse of the
+     * last edit, or null if there is nothing to undo.
+     *
      * @return Memento that should be new state of Engine and UI.
      */
     public Memento undo() {
+        endGroup();
+
+        if (journal != null) {
+            int index = journal.getUndoCount() - 1;
+            if (index < 0) {
+                return null;
+            }
+            Memento memento = getJournalEntry(index);
+            journal.setUndoCount(index);
+            return memento.inverse();
+        }
+
+        if (mode == Mode.TREE) {
+            Version current = getCurrentTreeVersion();
+            if (current.parent == null) {
+                return null;
+            }
+            /** Redo returns to the version that has just been undone. */
+            current.parent.lastChild = current;
+            currentVersion = current.parent;
+            return currentVersion.memento;
+        }
+
+        if (mode == Mode.OPERATION_LOG) {
+            if (undoStack.isEmpty()) {
+                return null;
+            }
+            Memento memento = undoStack.pop();
+            redoStack.push(memento);
+            return memento.inverse();
+        }
+
+        /**
+         * If entries have been evicted, the oldest remaining state is the earliest known
+         * state. It can't be undone because the state before it is unknown.
+         */
+        if (evictedCount > 0 && undoStack.size() <= 1) {
+            return null;
+        }
+
         /**
          * If {@link UndoModule#undoStack} is not empty, push most recent state n to
          * {@link UndoModule#redoStack}. Return the state n-1 if {@link UndoModule#undoStack}
@@ -53,9 +652,42 @@ public class UndoModule implements MementoCaretaker {
      * Is called for every redo operation. Last undone Memento in {@link UndoModule#redoStack}
      * will be recovered and pushed to the {@link UndoModule#undoStack}.
      *
+     * In {@link Mode#OPERATION_LOG} the returned Memento contains the undone edit, or
+     * null if there is nothing to redo.
+     *
      * @return Memento that should be new state of Engine and GUI.
      */
     public Memento redo() {
+        endGroup();
+
+        if (journal != null) {
+            int index = journal.getUndoCount();
+            if (index >= journal.getEntryCount()) {
+                return null;
+            }
+            Memento memento = getJournalEntry(index);
+            journal.setUndoCount(index + 1);
+            return memento;
+        }
+
+        if (mode == Mode.TREE) {
+            Version child = getCurrentTreeVersion().lastChild;
+            if (child == null) {
+                return null;
+            }
+            currentVersion = child;
+            return child.memento;
+        }
+
+        if (mode == Mode.OPERATION_LOG) {
+            if (redoStack.isEmpty()) {
+                return null;
+            }
+            Memento memento = redoStack.pop();
+            undoStack.push(memento);
+            return memento;
+        }
+
         /**
          * If {@link UndoModule#undoStack} is not empty, push most recent state n to
          * {@link UndoModule#redoStack} and return it. If {@link UndoModule#undoStack} is empty,
@@ -63,7 +695,7 @@ public class UndoModule implements MementoCaretaker {
          * {@link UndoModule#redoStack}. If {@link UndoModule#redoStack} is empty as well,
          * then there hasn't been any interaction with the text editor yet, so we return a zero-state.
          */
-        if (!redoStack.empty()) {
+        if (!redoStack.isEmpty()) {
             Memento memento = redoStack.pop();
             undoStack.push(memento);
             return memento;
@@ -75,4 +707,146 @@ public class UndoModule implements MementoCaretaker {
 
         return Memento.getInitialMemento();
     }
+
+    /**
+     * Changes the budget of the history. Entries exceeding the new budget are evicted.
+     *
+     * @param maxEntries maximum number of entries on both stacks.
+     * @param maxBytes maximum estimated number of bytes of all entries.
+     */
+    public void setBudget(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        evictOldestEntries();
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by the history in memory.
+     *
+     * @return size of all entries in bytes.
+     */
+    public long getRetainedSize() {
+        if (journal != null) {
+            long size = 0;
+            for (Memento memento : hotEntries.values()) {
+                size += memento.getSize();
+            }
+            return size;
+        }
+        return retainedSize.get();
+    }
+
+    public int getEntryCount() {
+        if (journal != null) {
+            return journal.getEntryCount();
+        }
+        if (mode == Mode.TREE) {
+            return versions.size();
+        }
+        return undoStack.size() + redoStack.size();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    /**
+     * Removes the oldest entries of the {@link UndoModule#undoStack} until the history
+     * fits into the budget. The most recent entry is always kept.
+     */
+    private void evictOldestEntries() {
+        if (journal != null) {
+            evictOldestJournalRecords();
+            return;
+        }
+        if (mode == Mode.TREE) {
+            evictOldestVersions();
+            return;
+        }
+        while (undoStack.size() > 1 &&
+                (getEntryCount() > maxEntries || retainedSize.get() > maxBytes)) {
+            undoStack.removeLast().detach();
+            evictedCount++;
+        }
+    }
+
+    /**
+     * Removes the oldest records of the {@link UndoModule#journal} if it exceeds the
+     * budget, where the size of the records counts as bytes. Removing records moves all
+     * other records, so the journal is reduced to seven eighths of the budget at once.
+     * The most recent entry is always kept.
+     */
+    private void evictOldestJournalRecords() {
+        int entryCount = journal.getEntryCount();
+        if (entryCount <= maxEntries && journal.getRecordBytes(0) <= maxBytes) {
+            return;
+        }
+        int maxRemainingEntries = maxEntries - maxEntries / 8;
+        long maxRemainingBytes = maxBytes - maxBytes / 8;
+        int count = 0;
+        while (count < journal.getUndoCount() - 1 &&
+                (entryCount - count > maxRemainingEntries || journal.getRecordBytes(count) > maxRemainingBytes)) {
+            count++;
+        }
+        journal.removeOldest(count);
+        hotEntries.clear();
+        evictedCount += count;
+    }
+
+    /**
+     * Removes the oldest versions of the tree until it fits into the budget. The current
+     * version and its ancestors are kept, so undo and redo along the current branch are
+     * not affected, except for the root: if it has only one child, it is discarded and
+     * its child becomes the new root, which can't be undone anymore.
+     */
+    private void evictOldestVersions() {
+        boolean isEvicted = true;
+        while (isEvicted && (versions.size() > maxEntries || retainedSize.get() > maxBytes)) {
+            /** Removing a version may turn an older parent into a leaf, so repeat until nothing is removed. */
+            isEvicted = false;
+            Iterator<Version> iterator = versions.values().iterator();
+            while (iterator.hasNext() && (versions.size() > maxEntries || retainedSize.get() > maxBytes)) {
+                Version version = iterator.next();
+                if (version == currentVersion) {
+                    continue;
+                }
+                if (version.children.isEmpty()) {
+                    List<Version> siblings = version.parent.children;
+                    siblings.remove(version);
+                    if (version.parent.lastChild == version) {
+                        version.parent.lastChild = siblings.isEmpty() ? null : siblings.get(siblings.size() - 1);
+                    }
+                } else if (version.parent == null && version.children.size() == 1) {
+                    version.children.get(0).parent = null;
+                } else {
+                    continue;
+                }
+                iterator.remove();
+                version.memento.detach();
+                evictedCount++;
+                isEvicted = true;
+            }
+        }
+    }
+
+    /**
+     * Node of the tree of versions in {@link Mode#TREE}.
+     */
+    private static class Version {
+        final int id;
+        Version parent;
+        Memento memento;
+
+        /** Versions created from this version, oldest first. */
+        final List<Version> children = new ArrayList<>();
+
+        /** Most recently created or visited child, which is recovered by a redo. */
+        Version lastChild;
+
+        Version(int id, Version parent, Memento memento) {
+            this.id = id;
+            this.parent = parent;
+            this.memento = memento;
+        }
+    }
 }
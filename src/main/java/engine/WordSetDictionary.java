@@ -0,0 +1,101 @@
+package engine;
+
+import engine.interfaces.IDictionary;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * This class is a dictionary that keeps its words in a hash table. It is immutable after
+ * construction and therefore thread-safe.
+ *
+ * The table uses open addressing and the hash function of {@link String#hashCode()}, so
+ * a word given as range of a char array can be hashed and compared in place, without
+ * creating a String for it.
+ */
+public class WordSetDictionary implements IDictionary {
+    /** Words of the dictionary at their slot, null for empty slots. */
+    private final String[] table;
+    private final int size;
+
+    /**
+     * @param words of the dictionary, which are copied.
+     */
+    public WordSetDictionary(Collection<String> words) {
+        /** At most half of the slots are used, so probe sequences stay short. */
+        int capacity = Integer.highestOneBit(Math.max(words.size(), 1) * 2 - 1) << 1;
+        table = new String[capacity];
+
+        int count = 0;
+        for (String word : words) {
+            int slot = word.hashCode() & (capacity - 1);
+            while (table[slot] != null && !table[slot].equals(word)) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            if (table[slot] == null) {
+                table[slot] = word;
+                count++;
+            }
+        }
+        size = count;
+    }
+
+    public boolean contains(String word) {
+        int slot = word.hashCode() & (table.length - 1);
+        while (table[slot] != null) {
+            if (table[slot].equals(word)) {
+                return true;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return false;
+    }
+
+    public boolean contains(char[] chars, int start, int end) {
+        return contains(chars, start, end, false);
+    }
+
+    public boolean containsLowerCase(char[] chars, int start, int end) {
+        return contains(chars, start, end, true);
+    }
+
+    public void forEachWord(Consumer<String> consumer) {
+        for (String word : table) {
+            if (word != null) {
+                consumer.accept(word);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private boolean contains(char[] chars, int start, int end, boolean toLowerCase) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + (toLowerCase ? Character.toLowerCase(chars[i]) : chars[i]);
+        }
+        int slot = hash & (table.length - 1);
+        while (table[slot] != null) {
+            if (equals(table[slot], chars, start, end, toLowerCase)) {
+                return true;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return false;
+    }
+
+    private static boolean equals(String word, char[] chars, int start, int end, boolean toLowerCase) {
+        if (word.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = toLowerCase ? Character.toLowerCase(chars[i]) : chars[i];
+            if (word.charAt(i - start) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,6 +1,7 @@
 package engine.interfaces;
 
 import engine.Selection;
+import engine.TextChange;
 
 import java.util.List;
 
@@ -18,6 +19,16 @@ public interface EngineObserver {
      */
     void updateText(String content);
 
+    /**
+     * Is invoked when the text content in Engine is modified by an edit.
+     * Only the modification is passed, so it can be applied to the
+     * current text in O(size of the change).
+     *
+     * @param change offset, removed length, inserted text and new
+     *               version of the text
+     */
+    void updateText(TextChange change);
+
     /**
      * Is invoked when cursor position in Engine changes.
      *
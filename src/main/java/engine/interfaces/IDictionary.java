@@ -0,0 +1,59 @@
+package engine.interfaces;
+
+import java.util.function.Consumer;
+
+/**
+ * This interface specifies the API of a dictionary of correctly spelled words that is
+ * used by a spell checker. Implementations must be immutable, so that one dictionary
+ * can be shared by all spell checkers of the process without synchronization.
+ */
+public interface IDictionary {
+    /**
+     * Checks if a word is contained in the dictionary. The word is compared exactly,
+     * i.e. callers have to normalize it like the words of the dictionary.
+     *
+     * @param word to be looked up.
+     * @return true if the word is contained in the dictionary.
+     */
+    boolean contains(String word);
+
+    /**
+     * Checks if a word given as range of a char array is contained in the dictionary,
+     * see {@link IDictionary#contains(String)}.
+     *
+     * @param chars array containing the word.
+     * @param start index of the first character of the word.
+     * @param end index after the last character of the word.
+     * @return true if the word is contained in the dictionary.
+     */
+    boolean contains(char[] chars, int start, int end);
+
+    /**
+     * Checks if a word given as range of a char array is contained in the dictionary
+     * after converting it to lower case. The words of the dictionary are lower case, so
+     * spell checkers can look up words of the text without normalizing them first.
+     * Implementations should not allocate objects for the lookup if their representation
+     * allows it.
+     *
+     * @param chars array containing the word.
+     * @param start index of the first character of the word.
+     * @param end index after the last character of the word.
+     * @return true if the lower case word is contained in the dictionary.
+     */
+    boolean containsLowerCase(char[] chars, int start, int end);
+
+    /**
+     * Passes every word of the dictionary to a consumer, e.g. to build an index of the
+     * words. The order of the words is not specified.
+     *
+     * @param consumer of the words.
+     */
+    void forEachWord(Consumer<String> consumer);
+
+    /**
+     * Returns the number of words in the dictionary.
+     *
+     * @return number of words.
+     */
+    int size();
+}
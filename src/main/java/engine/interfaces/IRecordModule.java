@@ -35,6 +35,14 @@ public interface IRecordModule {
      */
     RecordModule clear();
 
+    /**
+     * Replaces the currently stored macro by the passed Commands, e.g. by a macro
+     * loaded from a file.
+     *
+     * @param commands of the new macro.
+     */
+    void load(List<Command> commands);
+
     /**
      * Returns the recorded macro as a list of Commands that can be replayed
      * by the caller in order.
@@ -42,4 +50,12 @@ public interface IRecordModule {
      * @return the macro as a list of recorded Commands
      */
     List<Command> getReplayList();
+
+    /**
+     * Returns the recorded macro compiled into a shorter list of Commands with the
+     * same effect, which is replayed instead of the recorded Commands.
+     *
+     * @return the compiled macro as a list of Commands
+     */
+    List<Command> compile();
 }
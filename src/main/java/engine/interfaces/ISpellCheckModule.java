@@ -18,4 +18,17 @@ public interface ISpellCheckModule {
      * @return list of selections of misspelled words.
      */
     List<Selection> getMisspelledWords(Buffer buffer);
+
+    /**
+     * This operation checks a range of a Buffer that starts and ends at word
+     * boundaries. It returns the start and end positions of the misspelled words
+     * in the range as flat array: start of the first word, its end, start of the
+     * second word and so on.
+     *
+     * @param buffer to be spell checked.
+     * @param start of the range to be checked.
+     * @param end of the range to be checked (exclusive).
+     * @return start and end positions of misspelled words ordered by their position.
+     */
+    int[] getMisspelledRanges(Buffer buffer, int start, int end);
 }
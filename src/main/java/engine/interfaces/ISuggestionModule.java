@@ -0,0 +1,19 @@
+package engine.interfaces;
+
+import java.util.List;
+
+/**
+ * This interface specifies the API of an object that suggests correctly spelled
+ * words for a misspelled word.
+ */
+public interface ISuggestionModule {
+    /**
+     * Returns words of the dictionary that are similar to the passed word, the most
+     * similar words first.
+     *
+     * @param word to be corrected.
+     * @param maxCount maximum number of returned suggestions.
+     * @return list of suggested words, which may be empty.
+     */
+    List<String> getSuggestions(String word, int maxCount);
+}
@@ -0,0 +1,79 @@
+package engine.interfaces;
+
+/**
+ * This interface specifies the storage backend of a Buffer. A Buffer validates
+ * positions and implements the text editor specific logic (words, selections) while
+ * an implementing class is only responsible for holding the characters and for
+ * inserting, deleting and reading them efficiently.
+ *
+ * Implementing classes can assume that all passed positions have already been
+ * validated by the calling Buffer.
+ */
+public interface ITextStorage {
+    /**
+     * Returns the number of characters currently stored.
+     *
+     * @return number of stored characters.
+     */
+    int length();
+
+    /**
+     * Returns the character at a position.
+     *
+     * @param position of the character, 0 <= position < length().
+     * @return the character at the given position.
+     */
+    char charAt(int position);
+
+    /**
+     * Inserts a single character at a position.
+     *
+     * @param position at which the character is inserted, 0 <= position <= length().
+     * @param c character to be inserted.
+     */
+    void insert(int position, char c);
+
+    /**
+     * Inserts a range of characters of an array at a position.
+     *
+     * @param position at which the characters are inserted, 0 <= position <= length().
+     * @param chars array containing the characters to be inserted.
+     * @param offset index of the first character in {@code chars} to be inserted.
+     * @param count number of characters to be inserted.
+     */
+    void insert(int position, char[] chars, int offset, int count);
+
+    /**
+     * Deletes all characters in the range [start, end).
+     *
+     * @param start first position to be deleted.
+     * @param end position after the last character to be deleted.
+     */
+    void delete(int start, int end);
+
+    /**
+     * Copies the characters in the range [start, end) into an array.
+     *
+     * @param start first position to be copied.
+     * @param end position after the last character to be copied.
+     * @param dst array the characters are copied to.
+     * @param dstBegin index in {@code dst} at which the first character is written.
+     */
+    void getChars(int start, int end, char[] dst, int dstBegin);
+
+    /**
+     * Creates an independent copy of the complete storage.
+     *
+     * @return the copy.
+     */
+    ITextStorage copy();
+
+    /**
+     * Creates an independent copy of the range [start, end) of the storage.
+     *
+     * @param start first position to be copied.
+     * @param end position after the last character to be copied.
+     * @return the copy.
+     */
+    ITextStorage copy(int start, int end);
+}
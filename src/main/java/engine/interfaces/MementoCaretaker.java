@@ -19,7 +19,7 @@ public interface MementoCaretaker {
     /**
      * Returns the Memento which represents the most recent state in the past.
      *
-     * @return the most recent Memento
+     * @return the most recent Memento or null if there is nothing to undo
      */
     Memento undo();
 
@@ -27,7 +27,7 @@ public interface MementoCaretaker {
      * Returns the Memento which represents a state in the past that has been
      * previously undone.
      *
-     * @return the previously undone Memento
+     * @return the previously undone Memento or null if there is nothing to redo
      */
     Memento redo();
 }
@@ -1,6 +1,7 @@
 package engine.interfaces;
 
 import engine.Selection;
+import engine.TextChange;
 
 import java.util.List;
 
@@ -40,6 +41,14 @@ public interface Observable {
      */
     void notifyTextChange();
 
+    /**
+     * Runs necessary code to notify EngineObserver(s) about a single change of the text
+     * state. In contrast to {@link Observable#notifyTextChange()} only the change is passed.
+     *
+     * @param change describing the modification of the text.
+     */
+    void notifyTextChange(TextChange change);
+
     /**
      * Runs necessary code to notify EngineObserver(s) about changes in the cursor
      * position state.
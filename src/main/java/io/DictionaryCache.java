@@ -0,0 +1,212 @@
+package io;
+
+import engine.Dawg;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * This utility class keeps compiled dictionaries in binary files, so that a dictionary
+ * only has to be parsed and compiled on the first start of the editor. Later starts map
+ * the file into memory, which makes the dictionary available almost instantly. Since
+ * the file is mapped read-only, its pages are shared by all editor processes through
+ * the page cache of the operating system.
+ *
+ * A cache file contains a header followed by the packed arrays of a {@link Dawg}. The
+ * header contains the size and modification time of the source of the dictionary and a
+ * checksum of its content. As long as size and time match, the source isn't read at all.
+ * Otherwise the checksum decides if the cache file is still valid or compiled again.
+ */
+public class DictionaryCache {
+    /** File extension of cache files. */
+    public static final String FILE_EXTENSION = ".dawg";
+
+    private static final int MAGIC = 0x44415747;
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int POSITION_CHECKSUM = 8;
+    private static final int POSITION_SOURCE_SIZE = 16;
+    private static final int POSITION_SOURCE_MODIFIED = 24;
+    private static final int POSITION_SIZE = 32;
+    private static final int POSITION_EDGE_COUNT = 36;
+    private static final int HEADER_SIZE = 40;
+
+    /**
+     * Returns the dictionary in a cache file. If the file doesn't exist or belongs to
+     * another source, the dictionary is compiled and written to the file first.
+     *
+     * @param file of the cache.
+     * @param sourceSize number of bytes of the source, negative if unknown.
+     * @param sourceModified modification time of the source, 0 if unknown.
+     * @param reader reading the source if its size or time don't match the cache.
+     * @param compiler compiling the dictionary from its source.
+     * @return the dictionary mapped from the cache file.
+     * @throws IOException if the source can't be read or the cache file can't be written or mapped.
+     */
+    public static Dawg load(File file, long sourceSize, long sourceModified, SourceReader reader,
+                            Function<byte[], Dawg> compiler) throws IOException {
+        MappedByteBuffer map = map(file);
+        boolean isKnownSource = sourceSize >= 0 && sourceModified != 0;
+        if (map != null && isKnownSource && map.getLong(POSITION_SOURCE_SIZE) == sourceSize &&
+                map.getLong(POSITION_SOURCE_MODIFIED) == sourceModified) {
+            return toDawg(map);
+        }
+
+        byte[] source = reader.read();
+        long checksum = checksum(source);
+        if (map != null && map.getLong(POSITION_CHECKSUM) == checksum) {
+            /** The source was only touched, so the next start can trust its size and time again. */
+            writeSourceMetadata(file, sourceSize, sourceModified);
+            return toDawg(map);
+        }
+
+        write(compiler.apply(source), file, checksum, sourceSize, sourceModified);
+        map = map(file);
+        if (map == null || map.getLong(POSITION_CHECKSUM) != checksum) {
+            throw new IOException("Dictionary cache is invalid after writing it: " + file);
+        }
+        return toDawg(map);
+    }
+
+    /**
+     * Computes the checksum of the source of a dictionary as it is stored in the header.
+     *
+     * @param source content of the dictionary.
+     * @return CRC32 checksum of the source.
+     */
+    public static long checksum(byte[] source) {
+        CRC32 crc = new CRC32();
+        crc.update(source);
+        return crc.getValue();
+    }
+
+    /**
+     * Maps a cache file.
+     *
+     * @return the mapped file or null if the file doesn't exist or isn't a complete cache file.
+     */
+    private static MappedByteBuffer map(File file) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            /** The mapping stays valid after the channel has been closed. */
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (map.getInt(0) != MAGIC || map.getInt(4) != FORMAT_VERSION) {
+            return null;
+        }
+        int edgeCount = map.getInt(POSITION_EDGE_COUNT);
+        if (edgeCount < 0 || (long) getEdgesPosition(edgeCount) + 4L * edgeCount != map.capacity()) {
+            return null;
+        }
+        return map;
+    }
+
+    /**
+     * Creates the dictionary on the arrays of a mapped cache file.
+     */
+    private static Dawg toDawg(MappedByteBuffer map) {
+        int size = map.getInt(POSITION_SIZE);
+        int edgeCount = map.getInt(POSITION_EDGE_COUNT);
+
+        map.position(HEADER_SIZE);
+        CharBuffer labels = map.slice().asCharBuffer();
+        labels.limit(edgeCount);
+        map.position(getEdgesPosition(edgeCount));
+        IntBuffer edges = map.slice().asIntBuffer();
+        edges.limit(edgeCount);
+
+        return Dawg.fromBuffers(labels, edges, size);
+    }
+
+    /**
+     * Replaces the size and time of the source in the header of a valid cache file.
+     */
+    private static void writeSourceMetadata(File file, long sourceSize, long sourceModified) throws IOException {
+        ByteBuffer metadata = ByteBuffer.allocate(16);
+        metadata.putLong(sourceSize).putLong(sourceModified).flip();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(metadata, POSITION_SOURCE_SIZE);
+        }
+    }
+
+    /**
+     * Writes a dictionary to a temporary file which then replaces the cache file, so
+     * that other processes never map a partially written file.
+     */
+    private static void write(Dawg dawg, File file, long checksum, long sourceSize, long sourceModified)
+            throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create directory " + directory);
+        }
+        File temporaryFile = File.createTempFile(file.getName(), ".tmp", directory);
+
+        try {
+            CharBuffer labels = dawg.getLabels();
+            IntBuffer edges = dawg.getEdges();
+            int edgeCount = labels.limit();
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(checksum);
+                out.writeLong(sourceSize);
+                out.writeLong(sourceModified);
+                out.writeInt(dawg.size());
+                out.writeInt(edgeCount);
+                for (int i = 0; i < edgeCount; i++) {
+                    out.writeChar(labels.get(i));
+                }
+                /** Align the edges to 4 bytes. */
+                for (int i = HEADER_SIZE + 2 * edgeCount; i < getEdgesPosition(edgeCount); i++) {
+                    out.writeByte(0);
+                }
+                for (int i = 0; i < edgeCount; i++) {
+                    out.writeInt(edges.get(i));
+                }
+            }
+
+            try {
+                Files.move(temporaryFile.toPath(), file.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+
+    private static int getEdgesPosition(int edgeCount) {
+        return (HEADER_SIZE + 2 * edgeCount + 3) & ~3;
+    }
+
+    /**
+     * Reads the source of a dictionary.
+     */
+    public interface SourceReader {
+        /**
+         * @return the content of the source.
+         * @throws IOException if the source can't be read.
+         */
+        byte[] read() throws IOException;
+    }
+}
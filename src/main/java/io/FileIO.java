@@ -4,6 +4,7 @@ import engine.Buffer;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -11,6 +12,9 @@ import java.util.List;
  * This utility class provides helper methods for IO operations with the filesystem.
  */
 public class FileIO {
+    /** Maximum length of an array that can be allocated on common JVMs. */
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
     /**
      * Reads a File object and returns the file contents of specified file.
      *
@@ -38,6 +42,52 @@ public class FileIO {
         }
     }
 
+    /**
+     * Reads a File object and returns its exact contents as char array. In contrast to
+     * {@link FileIO#getContentsOfFile(File)} no Character objects are created, so the
+     * returned array can directly be used as text of a Buffer (see {@link Buffer#wrap(char[])}).
+     * The characters are copied once into an array of their exact length, so
+     * {@link FileIO#readFile(File)} is preferable if a Buffer is needed.
+     *
+     * @param file File to be read
+     * @return the contents of the file as char[]
+     * @throws IOException if something went wrong during reading the file.
+     */
+    public static char[] getCharsOfFile(File file) throws IOException {
+        return readFile(file).toCharArray();
+    }
+
+    /**
+     * Reads a File object into a Buffer. The characters are read into one array that is
+     * used as text of the Buffer without copying it, see {@link Buffer#wrap(char[], int)}.
+     *
+     * @param file File to be read
+     * @return Buffer containing the contents of the file.
+     * @throws IOException if something went wrong during reading the file.
+     */
+    public static Buffer readFile(File file) throws IOException {
+        try (Reader reader = new BufferedReader(new FileReader(file))) {
+            /**
+             * The number of bytes is an upper bound for the number of chars in common
+             * encodings. One more char is reserved, so the end of the file is seen
+             * without growing the array.
+             */
+            char[] chars = new char[(int) Math.min(MAX_ARRAY_LENGTH, Math.max(16, file.length() + 1))];
+            int length = 0;
+            int read;
+            while ((read = reader.read(chars, length, chars.length - length)) != -1) {
+                length += read;
+                if (length == chars.length) {
+                    if (length == MAX_ARRAY_LENGTH) {
+                        throw new IOException("File is too large: " + file);
+                    }
+                    chars = Arrays.copyOf(chars, (int) Math.min(MAX_ARRAY_LENGTH, 2L * length));
+                }
+            }
+            return Buffer.wrap(chars, length);
+        }
+    }
+
     /**
      * Writes content to a file.
      *
@@ -53,4 +103,24 @@ public class FileIO {
             }
         }
     }
+
+    /**
+     * Writes the content of a Buffer to a file. The characters are copied in chunks,
+     * so no copy of the complete Buffer is created.
+     *
+     * @param file File to which content should be saved to
+     * @param buffer to be saved.
+     * @throws IOException if something went wrong during saving the contents to the file.
+     */
+    public static void saveContentToFile(File file, Buffer buffer) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file)))) {
+            char[] chunk = new char[8192];
+            for (int start = 0; start < buffer.getSize(); start += chunk.length) {
+                int end = Math.min(buffer.getSize(), start + chunk.length);
+                buffer.getChars(start, end, chunk, 0);
+                writer.write(chunk, 0, end - start);
+            }
+        }
+    }
 }
@@ -0,0 +1,171 @@
+package io;
+
+import commands.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This utility class stores recorded macros in a compact binary file, so that they
+ * can be kept and replayed after a restart of the editor.
+ *
+ * A macro file starts with a header (magic number, format version and flags) followed by
+ * the commands. Every command is written as an opcode byte followed by its arguments.
+ * Integers and characters are written as variable-length quantities (7 bits per byte),
+ * so typical positions and ASCII characters take one or two bytes. The last command is
+ * followed by {@link MacroFile#END}.
+ *
+ * Macro files can be read command by command with a {@link MacroReader}, which doesn't
+ * keep the whole macro in memory.
+ */
+public class MacroFile {
+    /** File extension of macro files. */
+    public static final String FILE_EXTENSION = ".macro";
+
+    static final int MAGIC = 0x4D41434F;
+    static final int FORMAT_VERSION = 1;
+
+    /** Flag in the header indicating that the macro contains no undo or redo. */
+    static final int FLAG_TRANSACTIONAL = 1;
+
+    /** Opcodes of the commands. */
+    static final int END = 0;
+    static final int INSERT = 1;
+    static final int INSERT_TEXT = 2;
+    static final int DELETE = 3;
+    static final int UPDATE_CURSOR = 4;
+    static final int UPDATE_SELECTION = 5;
+    static final int EXTEND_SELECTION = 6;
+    static final int SELECT_CURRENT_WORD = 7;
+    static final int GO_TO_LINE = 8;
+    static final int COPY = 9;
+    static final int CUT = 10;
+    static final int PASTE = 11;
+    static final int UNDO = 12;
+    static final int REDO = 13;
+    static final int SPELL_CHECK = 14;
+
+    /**
+     * Writes a macro to a file. An existing file is overwritten.
+     *
+     * @param commands of the macro.
+     * @param file to be written.
+     * @throws IOException if the file can't be written.
+     * @throws IllegalArgumentException if the macro contains a command that can't be stored.
+     */
+    public static void save(List<Command> commands, File file) throws IOException {
+        int flags = FLAG_TRANSACTIONAL;
+        for (Command command : commands) {
+            if (command instanceof UndoCommand || command instanceof RedoCommand) {
+                flags &= ~FLAG_TRANSACTIONAL;
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(flags);
+            for (Command command : commands) {
+                writeCommand(out, command);
+            }
+            out.writeByte(END);
+        }
+    }
+
+    /**
+     * Reads a complete macro from a file. For long macros a {@link MacroReader} should be
+     * used instead, see {@link MacroFile#openReader(File)}.
+     *
+     * @param file to be read.
+     * @return the commands of the macro.
+     * @throws IOException if the file can't be read or isn't a macro file.
+     */
+    public static List<Command> load(File file) throws IOException {
+        List<Command> commands = new ArrayList<>();
+        try (MacroReader reader = openReader(file)) {
+            while (reader.hasNext()) {
+                commands.add(reader.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return commands;
+    }
+
+    /**
+     * Opens a macro file to read its commands one by one.
+     *
+     * @param file to be read.
+     * @return reader of the commands, which must be closed by the caller.
+     * @throws IOException if the file can't be read or isn't a macro file.
+     */
+    public static MacroReader openReader(File file) throws IOException {
+        return new MacroReader(file);
+    }
+
+    private static void writeCommand(DataOutputStream out, Command command) throws IOException {
+        if (command instanceof InsertCommand) {
+            out.writeByte(INSERT);
+            writeVarInt(out, ((InsertCommand) command).getCharacter());
+        } else if (command instanceof InsertTextCommand) {
+            String text = ((InsertTextCommand) command).getText();
+            out.writeByte(INSERT_TEXT);
+            writeVarInt(out, text.length());
+            for (int i = 0; i < text.length(); i++) {
+                writeVarInt(out, text.charAt(i));
+            }
+        } else if (command instanceof DeleteCommand) {
+            out.writeByte(DELETE);
+            out.writeByte(((DeleteCommand) command).getDelDirection());
+        } else if (command instanceof UpdateCursorCommand) {
+            out.writeByte(UPDATE_CURSOR);
+            writeVarInt(out, ((UpdateCursorCommand) command).getPosition());
+        } else if (command instanceof UpdateSelectionCommand) {
+            out.writeByte(UPDATE_SELECTION);
+            writeVarInt(out, ((UpdateSelectionCommand) command).getStart());
+            writeVarInt(out, ((UpdateSelectionCommand) command).getEnd());
+        } else if (command instanceof ExtendSelectionCommand) {
+            out.writeByte(EXTEND_SELECTION);
+            writeVarInt(out, ((ExtendSelectionCommand) command).getEnd());
+        } else if (command instanceof SelectCurrentWordCommand) {
+            out.writeByte(SELECT_CURRENT_WORD);
+            writeVarInt(out, ((SelectCurrentWordCommand) command).getPosition());
+        } else if (command instanceof GoToLineCommand) {
+            out.writeByte(GO_TO_LINE);
+            writeVarInt(out, ((GoToLineCommand) command).getLine());
+        } else if (command instanceof CopyCommand) {
+            out.writeByte(COPY);
+        } else if (command instanceof CutCommand) {
+            out.writeByte(CUT);
+        } else if (command instanceof PasteCommand) {
+            out.writeByte(PASTE);
+        } else if (command instanceof UndoCommand) {
+            out.writeByte(UNDO);
+        } else if (command instanceof RedoCommand) {
+            out.writeByte(REDO);
+        } else if (command instanceof SpellCheckCommand) {
+            out.writeByte(SPELL_CHECK);
+        } else {
+            throw new IllegalArgumentException("Command can't be stored in a macro: " +
+                    command.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Writes an int as variable-length quantity, least significant 7 bits first. The
+     * highest bit of every byte indicates that another byte follows.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
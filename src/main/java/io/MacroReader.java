@@ -0,0 +1,148 @@
+package io;
+
+import commands.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class reads the commands of a macro file one by one, see {@link MacroFile} for
+ * the format. Only the next command is kept in memory, so macros of any length can be
+ * replayed while they are read.
+ *
+ * Errors while reading are thrown as {@link UncheckedIOException}, since the methods of
+ * {@link Iterator} can't throw an IOException.
+ */
+public class MacroReader implements Iterator<Command>, Closeable {
+    private final DataInputStream in;
+    private final int flags;
+
+    /** Number of bytes of the file, which bounds the lengths read from it. */
+    private final long fileLength;
+
+    /** Command that is returned by the next call of {@link MacroReader#next()}. */
+    private Command nextCommand;
+
+    MacroReader(File file) throws IOException {
+        fileLength = file.length();
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MacroFile.MAGIC || in.readUnsignedByte() != MacroFile.FORMAT_VERSION) {
+                throw new IOException("Not a macro file: " + file);
+            }
+            flags = in.readUnsignedByte();
+            nextCommand = readCommand();
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks if the macro can be replayed as a single transaction, i.e. it contains no
+     * undo or redo.
+     *
+     * @return true if the macro can be replayed as a transaction.
+     */
+    public boolean canReplayAsTransaction() {
+        return (flags & MacroFile.FLAG_TRANSACTIONAL) != 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextCommand != null;
+    }
+
+    @Override
+    public Command next() {
+        if (nextCommand == null) {
+            throw new NoSuchElementException();
+        }
+        Command command = nextCommand;
+        try {
+            nextCommand = readCommand();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return command;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the next command.
+     *
+     * @return the command or null if the end of the macro has been reached.
+     */
+    private Command readCommand() throws IOException {
+        int opcode = in.readUnsignedByte();
+        switch (opcode) {
+            case MacroFile.END:
+                return null;
+            case MacroFile.INSERT:
+                return new InsertCommand((char) readVarInt());
+            case MacroFile.INSERT_TEXT:
+                int length = readVarInt();
+                /** Every char takes at least one byte, so a longer text can't be contained in the file. */
+                if (length < 0 || length > fileLength) {
+                    throw new IOException("Invalid text length in macro file: " + length);
+                }
+                char[] text = new char[length];
+                for (int i = 0; i < text.length; i++) {
+                    text[i] = (char) readVarInt();
+                }
+                return new InsertTextCommand(new String(text));
+            case MacroFile.DELETE:
+                return new DeleteCommand(in.readUnsignedByte());
+            case MacroFile.UPDATE_CURSOR:
+                return new UpdateCursorCommand(readVarInt());
+            case MacroFile.UPDATE_SELECTION:
+                int start = readVarInt();
+                return new UpdateSelectionCommand(start, readVarInt());
+            case MacroFile.EXTEND_SELECTION:
+                return new ExtendSelectionCommand(readVarInt());
+            case MacroFile.SELECT_CURRENT_WORD:
+                return new SelectCurrentWordCommand(readVarInt());
+            case MacroFile.GO_TO_LINE:
+                return new GoToLineCommand(readVarInt());
+            case MacroFile.COPY:
+                return new CopyCommand();
+            case MacroFile.CUT:
+                return new CutCommand();
+            case MacroFile.PASTE:
+                return new PasteCommand();
+            case MacroFile.UNDO:
+                return new UndoCommand();
+            case MacroFile.REDO:
+                return new RedoCommand();
+            case MacroFile.SPELL_CHECK:
+                return new SpellCheckCommand();
+            default:
+                throw new IOException("Unknown command in macro file: " + opcode);
+        }
+    }
+
+    /**
+     * Reads an int written by MacroFile as variable-length quantity.
+     */
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in macro file.");
+    }
+}
@@ -0,0 +1,473 @@
+package io;
+
+import engine.Buffer;
+import engine.EditOperation;
+import engine.Selection;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * This class stores the undo history of a document in a file next to the document,
+ * so that the history survives a restart of the editor and doesn't have to be kept
+ * on the heap.
+ *
+ * The file is memory-mapped. It starts with a header followed by the edits as compact
+ * binary records in the order in which they were made. The first
+ * {@link UndoJournal#getUndoCount()} records can be undone, the remaining records have
+ * been undone and can be redone. Writing a new record discards the redoable records.
+ *
+ * To detect if a journal belongs to the opened content of a document, the header
+ * contains the length and checksum of the document when it was saved last, together
+ * with the number of undoable records at that time.
+ *
+ * The oldest records can be removed to keep the journal within a budget, see
+ * {@link UndoJournal#removeOldest(int)}. The file grows by doubling and is truncated
+ * again when it is much larger than its records.
+ */
+public class UndoJournal implements Closeable {
+    /** File extension appended to the name of the document. */
+    public static final String FILE_EXTENSION = ".undo";
+
+    private static final int MAGIC = 0x554E444A;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int POSITION_ENTRY_COUNT = 8;
+    private static final int POSITION_UNDO_COUNT = 12;
+    private static final int POSITION_END = 16;
+    private static final int POSITION_SAVED_UNDO_COUNT = 24;
+    private static final int POSITION_SAVED_LENGTH = 28;
+    private static final int POSITION_SAVED_CHECKSUM = 32;
+    private static final int HEADER_SIZE = 48;
+
+    /** Size of a record without its texts: offset, cursors, selections and text lengths. */
+    private static final int MIN_PAYLOAD_SIZE = 4 * 3 + 9 * 2 + 4 * 2;
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private FileChannel channel;
+    private MappedByteBuffer map;
+
+    private int entryCount;
+    private int undoCount;
+
+    /** Position in the file at which the next record is written. */
+    private long end;
+
+    /** Start positions of the records in the file, valid for the first entryCount elements. */
+    private long[] recordStarts = new long[64];
+
+    private UndoJournal(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Returns the journal file of a document.
+     *
+     * @param document file of the document.
+     * @return file of the journal next to the document.
+     */
+    public static File getJournalFile(File document) {
+        return new File(document.getPath() + FILE_EXTENSION);
+    }
+
+    /**
+     * Opens a journal file or creates it if it doesn't exist or isn't a valid journal.
+     *
+     * @param file of the journal.
+     * @return the opened journal.
+     * @throws IOException if the file can't be opened or mapped.
+     */
+    public static UndoJournal open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        UndoJournal journal = new UndoJournal(channel);
+        /** Mapping extends the file, so its size is taken before. */
+        long size = channel.size();
+        journal.map(Math.max(INITIAL_CAPACITY, size));
+
+        /** A damaged journal is started anew, since its history can't be trusted. */
+        if (size < HEADER_SIZE || journal.map.getInt(0) != MAGIC ||
+                journal.map.getInt(4) != FORMAT_VERSION || !journal.readHeader(size)) {
+            journal.reset();
+        }
+        journal.shrinkIfOversized();
+        return journal;
+    }
+
+    /**
+     * Computes the checksum of a text as it is stored in the header.
+     *
+     * @param buffer containing the text.
+     * @return CRC32 checksum of the characters of the text.
+     */
+    public static long checksum(Buffer buffer) {
+        CRC32 crc = new CRC32();
+        char[] chars = new char[8192];
+        byte[] bytes = new byte[chars.length * 2];
+
+        for (int start = 0; start < buffer.getSize(); start += chars.length) {
+            int count = Math.min(chars.length, buffer.getSize() - start);
+            buffer.getChars(start, start + count, chars, 0);
+            for (int i = 0; i < count; i++) {
+                bytes[2 * i] = (byte) (chars[i] >> 8);
+                bytes[2 * i + 1] = (byte) chars[i];
+            }
+            crc.update(bytes, 0, 2 * count);
+        }
+        return crc.getValue();
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public int getUndoCount() {
+        return undoCount;
+    }
+
+    /**
+     * Sets the number of records that can be undone, e.g. after an undo or redo.
+     *
+     * @param undoCount new number of undoable records, 0 <= undoCount <= getEntryCount().
+     */
+    public void setUndoCount(int undoCount) {
+        if (undoCount < 0 || undoCount > entryCount) {
+            throw new IndexOutOfBoundsException("Invalid undo count: " + undoCount);
+        }
+        this.undoCount = undoCount;
+        map.putInt(POSITION_UNDO_COUNT, undoCount);
+    }
+
+    /**
+     * Checks if the journal describes the history of a text, i.e. the text equals the
+     * content of the document when it was saved last.
+     *
+     * @param length of the text.
+     * @param checksum of the text, see {@link UndoJournal#checksum(Buffer)}.
+     * @return true if the journal matches the text.
+     */
+    public boolean matchesSavedContent(int length, long checksum) {
+        return map.getInt(POSITION_SAVED_LENGTH) == length &&
+                map.getLong(POSITION_SAVED_CHECKSUM) == checksum &&
+                map.getInt(POSITION_SAVED_UNDO_COUNT) <= entryCount;
+    }
+
+    /**
+     * Returns the number of undoable records when the document was saved last.
+     *
+     * @return number of undoable records.
+     */
+    public int getSavedUndoCount() {
+        return map.getInt(POSITION_SAVED_UNDO_COUNT);
+    }
+
+    /**
+     * Remembers the current position in the history as the saved content of the document.
+     *
+     * @param length of the saved text.
+     * @param checksum of the saved text, see {@link UndoJournal#checksum(Buffer)}.
+     */
+    public void markSaved(int length, long checksum) {
+        map.putInt(POSITION_SAVED_UNDO_COUNT, undoCount);
+        map.putInt(POSITION_SAVED_LENGTH, length);
+        map.putLong(POSITION_SAVED_CHECKSUM, checksum);
+    }
+
+    /**
+     * Removes all records.
+     */
+    public void reset() {
+        map.putInt(0, MAGIC);
+        map.putInt(4, FORMAT_VERSION);
+        entryCount = 0;
+        undoCount = 0;
+        end = HEADER_SIZE;
+        map.putInt(POSITION_SAVED_UNDO_COUNT, 0);
+        map.putInt(POSITION_SAVED_LENGTH, -1);
+        map.putLong(POSITION_SAVED_CHECKSUM, 0);
+        writeCounts();
+    }
+
+    /**
+     * Removes all records from an index on.
+     *
+     * @param count number of records to keep.
+     */
+    public void truncate(int count) {
+        if (count >= entryCount) {
+            return;
+        }
+        /** The saved content can't be reached anymore if its records are removed. */
+        if (getSavedUndoCount() > count) {
+            map.putInt(POSITION_SAVED_LENGTH, -1);
+        }
+        entryCount = count;
+        undoCount = Math.min(undoCount, count);
+        end = recordStarts[count];
+        writeCounts();
+        shrinkIfOversized();
+    }
+
+    /**
+     * Removes the oldest records. The remaining records are moved to the start of the
+     * file, so the cost is proportional to their size.
+     *
+     * @param count number of records to remove, 0 <= count <= getUndoCount().
+     */
+    public void removeOldest(int count) {
+        if (count < 0 || count > undoCount) {
+            throw new IndexOutOfBoundsException("Invalid number of records: " + count);
+        }
+        if (count == 0) {
+            return;
+        }
+        long removedBytes = (count < entryCount ? recordStarts[count] : end) - HEADER_SIZE;
+
+        /** The records move to lower positions, so copying from the front doesn't overwrite unread bytes. */
+        byte[] chunk = new byte[64 * 1024];
+        for (long position = HEADER_SIZE + removedBytes; position < end; position += chunk.length) {
+            int length = (int) Math.min(chunk.length, end - position);
+            map.position((int) position);
+            map.get(chunk, 0, length);
+            map.position((int) (position - removedBytes));
+            map.put(chunk, 0, length);
+        }
+        for (int i = count; i < entryCount; i++) {
+            recordStarts[i - count] = recordStarts[i] - removedBytes;
+        }
+
+        /** The saved content can't be reached anymore if its records are removed. */
+        int savedUndoCount = getSavedUndoCount();
+        if (savedUndoCount < count) {
+            map.putInt(POSITION_SAVED_UNDO_COUNT, 0);
+            map.putInt(POSITION_SAVED_LENGTH, -1);
+        } else {
+            map.putInt(POSITION_SAVED_UNDO_COUNT, savedUndoCount - count);
+        }
+        entryCount -= count;
+        undoCount -= count;
+        end -= removedBytes;
+        writeCounts();
+        shrinkIfOversized();
+    }
+
+    /**
+     * Returns the number of bytes of the records from an index on.
+     *
+     * @param index of the first record, 0 <= index <= getEntryCount().
+     * @return bytes of the records.
+     */
+    public long getRecordBytes(int index) {
+        if (index < 0 || index > entryCount) {
+            throw new IndexOutOfBoundsException("Invalid record: " + index);
+        }
+        return end - (index < entryCount ? recordStarts[index] : end);
+    }
+
+    /**
+     * Appends an edit after the undoable records. Redoable records are discarded.
+     *
+     * @param edit to be appended.
+     */
+    public void append(EditOperation edit) {
+        truncate(undoCount);
+
+        int payloadSize = MIN_PAYLOAD_SIZE +
+                2 * (edit.getRemovedText().length() + edit.getInsertedText().length());
+        ensureCapacity(end + 4 + payloadSize);
+
+        map.position((int) end);
+        map.putInt(payloadSize);
+        map.putInt(edit.getOffset());
+        map.putInt(edit.getCursorBefore());
+        map.putInt(edit.getCursorAfter());
+        putSelection(edit.getSelectionBefore());
+        putSelection(edit.getSelectionAfter());
+        putString(edit.getRemovedText());
+        putString(edit.getInsertedText());
+
+        setRecordStart(entryCount, end);
+        end = map.position();
+        entryCount++;
+        undoCount = entryCount;
+        writeCounts();
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @param index of the record, 0 <= index < getEntryCount().
+     * @return the edit stored in the record.
+     */
+    public EditOperation read(int index) {
+        if (index < 0 || index >= entryCount) {
+            throw new IndexOutOfBoundsException("Invalid record: " + index);
+        }
+        map.position((int) recordStarts[index] + 4);
+        int offset = map.getInt();
+        int cursorBefore = map.getInt();
+        int cursorAfter = map.getInt();
+        Selection selectionBefore = getSelection();
+        Selection selectionAfter = getSelection();
+        String removedText = getString();
+        String insertedText = getString();
+
+        return new EditOperation(offset, removedText, insertedText,
+                cursorBefore, cursorAfter, selectionBefore, selectionAfter);
+    }
+
+    /**
+     * Writes changes of the mapped file to the disk and closes it.
+     */
+    public void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    /**
+     * Reads the header and the positions of the records.
+     *
+     * @param size of the file.
+     * @return false if the header or a record is damaged.
+     */
+    private boolean readHeader(long size) {
+        entryCount = map.getInt(POSITION_ENTRY_COUNT);
+        undoCount = map.getInt(POSITION_UNDO_COUNT);
+        end = map.getLong(POSITION_END);
+        int savedUndoCount = getSavedUndoCount();
+        if (entryCount < 0 || undoCount < 0 || undoCount > entryCount || end < HEADER_SIZE || end > size ||
+                savedUndoCount < 0 || savedUndoCount > entryCount) {
+            return false;
+        }
+
+        /** Rebuild the positions of the records by skipping from record to record. */
+        long position = HEADER_SIZE;
+        for (int i = 0; i < entryCount; i++) {
+            if (!isValidRecord(position)) {
+                return false;
+            }
+            setRecordStart(i, position);
+            position += 4 + map.getInt((int) position);
+        }
+        return position == end;
+    }
+
+    /**
+     * Checks if a record lies inside the written part of the file and its texts fill
+     * exactly its payload.
+     */
+    private boolean isValidRecord(long position) {
+        if (position + 4 + MIN_PAYLOAD_SIZE > end) {
+            return false;
+        }
+        int payloadSize = map.getInt((int) position);
+        if (payloadSize < MIN_PAYLOAD_SIZE || payloadSize > end - position - 4) {
+            return false;
+        }
+        /** The texts follow the offset, the cursors and the selections. */
+        long removedLengthPosition = position + 4 + MIN_PAYLOAD_SIZE - 8;
+        int removedLength = map.getInt((int) removedLengthPosition);
+        if (removedLength < 0 || removedLength > (payloadSize - MIN_PAYLOAD_SIZE) / 2) {
+            return false;
+        }
+        int insertedLength = map.getInt((int) (removedLengthPosition + 4 + 2L * removedLength));
+        return insertedLength >= 0 && MIN_PAYLOAD_SIZE + 2L * (removedLength + insertedLength) == payloadSize;
+    }
+
+    private void writeCounts() {
+        map.putInt(POSITION_ENTRY_COUNT, entryCount);
+        map.putInt(POSITION_UNDO_COUNT, undoCount);
+        map.putLong(POSITION_END, end);
+    }
+
+    private void setRecordStart(int index, long position) {
+        if (index == recordStarts.length) {
+            long[] resized = new long[recordStarts.length * 2];
+            System.arraycopy(recordStarts, 0, resized, 0, index);
+            recordStarts = resized;
+        }
+        recordStarts[index] = position;
+    }
+
+    private void putSelection(Selection selection) {
+        map.put((byte) (selection != null ? 1 : 0));
+        map.putInt(selection != null ? selection.getSelectionBase() : 0);
+        map.putInt(selection != null ? selection.getSelectionEnd() : 0);
+    }
+
+    private Selection getSelection() {
+        boolean exists = map.get() != 0;
+        int base = map.getInt();
+        int end = map.getInt();
+        return exists ? new Selection(base, end) : null;
+    }
+
+    private void putString(String text) {
+        map.putInt(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            map.putChar(text.charAt(i));
+        }
+    }
+
+    private String getString() {
+        char[] chars = new char[map.getInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = map.getChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Maps a larger region of the file if the mapped region is too small.
+     */
+    private void ensureCapacity(long capacity) {
+        if (capacity <= map.capacity()) {
+            return;
+        }
+        long newCapacity = map.capacity();
+        while (newCapacity < capacity) {
+            newCapacity *= 2;
+        }
+        if (newCapacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Undo journal is too large.");
+        }
+        try {
+            map(newCapacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void map(long capacity) throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Maps a smaller region and truncates the file if it is more than four times as
+     * large as needed, e.g. after many records were removed. Twice the size of the
+     * records is kept, so the file doesn't grow again right away.
+     */
+    private void shrinkIfOversized() {
+        long capacity = INITIAL_CAPACITY;
+        while (capacity < 2 * end) {
+            capacity *= 2;
+        }
+        if (map.capacity() < 4 * capacity) {
+            return;
+        }
+        try {
+            map.force();
+            map(capacity);
+            channel.truncate(capacity);
+        } catch (IOException e) {
+            /** Some systems can't truncate a mapped file, then it just stays larger. */
+        }
+    }
+}
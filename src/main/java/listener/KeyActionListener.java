@@ -5,7 +5,6 @@ import commands.Command;
 import engine.Engine;
 
 import javax.swing.*;
-import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
@@ -17,12 +16,11 @@ import static commands.DeleteCommand.DEL_FORWARDS;
  */
 public class KeyActionListener implements KeyListener {
     /**
-     * Distance in points between two adjacent text lines in the text editor.
-     * Is used to compute the new cursor position when using the ARROW keys for
-     * in-text navigation (ARROW_UP and ARROW_DOWN in particular).
+     * Line offsets used to compute the new cursor position when using the ARROW keys
+     * for in-text navigation (ARROW_UP and ARROW_DOWN in particular).
      */
-    private static int Y_UP = -15;
-    private static int Y_DOWN = 15;
+    private static int LINE_UP = -1;
+    private static int LINE_DOWN = 1;
 
     /** Generated character when pressing BACKSPACE */
     private static char KEY_BACKSPACE = '\b';
@@ -47,6 +45,13 @@ public class KeyActionListener implements KeyListener {
     private Engine engine;
     private Command command;
 
+    /**
+     * Column the cursor had when the user started to navigate up or down. It is kept
+     * while navigating through shorter lines, so the cursor returns to this column in
+     * longer lines. A negative value means that there is no vertical navigation going on.
+     */
+    private int preferredColumn = -1;
+
     public KeyActionListener(JTextPane textPane, Engine engine) {
         this.textPane = textPane;
         this.engine = engine;
@@ -88,6 +93,10 @@ public class KeyActionListener implements KeyListener {
     public void keyPressed(KeyEvent e) {
         e.consume();
 
+        if (e.getKeyCode() != KeyEvent.VK_UP && e.getKeyCode() != KeyEvent.VK_DOWN) {
+            preferredColumn = -1;
+        }
+
         /** COPY, CUT, and PASTE */
         if (e.isControlDown() && e.getKeyCode() == KeyEvent.VK_C) {
             command = new CopyCommand();
@@ -118,7 +127,7 @@ public class KeyActionListener implements KeyListener {
         /** CTRL + A to select everything */
         else if (e.isControlDown() && e.getKeyCode() == KeyEvent.VK_A) {
             int selectionStart = 0;
-            int selectionEnd = textPane.getText().length();
+            int selectionEnd = engine.getBuffer().getSize();
             command = new UpdateSelectionCommand(selectionStart, selectionEnd);
             command.execute(engine);
         }
@@ -138,11 +147,11 @@ public class KeyActionListener implements KeyListener {
             command = new ExtendSelectionCommand(newSelectionEnd);
         }
         else if (e.isShiftDown() && e.getKeyCode() == KeyEvent.VK_DOWN) {
-            int newSelectionEnd = getNewCursorPosition(Y_DOWN);
+            int newSelectionEnd = getNewCursorPosition(LINE_DOWN);
             command = new ExtendSelectionCommand(newSelectionEnd);
         }
         else if (e.isShiftDown() && e.getKeyCode() == KeyEvent.VK_UP) {
-            int newSelectionEnd = getNewCursorPosition(Y_UP);
+            int newSelectionEnd = getNewCursorPosition(LINE_UP);
             command = new ExtendSelectionCommand(newSelectionEnd);
         }
 
@@ -152,22 +161,15 @@ public class KeyActionListener implements KeyListener {
             command = new UpdateCursorCommand(newPosition);
         }
         else if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
-            int newPosition = Math.min(textPane.getText().length(), textPane.getCaretPosition() + 1);
+            int newPosition = Math.min(engine.getBuffer().getSize(), textPane.getCaretPosition() + 1);
             command = new UpdateCursorCommand(newPosition);
         }
         else if (e.getKeyCode() == KeyEvent.VK_DOWN) {
-            int newPosition = getNewCursorPosition(Y_DOWN);
+            int newPosition = getNewCursorPosition(LINE_DOWN);
             command = new UpdateCursorCommand(newPosition);
         }
         else if (e.getKeyCode() == KeyEvent.VK_UP) {
-            int newPosition = getNewCursorPosition(Y_UP);
-            /**
-             * Prevent cursor from jumping to position 0 when cursor is already
-             * in first line and ARROW_UP key is pressed.
-             */
-            if(newPosition == 0 && textPane.getCaret().getMagicCaretPosition().getX() > 3) {
-                return;
-            }
+            int newPosition = getNewCursorPosition(LINE_UP);
             command = new UpdateCursorCommand(newPosition);
         }
         else {
@@ -194,13 +196,30 @@ public class KeyActionListener implements KeyListener {
      * within the text (both for normal navigation as for text selection with hold
      * SHIFT key).
      *
-     * @param yDiff the vertical point offset from bottom to top. Is negative for jumping
-     *              a line up and positive for jumping a line down.
+     * The computation uses the line index of the Engine: the cursor keeps its column
+     * in the target line or is placed at the end of the target line if it is shorter.
+     * In the first and last line the cursor doesn't move.
+     *
+     * @param lineDiff the number of lines to move. Is negative for jumping
+     *                 a line up and positive for jumping a line down.
      * @return the computed cursor position
      */
-    private int getNewCursorPosition(int yDiff) {
-        Point p = textPane.getCaret().getMagicCaretPosition();
-        Point newPoint = new Point((int)p.getX(), (int)(p.getY() + yDiff));
-        return textPane.viewToModel(newPoint);
+    private int getNewCursorPosition(int lineDiff) {
+        int position = engine.getCursorPosition();
+        int line = engine.offsetToLine(position);
+        int targetLine = line + lineDiff;
+
+        if (preferredColumn < 0) {
+            preferredColumn = position - engine.lineToOffset(line);
+        }
+        if (targetLine < 0 || targetLine >= engine.lineCount()) {
+            return position;
+        }
+
+        int targetLineStart = engine.lineToOffset(targetLine);
+        int targetLineLength = engine.lineLength(targetLine);
+        /** Every line but the last one ends with '\n' behind which the cursor can't be placed. */
+        int maxColumn = targetLine < engine.lineCount() - 1 ? targetLineLength - 1 : targetLineLength;
+        return targetLineStart + Math.min(preferredColumn, maxColumn);
     }
 }
@@ -41,7 +41,7 @@ public class MouseActionListener extends MouseAdapter {
         if (e.getClickCount() >= 3) {
             command = new UpdateSelectionCommand(
                     0,
-                    textPane.getText().length()
+                    engine.getBuffer().getSize()
             );
         }
         command.execute(engine);
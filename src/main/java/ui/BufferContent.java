@@ -0,0 +1,284 @@
+package ui;
+
+import engine.Buffer;
+import engine.Engine;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoableEdit;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * This class is the storage of the Swing document shown in the GUI. Instead of
+ * keeping a second copy of the text (as the default GapContent does), it reads the
+ * characters directly from the Buffer of the Engine.
+ *
+ * The Engine is the only one modifying the text. When the GUI receives a change from
+ * the Engine, it calls insertString/remove on the document so that Swing updates its
+ * element structure (paragraphs/lines) and views for exactly the changed range. At that
+ * point the Buffer already contains the change, so {@link BufferContent#insertString(int, String)}
+ * and {@link BufferContent#remove(int, int)} only update the length known to the document
+ * and the positions created by Swing (caret, highlights).
+ *
+ * A replacement is passed as a removal followed by an insertion, but the Buffer already
+ * contains the inserted text while Swing processes the removal. The GUI announces the
+ * insertion beforehand (see {@link BufferContent#announceInsert(int, int)}), so the
+ * inserted characters are hidden until the document is told about them and listeners
+ * of the removal read the text that matches the length of the document.
+ *
+ * Like every {@link AbstractDocument.Content} this content has an implied '\n' at the end.
+ *
+ * As in GapContent, the positions share marks that are kept sorted by offset, so an edit
+ * only touches the marks behind it. Marks of positions that have been garbage collected
+ * are removed once there are enough of them.
+ */
+public class BufferContent implements AbstractDocument.Content {
+    private Engine engine;
+
+    /**
+     * Number of characters of the Buffer that the document has been told about. It
+     * differs from the Buffer size only while a change is being passed to the document.
+     */
+    private int length = 0;
+
+    /** Maximum length of the array that is reused to return characters. */
+    private static final int MAX_SCRATCH_LENGTH = 8192;
+
+    /**
+     * Characters of the Buffer at {@link BufferContent#pendingOffset} that have been
+     * inserted by the Engine but not yet passed to the document, 0 if there are none.
+     */
+    private int pendingOffset = 0;
+    private int pendingCount = 0;
+
+    /** Marks of the positions handed out to Swing, sorted by offset. */
+    private Mark[] marks = new Mark[16];
+    private int markCount = 0;
+
+    /** Receives the marks whose positions have been garbage collected. */
+    private final ReferenceQueue<BufferPosition> unusedMarks = new ReferenceQueue<>();
+    private int unusedMarkCount = 0;
+
+    /**
+     * Array into which characters are copied by {@link BufferContent#getChars(int, int, Segment)}
+     * for callers that accept a partial return. Such callers read the characters in a loop
+     * and don't keep the Segment, so the array can be reused. Other callers may keep their
+     * Segment and get an array of their own.
+     */
+    private char[] scratch = new char[0];
+
+    public BufferContent(Engine engine) {
+        this.engine = engine;
+    }
+
+    public Position createPosition(int offset) throws BadLocationException {
+        if (offset < 0 || offset > length()) {
+            throw new BadLocationException("Invalid position", offset);
+        }
+        removeUnusedMarks();
+
+        /** Positions at the same offset behave the same, so an existing one is shared. */
+        int index = getFirstMark(offset);
+        for (int i = index; i < markCount && marks[i].offset == offset; i++) {
+            BufferPosition position = marks[i].get();
+            if (position != null) {
+                return position;
+            }
+        }
+
+        BufferPosition position = new BufferPosition();
+        position.mark = new Mark(offset, position, unusedMarks);
+        if (markCount == marks.length) {
+            marks = Arrays.copyOf(marks, markCount * 2);
+        }
+        System.arraycopy(marks, index, marks, index + 1, markCount - index);
+        marks[index] = position.mark;
+        markCount++;
+        return position;
+    }
+
+    public int length() {
+        return length + 1;
+    }
+
+    /**
+     * Announces that the Engine has inserted characters into the Buffer that will be
+     * passed to the document by the next {@link BufferContent#insertString(int, String)}
+     * at the same offset. Until then they are hidden, e.g. while the document processes
+     * the removal that precedes the insertion of a replacement.
+     *
+     * @param offset at which the characters were inserted.
+     * @param count number of inserted characters.
+     */
+    public void announceInsert(int offset, int count) {
+        pendingOffset = offset;
+        pendingCount = count;
+    }
+
+    /**
+     * Acknowledges that text has been inserted into the Buffer by the Engine. The
+     * passed string is not stored since the Buffer already contains it.
+     *
+     * @return null since undo is handled by the Engine and not by Swing.
+     */
+    public UndoableEdit insertString(int where, String str) throws BadLocationException {
+        if (where < 0 || where > length) {
+            throw new BadLocationException("Invalid insert", where);
+        }
+        if (where == pendingOffset) {
+            pendingCount = 0;
+        }
+        length += str.length();
+        updateMarksForInsert(where, str.length());
+        return null;
+    }
+
+    /**
+     * Acknowledges that text has been removed from the Buffer by the Engine.
+     *
+     * @return null since undo is handled by the Engine and not by Swing.
+     */
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+        if (where < 0 || where + nitems > length) {
+            throw new BadLocationException("Invalid remove", where + nitems);
+        }
+        length -= nitems;
+        updateMarksForRemove(where, nitems);
+        return null;
+    }
+
+    public String getString(int where, int len) throws BadLocationException {
+        Segment segment = new Segment();
+        getChars(where, len, segment);
+        return segment.toString();
+    }
+
+    public void getChars(int where, int len, Segment txt) throws BadLocationException {
+        if (where < 0 || len < 0 || where + len > length()) {
+            throw new BadLocationException("Invalid range", where + len);
+        }
+        /** Callers accepting a partial return get at most one scratch array full of characters. */
+        if (txt.isPartialReturn()) {
+            len = Math.min(len, MAX_SCRATCH_LENGTH);
+        }
+        char[] chars;
+        if (txt.isPartialReturn()) {
+            if (scratch.length < len) {
+                scratch = new char[Math.min(Math.max(len, scratch.length * 2), MAX_SCRATCH_LENGTH)];
+            }
+            chars = scratch;
+        } else {
+            chars = new char[len];
+        }
+        int fromBuffer = Math.min(len, length - where);
+        Buffer buffer = engine.getBuffer();
+
+        try {
+            /** Characters behind announced but not yet inserted characters are read behind them. */
+            int end = where + fromBuffer;
+            int beforePending = pendingCount == 0 ? fromBuffer : Math.max(0, Math.min(end, pendingOffset) - where);
+            buffer.getChars(where, where + beforePending, chars, 0);
+            if (beforePending < fromBuffer) {
+                buffer.getChars(where + beforePending + pendingCount, end + pendingCount, chars, beforePending);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new BadLocationException("Buffer and document are out of sync", where);
+        }
+        /** The range includes the implied '\n' at the end of the content. */
+        if (fromBuffer < len) {
+            chars[len - 1] = '\n';
+        }
+
+        txt.array = chars;
+        txt.offset = 0;
+        txt.count = len;
+    }
+
+    /**
+     * Moves positions behind an insertion. As in the Swing contents, positions at the
+     * insert offset move along, except for offset 0 which stays at the start.
+     */
+    private void updateMarksForInsert(int offset, int count) {
+        for (int i = getFirstMark(offset == 0 ? 1 : offset); i < markCount; i++) {
+            marks[i].offset += count;
+        }
+    }
+
+    /**
+     * Moves positions behind a removal back and positions inside the removed range
+     * to its start. The marks stay sorted.
+     */
+    private void updateMarksForRemove(int offset, int count) {
+        for (int i = getFirstMark(offset); i < markCount; i++) {
+            Mark mark = marks[i];
+            mark.offset = mark.offset >= offset + count ? mark.offset - count : offset;
+        }
+    }
+
+    /**
+     * Returns the index of the first mark at or behind an offset.
+     */
+    private int getFirstMark(int offset) {
+        int low = 0;
+        int high = markCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (marks[middle].offset < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Removes the marks of garbage collected positions once they make up a tenth of
+     * all marks, so the marks are only compacted now and then.
+     */
+    private void removeUnusedMarks() {
+        while (unusedMarks.poll() != null) {
+            unusedMarkCount++;
+        }
+        if (unusedMarkCount <= Math.max(5, markCount / 10)) {
+            return;
+        }
+        int live = 0;
+        for (int i = 0; i < markCount; i++) {
+            if (marks[i].get() != null) {
+                marks[live++] = marks[i];
+            }
+        }
+        Arrays.fill(marks, live, markCount, null);
+        markCount = live;
+        unusedMarkCount = 0;
+    }
+
+    /**
+     * Offset of one or more positions. It only references its position weakly, so the
+     * position can be garbage collected when Swing doesn't use it anymore.
+     */
+    private static class Mark extends WeakReference<BufferPosition> {
+        int offset;
+
+        Mark(int offset, BufferPosition position, ReferenceQueue<BufferPosition> queue) {
+            super(position, queue);
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Position in the document that moves along with changes of the text.
+     */
+    private static class BufferPosition implements Position {
+        Mark mark;
+
+        public int getOffset() {
+            return mark.offset;
+        }
+    }
+}
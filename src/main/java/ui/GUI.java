@@ -4,6 +4,7 @@ import commands.*;
 import commands.Command;
 import engine.Engine;
 import engine.Selection;
+import engine.TextChange;
 import io.FileIO;
 import listener.KeyActionListener;
 import listener.MouseActionListener;
@@ -32,8 +33,14 @@ public class GUI implements EngineObserver {
     private JScrollPane jScrollpane;
     private JTextPane textPane;
 
+    /** Storage of the document of {@link GUI#textPane} which reads from the Buffer of the Engine. */
+    private BufferContent bufferContent;
+
     private Underliner redUnderliner;
 
+    /** Version of the text that is currently shown in {@link GUI#textPane}. */
+    private long documentVersion;
+
     /** Constructor in which {@link GUI#redUnderliner} is initialized for the spell checker. */
     public GUI() {
         redUnderliner = new Underliner(Color.RED);
@@ -49,6 +56,9 @@ public class GUI implements EngineObserver {
         this.engine = engine;
         engine.registerObserver(this);
 
+        /** Spell check results are computed in the background but shown on the event thread. */
+        engine.setSpellCheckResultExecutor(SwingUtilities::invokeLater);
+
         return this;
     }
 
@@ -73,8 +83,16 @@ public class GUI implements EngineObserver {
      * Set up the text pane which is the heart of the GUI.
      */
     private void setupTextPanes() {
-        textPane = new JTextPane();
+        /**
+         * The document doesn't keep its own copy of the text but reads it from the
+         * Buffer of the Engine, see {@link BufferContent}.
+         */
+        bufferContent = new BufferContent(engine);
+        textPane = new JTextPane(new DefaultStyledDocument(bufferContent, new StyleContext()));
         textPane.setPreferredSize(new Dimension(768, 512));
+        if (!engine.getBuffer().isEmpty()) {
+            updateText(engine.getBuffer().toString());
+        }
 
         /**
          * Remove default action and input map of {@link GUI#textPane} to disable
@@ -138,6 +156,21 @@ public class GUI implements EngineObserver {
      */
     private void setupPanel() {
         jScrollpane = new JScrollPane(textPane);
+
+        /** Background spell checks start with the visible text, so it is updated on scrolling. */
+        jScrollpane.getViewport().addChangeListener(e -> updateViewport());
+    }
+
+    /**
+     * Tells the Engine which range of the text is visible in {@link GUI#jScrollpane}.
+     */
+    private void updateViewport() {
+        Rectangle visible = jScrollpane.getViewport().getViewRect();
+        int start = textPane.viewToModel(visible.getLocation());
+        int end = textPane.viewToModel(new Point(visible.x + visible.width, visible.y + visible.height));
+        if (start >= 0 && end >= start) {
+            engine.setViewport(start, end);
+        }
     }
 
     /**
@@ -173,8 +206,7 @@ public class GUI implements EngineObserver {
                     File selectedFile = fileChooser.getSelectedFile();
 
                     try {
-                        List<Character> chars = FileIO.getContentsOfFile(selectedFile);
-                        Command openCommand = new OpenCommand(chars);
+                        Command openCommand = new OpenCommand(FileIO.readFile(selectedFile), selectedFile);
                         openCommand.execute(engine);
                     }  catch (IOException e) {
                         System.out.println("Error while opening a file.");
@@ -251,11 +283,35 @@ public class GUI implements EngineObserver {
             }
         });
 
+        JMenuItem goToLineItem = new JMenuItem("Go to Line");
+        goToLineItem.setMnemonic(KeyEvent.VK_G);
+        goToLineItem.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                String input = JOptionPane.showInputDialog(
+                        null,
+                        "Line number (1 - " + engine.lineCount() + "):",
+                        "Go to Line",
+                        JOptionPane.PLAIN_MESSAGE
+                );
+                if (input == null) {
+                    return;
+                }
+                try {
+                    /** Users count lines from 1, the Engine from 0. */
+                    Command command = new GoToLineCommand(Integer.parseInt(input.trim()) - 1);
+                    command.execute(engine);
+                } catch (NumberFormatException ex) {
+                    System.out.println("Not a valid line number: " + input);
+                }
+            }
+        });
+
         editMenu.add(undoItem);
         editMenu.add(redoItem);
         editMenu.add(copyItem);
         editMenu.add(cutItem);
         editMenu.add(pasteItem);
+        editMenu.add(goToLineItem);
 
         /** MACRO menu dropdown items */
         JMenuItem startRecordItem = new JMenuItem("Start Recording");
@@ -319,12 +375,51 @@ public class GUI implements EngineObserver {
 
     /**
      * Updates the UI by assigning the passed text content to the content of
-     * the {@link GUI#textPane} object.
+     * the {@link GUI#textPane} object. The Buffer of the Engine already contains
+     * this content, so the document is only told that all of its text was replaced.
      *
      * @param content new text content
      */
     public void updateText(String content) {
-        textPane.setText(content);
+        Document document = textPane.getDocument();
+        try {
+            bufferContent.announceInsert(0, content.length());
+            document.remove(0, document.getLength());
+            document.insertString(0, content, null);
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+        documentVersion = engine.getDocumentVersion();
+    }
+
+    /**
+     * Updates the UI by applying a single change to the document of the
+     * {@link GUI#textPane}. Only the changed part of the document is modified.
+     * If a change was missed (detected by the document version), the complete
+     * text is loaded from the Engine instead.
+     *
+     * @param change describing the modification of the text
+     */
+    public void updateText(TextChange change) {
+        if (change.getVersion() != documentVersion + 1) {
+            updateText(engine.getBuffer().toString());
+            return;
+        }
+
+        Document document = textPane.getDocument();
+        try {
+            bufferContent.announceInsert(change.getOffset(), change.getInsertedText().length());
+            if (change.getRemovedLength() > 0) {
+                document.remove(change.getOffset(), change.getRemovedLength());
+            }
+            if (!change.getInsertedText().isEmpty()) {
+                document.insertString(change.getOffset(), change.getInsertedText(), null);
+            }
+            documentVersion = change.getVersion();
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+            updateText(engine.getBuffer().toString());
+        }
     }
 
     /**
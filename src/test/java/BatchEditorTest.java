@@ -0,0 +1,102 @@
+import commands.Command;
+import commands.InsertCommand;
+import commands.UpdateCursorCommand;
+import engine.Engine;
+import io.MacroFile;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchEditorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void givenDirectoryTree_whenMacroIsApplied_thenAllFilesAreEdited() throws Exception {
+        Path directory = temporaryFolder.newFolder("documents").toPath();
+        Path first = directory.resolve("first.txt");
+        Path second = Files.createDirectory(directory.resolve("nested")).resolve("second.txt");
+        Files.write(first, "hello".getBytes(StandardCharsets.UTF_8));
+        Files.write(second, "world".getBytes(StandardCharsets.UTF_8));
+
+        Engine recorder = new Engine();
+        recorder.startRecording();
+        new UpdateCursorCommand(0).execute(recorder);
+        new InsertCommand('>').execute(recorder);
+        recorder.stopRecording();
+        File macroFile = directory.resolve("edit" + MacroFile.FILE_EXTENSION).toFile();
+        recorder.saveRecording(macroFile);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int failureCount = BatchEditor.editFiles(macroFile, directory, 2, new PrintStream(out, true));
+
+        assertThat(failureCount).isEqualTo(0);
+        assertThat(out.toString()).startsWith("Processed 2 files");
+        assertThat(new String(Files.readAllBytes(first), StandardCharsets.UTF_8)).isEqualTo(">hello");
+        assertThat(new String(Files.readAllBytes(second), StandardCharsets.UTF_8)).isEqualTo(">world");
+        assertThat(getFileNames(directory)).containsOnly("first.txt", "second.txt", macroFile.getName());
+    }
+
+    @Test
+    public void givenLinkAndPermissions_whenMacroIsApplied_thenBothAreKept() throws Exception {
+        Path directory = temporaryFolder.newFolder("documents").toPath();
+        Assume.assumeTrue(Files.getFileStore(directory).supportsFileAttributeView(PosixFileAttributeView.class));
+        Path file = directory.resolve("script.sh");
+        Files.write(file, "echo".getBytes(StandardCharsets.UTF_8));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-x---");
+        Files.setPosixFilePermissions(file, permissions);
+        Path link = Files.createSymbolicLink(temporaryFolder.getRoot().toPath().resolve("link.sh"), file);
+
+        BatchEditor.editFiles(Collections.singletonList(new InsertCommand('#')), Collections.singletonList(link.toFile()),
+                1, new PrintStream(new ByteArrayOutputStream(), true));
+
+        assertThat(Files.isSymbolicLink(link)).isTrue();
+        assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)).isEqualTo("#echo");
+        assertThat(Files.getPosixFilePermissions(file)).isEqualTo(permissions);
+    }
+
+    @Test
+    public void givenFailingMacro_whenApplied_thenFailureIsReportedAndFileIsUnchanged() throws Exception {
+        Path directory = temporaryFolder.newFolder("documents").toPath();
+        Path file = directory.resolve("first.txt");
+        Files.write(file, "hello".getBytes(StandardCharsets.UTF_8));
+        Command failing = engine -> {
+            throw new AssertionError("broken macro");
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int failureCount = BatchEditor.editFiles(Arrays.asList(new InsertCommand('>'), failing),
+                Collections.singletonList(file.toFile()), 1, new PrintStream(out, true));
+
+        assertThat(failureCount).isEqualTo(1);
+        assertThat(out.toString()).contains("Failed: " + file).contains("broken macro");
+        assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)).isEqualTo("hello");
+        assertThat(getFileNames(directory)).containsOnly("first.txt");
+    }
+
+    private static List<String> getFileNames(Path directory) throws Exception {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).map(path -> path.getFileName().toString())
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package engine;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class implements unit tests for the Buffer. Every test runs once for each
+ * storage backend.
+ */
+@RunWith(Parameterized.class)
+public class BufferTest {
+    Buffer buffer;
+    Buffer.StorageType storageType;
+    Buffer.StorageType initialStorageType;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> storageTypes() {
+        List<Object[]> storageTypes = new ArrayList<>();
+        for (Buffer.StorageType storageType : Buffer.StorageType.values()) {
+            storageTypes.add(new Object[]{storageType});
+        }
+        return storageTypes;
+    }
+
+    public BufferTest(Buffer.StorageType storageType) {
+        this.storageType = storageType;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        initialStorageType = Buffer.getDefaultStorageType();
+        Buffer.setDefaultStorageType(storageType);
+        buffer = new Buffer(toList("hello world"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Buffer.setDefaultStorageType(initialStorageType);
+    }
+
+    @Test
+    public void givenLargerArray_whenWrappedWithLength_thenOnlyTheLengthIsText() {
+        char[] chars = "hello world#####".toCharArray();
+        Buffer wrapped = Buffer.wrap(chars, 11);
+        assertThat(wrapped.toString()).isEqualTo("hello world");
+
+        wrapped.insertAtPosition('!', wrapped.getSize());
+        assertThat(wrapped.toString()).isEqualTo("hello world!");
+        assertThat(wrapped.getSize()).isEqualTo(12);
+        assertThat(Buffer.wrap(chars, 0).toString()).isEmpty();
+    }
+
+    @Test
+    public void givenBuffer_whenCharsInsertedAtDifferentPositions_thenTextIsCorrect() {
+        buffer.insertAtPosition('!', buffer.getSize());
+        buffer.insertAtPosition('>', 0);
+        buffer.insertAtPosition(',', 6);
+
+        assertThat(buffer.toString()).isEqualTo(">hello, world!");
+        assertThat(buffer.getSize()).isEqualTo(14);
+    }
+
+    @Test
+    public void givenBuffer_whenBufferInserted_thenTextIsCorrect() {
+        buffer.insertAtPosition(new Buffer(toList("big ")), 6);
+
+        assertThat(buffer.toString()).isEqualTo("hello big world");
+    }
+
+    @Test
+    public void givenBuffer_whenCharsDeleted_thenTextIsCorrect() {
+        buffer.deleteAtPosition(0);
+        buffer.deleteAtPosition(buffer.getSize() - 1);
+        buffer.deleteInterval(7, 4);
+
+        assertThat(buffer.toString()).isEqualTo("ellorl");
+    }
+
+    @Test
+    public void givenBuffer_whenManyCharsTypedAndDeleted_thenTextMatchesReference() {
+        StringBuilder reference = new StringBuilder(buffer.toString());
+
+        for (int i = 0; i < 2000; i++) {
+            int position = (i * 31) % (reference.length() + 1);
+            char c = (char) ('a' + i % 26);
+            buffer.insertAtPosition(c, position);
+            reference.insert(position, c);
+
+            if (i % 3 == 0) {
+                int deletePosition = (i * 17) % reference.length();
+                buffer.deleteAtPosition(deletePosition);
+                reference.deleteCharAt(deletePosition);
+            }
+        }
+
+        assertThat(buffer.toString()).isEqualTo(reference.toString());
+    }
+
+    @Test
+    public void givenBuffer_whenCopied_thenCopyIsIndependent() {
+        Buffer copy = buffer.getCopy();
+        Buffer partialCopy = buffer.getCopy(new Selection(11, 6));
+
+        buffer.deleteInterval(0, buffer.getSize());
+
+        assertThat(copy.toString()).isEqualTo("hello world");
+        assertThat(partialCopy.toString()).isEqualTo("world");
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void givenBuffer_whenContentModified_thenBufferIsNotModified() {
+        buffer.getContent().clear();
+
+        assertThat(buffer.getContent()).isEqualTo(toList("hello world"));
+    }
+
+    @Test
+    public void givenWrappedArray_whenEdited_thenCopiesAreNotAffected() {
+        Buffer wrapped = Buffer.wrap("original text".toCharArray());
+        Buffer snapshot = wrapped.getCopy();
+
+        wrapped.deleteInterval(0, 9);
+        wrapped.insertAtPosition(new Buffer(toList("new ")), 0);
+        snapshot.insertAtPosition('!', snapshot.getSize());
+
+        assertThat(wrapped.toString()).isEqualTo("new text");
+        assertThat(snapshot.toString()).isEqualTo("original text!");
+    }
+
+    @Test
+    public void givenBuffer_whenGetChars_thenRangeIsCopied() {
+        char[] chars = new char[5];
+        buffer.insertAtPosition('_', 5);
+
+        buffer.getChars(3, 8, chars, 0);
+
+        assertThat(new String(chars)).isEqualTo("lo_ w");
+    }
+
+    @Test
+    public void givenLargeBuffer_whenEditedAndCopied_thenTextMatchesReference() {
+        char[] chars = new char[100000];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + i % 26);
+        }
+        Buffer large = Buffer.wrap(chars.clone());
+        StringBuilder reference = new StringBuilder(new String(chars));
+
+        for (int i = 0; i < 500; i++) {
+            int deleteStart = (i * 7919) % reference.length();
+            int deleteEnd = Math.min(reference.length(), deleteStart + 1 + i % 50);
+            large.deleteInterval(deleteStart, deleteEnd);
+            reference.delete(deleteStart, deleteEnd);
+
+            int copyStart = (i * 104729) % (reference.length() - 100);
+            int copyEnd = copyStart + 1 + i % 100;
+            Buffer copy = large.getCopy(new Selection(copyStart, copyEnd));
+            String referenceCopy = reference.substring(copyStart, copyEnd);
+
+            int insertPosition = (i * 1299709) % (reference.length() + 1);
+            large.insertAtPosition(copy, insertPosition);
+            reference.insert(insertPosition, referenceCopy);
+        }
+
+        assertThat(large.toString()).isEqualTo(reference.toString());
+    }
+
+    @Test
+    public void givenRope_whenManyCharsTyped_thenTreeStaysBalanced() {
+        Assume.assumeTrue(storageType == Buffer.StorageType.ROPE);
+        Rope rope = new Rope();
+
+        for (int i = 0; i < 200000; i++) {
+            rope.insert(i % 3 == 0 ? rope.length() : rope.length() / 2, 'x');
+        }
+
+        assertThat(rope.length()).isEqualTo(200000);
+        // 200000 chars fit into about 400 full leaves, an AVL tree of those has a height of about 12
+        assertThat(rope.getHeight()).isLessThan(20);
+    }
+
+    @Test
+    public void givenTextWithLines_whenEdited_thenLineIndexMatchesText() {
+        StringBuilder reference = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            reference.append("line ").append(i).append('\n');
+        }
+        Buffer lines = Buffer.wrap(reference.toString().toCharArray());
+        assertLineIndexMatches(lines, reference);
+
+        // More new lines than fit into a block of the line index
+        char[] newLines = new char[1500];
+        Arrays.fill(newLines, '\n');
+        lines.insertAtPosition(Buffer.wrap(newLines.clone()), 10);
+        reference.insert(10, newLines);
+        assertLineIndexMatches(lines, reference);
+
+        for (int i = 0; i < 2000; i++) {
+            int position = (i * 7919) % (reference.length() + 1);
+            if (i % 4 == 0 && position < reference.length()) {
+                int end = Math.min(reference.length(), position + i % 3000);
+                lines.deleteInterval(position, end == position ? position + 1 : end);
+                reference.delete(position, end == position ? position + 1 : end);
+            } else if (i % 4 == 1) {
+                lines.insertAtPosition(new Buffer(toList("a\nb\n\nc")), position);
+                reference.insert(position, "a\nb\n\nc");
+            } else {
+                char c = i % 3 == 0 ? '\n' : 'x';
+                lines.insertAtPosition(c, position);
+                reference.insert(position, c);
+            }
+            if (i % 100 == 0) {
+                assertLineIndexMatches(lines, reference);
+            }
+        }
+        assertLineIndexMatches(lines, reference);
+    }
+
+    @Test
+    public void checkWordStartAndEnd() {
+        assertEquals(buffer.getWordStart(3), 0);
+        assertEquals(buffer.getWordEnd(3), 5);
+        assertEquals(buffer.getWordStart(buffer.getSize()), 6);
+        assertEquals(buffer.getWordEnd(5), 6);
+    }
+
+    private void assertLineIndexMatches(Buffer lines, CharSequence reference) {
+        int line = 0;
+        int lineStart = 0;
+        for (int i = 0; i <= reference.length(); i++) {
+            assertEquals(line, lines.offsetToLine(i));
+            if (i == reference.length() || reference.charAt(i) == '\n') {
+                assertEquals(lineStart, lines.lineToOffset(line));
+                assertEquals(i - lineStart + (i < reference.length() ? 1 : 0), lines.getLineLength(line));
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        assertEquals(line, lines.getLineCount());
+    }
+
+    private List<Character> toList(String text) {
+        List<Character> list = new ArrayList<>();
+        for (char c : text.toCharArray()) {
+            list.add(c);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,249 @@
+package engine;
+
+import engine.interfaces.IDictionary;
+import io.DictionaryCache;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * This class implements unit tests for the representations of dictionaries.
+ */
+public class DictionaryTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    static List<String> words;
+    static Dawg dawg;
+
+    @BeforeClass
+    public static void loadWords() throws Exception {
+        words = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                DictionaryTest.class.getResourceAsStream(DictionaryRegistry.DEFAULT_DICTIONARY)))) {
+            String word;
+            while ((word = br.readLine()) != null) {
+                words.add(word);
+            }
+        }
+        dawg = Dawg.build(words);
+    }
+
+    @Test
+    public void givenDictionaryWords_whenBuiltAsDawg_thenLookupsMatchWordSet() {
+        IDictionary wordSet = new WordSetDictionary(words);
+        assertThat(dawg.size()).isEqualTo(wordSet.size());
+
+        for (String word : words) {
+            assertThat(dawg.contains(word)).as(word).isTrue();
+            String misspelled = word + "q";
+            assertThat(dawg.contains(misspelled)).as(misspelled).isEqualTo(wordSet.contains(misspelled));
+            String truncated = word.substring(0, word.length() - 1);
+            assertThat(dawg.contains(truncated)).as(truncated).isEqualTo(wordSet.contains(truncated));
+        }
+        char[] text = "the colour of teh sky".toCharArray();
+        assertThat(dawg.contains(text, 4, 10)).isTrue();
+        assertThat(dawg.contains(text, 14, 17)).isFalse();
+        assertThat(dawg.contains("")).isFalse();
+
+        /** Packed arrays need a small fraction of the memory of a set of Strings. */
+        assertThat(dawg.getMemorySize()).isLessThan(1024 * 1024);
+    }
+
+    @Test
+    public void givenDawg_whenQueriedWithPrefix_thenWordsWithPrefixAreFound() {
+        assertThat(dawg.containsPrefix("colou")).isTrue();
+        assertThat(dawg.containsPrefix("xqz")).isFalse();
+        assertThat(dawg.getWordsWithPrefix("colour", 3)).containsExactly("colour", "colour's", "colouration");
+    }
+
+    @Test
+    public void givenDictionaryCache_whenLoadedAgain_thenCompiledDawgIsMapped() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "british-english" + DictionaryCache.FILE_EXTENSION);
+        byte[] source = String.join("\n", words).getBytes(StandardCharsets.UTF_8);
+        Dawg compiled = DictionaryCache.load(file, source.length, 1000, () -> source, bytes -> dawg);
+        assertThat(file).exists();
+
+        /** Unchanged size and time are trusted without reading the source. */
+        Dawg mapped = DictionaryCache.load(file, source.length, 1000, () -> {
+            throw new AssertionError("Source must not be read.");
+        }, bytes -> {
+            throw new AssertionError("Cached dictionary must not be compiled again.");
+        });
+        assertThat(mapped.isDirect()).isTrue();
+        assertThat(mapped.size()).isEqualTo(dawg.size());
+        for (int i = 0; i < words.size(); i += 97) {
+            assertThat(mapped.contains(words.get(i))).isTrue();
+        }
+        assertThat(mapped.contains("teh")).isFalse();
+
+        /** A touched source is read once and its checksum keeps the cache valid. */
+        List<String> reads = new ArrayList<>();
+        DictionaryCache.load(file, source.length, 2000, () -> {
+            reads.add("read");
+            return source;
+        }, bytes -> {
+            throw new AssertionError("Cached dictionary must not be compiled again.");
+        });
+        assertThat(reads).hasSize(1);
+        assertThat(DictionaryCache.load(file, source.length, 2000, () -> {
+            throw new AssertionError("Source must not be read.");
+        }, bytes -> dawg).size()).isEqualTo(dawg.size());
+
+        /** A changed source invalidates the cache. */
+        byte[] smallSource = "one\ntwo".getBytes(StandardCharsets.UTF_8);
+        Dawg small = DictionaryCache.load(file, smallSource.length, 3000, () -> smallSource,
+                bytes -> Dawg.build(Arrays.asList(new String(bytes, StandardCharsets.UTF_8).split("\n"))));
+        assertThat(small.size()).isEqualTo(2);
+        assertThat(compiled.contains("colour")).isTrue();
+    }
+
+    @Test
+    public void givenDictionaryFilesWithSameName_whenLoadedMapped_thenEachGetsItsOwnCache() throws Exception {
+        File first = new File(temporaryFolder.newFolder("first"), "words.txt");
+        File second = new File(temporaryFolder.newFolder("second"), "words.txt");
+        Files.write(first.toPath(), "apple\npear".getBytes(StandardCharsets.UTF_8));
+        Files.write(second.toPath(), "plum".getBytes(StandardCharsets.UTF_8));
+        DictionaryRegistry.Format format = DictionaryRegistry.getFormat();
+        File cacheDirectory = DictionaryRegistry.getCacheDirectory();
+        DictionaryRegistry.setFormat(DictionaryRegistry.Format.MAPPED_DAWG);
+        DictionaryRegistry.setCacheDirectory(temporaryFolder.newFolder("cache"));
+        try {
+            IDictionary firstDictionary = DictionaryRegistry.get(first.getPath());
+            IDictionary secondDictionary = DictionaryRegistry.get(second.getPath());
+
+            assertThat(firstDictionary.contains("pear")).isTrue();
+            assertThat(secondDictionary.contains("plum")).isTrue();
+            assertThat(secondDictionary.contains("pear")).isFalse();
+            assertThat(DictionaryRegistry.getCacheDirectory().list()).hasSize(2);
+        } finally {
+            DictionaryRegistry.unload(first.getPath());
+            DictionaryRegistry.unload(second.getPath());
+            DictionaryRegistry.setFormat(format);
+            DictionaryRegistry.setCacheDirectory(cacheDirectory);
+        }
+    }
+
+    @Test
+    public void givenTextAcrossChunks_whenSpellChecked_thenMisspelledRangesAreFound() {
+        StringBuilder text = new StringBuilder("The Colour of TEH sky, many times\tteh.");
+        int expectedCount = 2;
+        /** Words at the border of a chunk and a word longer than a chunk. */
+        while (text.length() < 4094) {
+            text.append(' ');
+        }
+        text.append("teh colour ");
+        expectedCount++;
+        for (int i = 0; i < 5000; i++) {
+            text.append('q');
+        }
+        expectedCount++;
+        Buffer buffer = Buffer.wrap(text.toString().toCharArray());
+
+        for (IDictionary dictionary : Arrays.asList(dawg, new WordSetDictionary(words))) {
+            int[] ranges = new SpellCheckModule(dictionary).getMisspelledRanges(buffer, 0, buffer.getSize());
+            assertThat(ranges).hasSize(2 * expectedCount);
+            assertThat(Arrays.copyOf(ranges, 6)).containsExactly(14, 17, 34, 37, 4094, 4097);
+            assertThat(ranges[6]).isEqualTo(4105);
+            assertThat(ranges[7]).isEqualTo(buffer.getSize());
+        }
+    }
+
+    @Test
+    public void givenLargeText_whenSpellCheckedInParallel_thenRangesMatchSequentialCheck() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1024 * 1024) {
+            text.append("The colour of teh sky is bleu, ").append(text.length()).append(" timez.\n");
+        }
+        Buffer buffer = Buffer.wrap(text.toString().toCharArray());
+
+        SpellCheckModule sequential = new SpellCheckModule(dawg);
+        sequential.setParallelThreshold(Integer.MAX_VALUE);
+        SpellCheckModule parallel = new SpellCheckModule(dawg);
+        parallel.setParallelThreshold(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        parallel.setForkJoinPool(pool);
+
+        try {
+            int[] expected = sequential.getMisspelledRanges(buffer, 0, buffer.getSize());
+            assertThat(expected.length).isGreaterThan(1000);
+            assertThat(parallel.getMisspelledRanges(buffer, 0, buffer.getSize())).isEqualTo(expected);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void givenSuggestionIndex_whenMisspelledWordIsLookedUp_thenSimilarWordsAreSuggested() throws Exception {
+        SuggestionModule suggestionModule = new SuggestionModule(dawg);
+        assertThat(suggestionModule.isReady()).isFalse();
+        suggestionModule.awaitReady();
+        assertThat(suggestionModule.getMemorySize()).isGreaterThan(0);
+
+        assertThat(suggestionModule.getSuggestions("teh", 10)).contains("the");
+        assertThat(suggestionModule.getSuggestions("colur", 10)).contains("colour");
+        assertThat(suggestionModule.getSuggestions("accomodation", 3)).startsWith("accommodation");
+        assertThat(suggestionModule.getSuggestions("Recieve", 3)).startsWith("Receive");
+        assertThat(suggestionModule.getSuggestions("colour", 1)).containsExactly("colour");
+        assertThat(suggestionModule.getSuggestions("xqzvwk", 10)).isEmpty();
+    }
+
+    @Test
+    public void givenDictionary_whenSuggestionModuleIsRequestedTwice_thenItIsShared() throws Exception {
+        IDictionary dictionary = new WordSetDictionary(Arrays.asList("colour", "the")) {
+            @Override
+            public int size() {
+                throw new AssertionError("The index enumerates the words only once.");
+            }
+        };
+
+        SuggestionModule suggestionModule = SuggestionModule.forDictionary(dictionary);
+        assertThat(SuggestionModule.forDictionary(dictionary)).isSameAs(suggestionModule);
+        assertThat(SuggestionModule.forDictionary(dawg)).isNotSameAs(suggestionModule);
+
+        suggestionModule.awaitReady();
+        assertThat(suggestionModule.getSuggestions("colur", 10)).containsExactly("colour");
+    }
+
+    @Test
+    public void givenAffixDictionary_whenWordsAreLookedUp_thenInflectedFormsAreFound() {
+        IDictionary dictionary = DictionaryRegistry.get("/dictionaries/test-affix.dic");
+        assertThat(dictionary).isInstanceOf(AffixDictionary.class);
+        assertThat(((AffixDictionary) dictionary).getRootCount()).isEqualTo(8);
+
+        assertThat(Arrays.asList("colour", "coloured", "colouring", "colours", "uncolour", "walked",
+                "rewalking", "created", "creating", "recreates", "tried", "tries", "boxes", "skies", "the", "London", "Londons"))
+                .allMatch(dictionary::contains);
+        assertThat(Arrays.asList("colourred", "uncoloured", "uncolours", "createing", "trys", "boxs", "skys", "unwalk",
+                "rethe", "teh", "re", "", "london"))
+                .allMatch(word -> !dictionary.contains(word));
+
+        List<String> forms = new ArrayList<>();
+        dictionary.forEachWord(forms::add);
+        assertThat(forms).hasSize(dictionary.size()).contains("uncolour", "recreating", "boxes");
+        assertThat(forms).allMatch(dictionary::contains);
+
+        /** The spell checker works with the affix dictionary like with any other dictionary. */
+        Buffer buffer = Buffer.wrap("The Walkers recreated teh Colours".toCharArray());
+        int[] ranges = new SpellCheckModule(dictionary).getMisspelledRanges(buffer, 0, buffer.getSize());
+        assertThat(ranges).containsExactly(4, 11, 22, 25);
+
+        /** A capitalized root keeps its capital letter, lower case roots may be capitalized. */
+        buffer = Buffer.wrap("London LONDONS london THE".toCharArray());
+        ranges = new SpellCheckModule(dictionary).getMisspelledRanges(buffer, 0, buffer.getSize());
+        assertThat(ranges).containsExactly(15, 21);
+    }
+}
@@ -1,16 +1,46 @@
 package engine;
 
+import commands.CutCommand;
 import commands.DeleteCommand;
 import commands.InsertCommand;
+import commands.InsertTextCommand;
+import commands.PasteCommand;
+import commands.SpellCheckCommand;
+import commands.UpdateCursorCommand;
+import commands.UpdateSelectionCommand;
 import engine.interfaces.EngineObserver;
+import engine.interfaces.IDictionary;
+import io.FileIO;
+import io.MacroFile;
+import io.UndoJournal;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ui.BufferContent;
 import ui.GUI;
 
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.*;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 
@@ -18,6 +48,9 @@ import static org.junit.Assert.assertNotEquals;
  * This class implements unit tests for the Engine.
  */
 public class EngineTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     Engine engine;
     Buffer randomBuffer;
     Buffer randomClipboard;
@@ -193,8 +226,10 @@ public class EngineTest {
 
         engine.pasteClipboard();
 
-        randomBuffer.getContent().addAll(randomBuffer.getContent());
-        assertThat(engine.getBuffer().getContent()).containsAll(randomBuffer.getContent());
+        /** getContent() returns a copy, so the expected text is built separately. */
+        List<Character> expectedContent = getRandomText();
+        expectedContent.addAll(getRandomText());
+        assertThat(engine.getBuffer().getContent()).isEqualTo(expectedContent);
     }
 
     @Test
@@ -285,6 +320,111 @@ public class EngineTest {
         assertEquals(misspelledWordSelections.size(), 0);
     }
 
+    @Test
+    public void givenTextIsEdited_whenBackgroundSpellChecksComplete_thenOnlyLatestTextIsApplied() throws Exception {
+        BlockingQueue<Runnable> results = new LinkedBlockingQueue<>();
+        engine.setSpellCheckResultExecutor(results::add);
+
+        engine.openFile("helo world".toCharArray());
+        engine.updateCursor(engine.getBuffer().getSize());
+        for (char c : " xyz".toCharArray()) {
+            engine.insertChar(c);
+        }
+
+        // Results of outdated text are discarded, so the first applied result belongs to the latest text
+        while (engine.getMisspelledWordSelections() == null) {
+            Runnable result = results.poll(10, TimeUnit.SECONDS);
+            assertThat(result).isNotNull();
+            result.run();
+        }
+
+        List<Selection> misspelledWordSelections = new ArrayList<>(engine.getMisspelledWordSelections());
+        misspelledWordSelections.sort(Comparator.comparingInt(Selection::getSelectionBase));
+        assertThat(misspelledWordSelections).hasSize(2);
+        assertEquals(11, misspelledWordSelections.get(1).getSelectionBase());
+        assertEquals(14, misspelledWordSelections.get(1).getSelectionEnd());
+    }
+
+    @Test
+    public void givenViewport_whenLargeTextIsOpened_thenVisibleTextIsSpellCheckedFirst() throws Exception {
+        BlockingQueue<Runnable> results = new LinkedBlockingQueue<>();
+        engine.setSpellCheckResultExecutor(results::add);
+
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 400000) {
+            text.append("the colour of teh sky\n");
+        }
+        int viewportStart = 200000;
+        int viewportEnd = 202000;
+        engine.setViewport(viewportStart, viewportEnd);
+        engine.openFile(text.toString().toCharArray());
+
+        // The first applied result only contains the words around the viewport
+        while (engine.getMisspelledWordSelections() == null) {
+            Runnable result = results.poll(10, TimeUnit.SECONDS);
+            assertThat(result).isNotNull();
+            result.run();
+        }
+        List<Selection> visible = engine.getMisspelledWordSelections();
+        assertThat(visible).isNotEmpty();
+        assertThat(visible).allMatch(selection -> selection.getSelectionBase() >= viewportStart - 8192 &&
+                selection.getSelectionEnd() <= viewportEnd + 8192);
+
+        // The rest of the text follows until the result matches a complete spell check
+        List<Selection> expected = spellCheckModule.getMisspelledWords(engine.getBuffer());
+        while (engine.getMisspelledWordSelections().size() < expected.size()) {
+            Runnable result = results.poll(10, TimeUnit.SECONDS);
+            assertThat(result).isNotNull();
+            result.run();
+        }
+        List<Selection> actual = engine.getMisspelledWordSelections();
+        assertThat(actual).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getSelectionBase(), actual.get(i).getSelectionBase());
+            assertEquals(expected.get(i).getSelectionEnd(), actual.get(i).getSelectionEnd());
+        }
+    }
+
+    @Test
+    public void givenTextIsEdited_whenSpellCheckedIncrementally_thenResultMatchesCompleteSpellCheck() {
+        String typed = "the quik brown fox, jumsp over teh lazy dog.\n";
+        for (int i = 0; i < 300; i++) {
+            int position = (i * 7919) % (engine.getBuffer().getSize() + 1);
+            engine.updateCursor(position);
+            if (i % 5 == 4 && position > 0) {
+                engine.deleteInDirection(DeleteCommand.DEL_BACKWARDS);
+            } else {
+                engine.insertChar(typed.charAt(i % typed.length()));
+            }
+            if (i % 50 == 0) {
+                engine.updateSelection(position / 2, position);
+                engine.cutSelection();
+                engine.updateCursor(engine.getBuffer().getSize() / 3);
+                engine.pasteClipboard();
+            }
+
+            List<Selection> expected = spellCheckModule.getMisspelledWords(engine.getBuffer());
+            List<Selection> actual = engine.getMisspelledWordSelections();
+            assertThat(actual).hasSize(expected.size());
+            for (int j = 0; j < expected.size(); j++) {
+                assertEquals(expected.get(j).getSelectionBase(), actual.get(j).getSelectionBase());
+                assertEquals(expected.get(j).getSelectionEnd(), actual.get(j).getSelectionEnd());
+            }
+        }
+    }
+
+    @Test
+    public void givenDictionaryRegistry_whenDictionaryIsRequestedAgain_thenItIsOnlyReloadedAfterUnloading() {
+        IDictionary dictionary = DictionaryRegistry.get(DictionaryRegistry.DEFAULT_DICTIONARY);
+        assertThat(DictionaryRegistry.get(DictionaryRegistry.DEFAULT_DICTIONARY)).isSameAs(dictionary);
+        assertThat(dictionary.size()).isGreaterThan(90000);
+        assertThat(dictionary.contains("colour")).isTrue();
+
+        assertThat(DictionaryRegistry.unload(DictionaryRegistry.DEFAULT_DICTIONARY)).isTrue();
+        assertThat(DictionaryRegistry.isLoaded(DictionaryRegistry.DEFAULT_DICTIONARY)).isFalse();
+        assertThat(DictionaryRegistry.get(DictionaryRegistry.DEFAULT_DICTIONARY)).isNotSameAs(dictionary);
+    }
+
     public List<Character> getRandomTxtWithMultipleWords(){
         List<Character>list = new ArrayList<>();
         list.add('r');
@@ -309,8 +449,8 @@ public class EngineTest {
     public void checkUndoCommand() {
         engine.setBuffer(randomBuffer);
         engine.setCursorPosition(randomBuffer.getSize());
+        // Consecutive typing is undone in one step
         List<Character> expectedResult = getRandomText();
-        expectedResult.add('n');
 
         engine.insertChar('n');
         engine.insertChar('m');
@@ -351,6 +491,340 @@ public class EngineTest {
         assertThat(engine.getBuffer().getContent()).isEqualTo(expectedResult);
     }
 
+    @Test
+    public void givenOperationLog_whenAllEditsUndoneAndRedone_thenEveryStateIsRestored() {
+        engine.setUndoModule(new UndoModule(UndoModule.Mode.OPERATION_LOG));
+        engine.openFile("the quick brown fox".toCharArray());
+        List<String> texts = new ArrayList<>();
+        List<Integer> cursors = new ArrayList<>();
+        texts.add(engine.getBuffer().toString());
+        cursors.add(engine.getCursorPosition());
+
+        engine.updateCursor(3);
+        engine.insertChar('!');
+        texts.add(engine.getBuffer().toString());
+        cursors.add(engine.getCursorPosition());
+        engine.updateSelection(5, 10);
+        engine.insertChar('X');
+        texts.add(engine.getBuffer().toString());
+        cursors.add(engine.getCursorPosition());
+        engine.deleteInDirection(DeleteCommand.DEL_BACKWARDS);
+        texts.add(engine.getBuffer().toString());
+        cursors.add(engine.getCursorPosition());
+        engine.updateSelection(0, 4);
+        engine.cutSelection();
+        texts.add(engine.getBuffer().toString());
+        cursors.add(engine.getCursorPosition());
+        engine.updateCursor(engine.getBuffer().getSize());
+        engine.pasteClipboard();
+        texts.add(engine.getBuffer().toString());
+        cursors.add(engine.getCursorPosition());
+
+        for (int i = texts.size() - 2; i >= 0; i--) {
+            engine.undoCommand();
+            assertThat(engine.getBuffer().toString()).isEqualTo(texts.get(i));
+            if (i == 1) {
+                // The text replaced by 'X' is selected again
+                assertEquals(5, engine.getSelection().getSelectionBase());
+                assertEquals(10, engine.getSelection().getSelectionEnd());
+            }
+        }
+        // Nothing left to undo
+        engine.undoCommand();
+        assertThat(engine.getBuffer().toString()).isEqualTo(texts.get(0));
+
+        for (int i = 1; i < texts.size(); i++) {
+            engine.redoCommand();
+            assertThat(engine.getBuffer().toString()).isEqualTo(texts.get(i));
+            assertThat(engine.getCursorPosition()).isEqualTo(cursors.get(i));
+        }
+    }
+
+    @Test
+    public void givenUndoBudget_whenBudgetExceeded_thenOldestStepsAreEvicted() {
+        UndoModule undoModule = new UndoModule(UndoModule.Mode.OPERATION_LOG, 5, Long.MAX_VALUE);
+        undoModule.setGroupTimeout(0);
+        engine.setUndoModule(undoModule);
+
+        for (char c : "abcdefgh".toCharArray()) {
+            engine.insertChar(c);
+        }
+        assertThat(undoModule.getEntryCount()).isEqualTo(5);
+        assertThat(undoModule.getEvictedCount()).isEqualTo(3);
+        long sizeOfFiveSteps = undoModule.getRetainedSize();
+
+        for (int i = 0; i < 8; i++) {
+            engine.undoCommand();
+        }
+        assertThat(engine.getBuffer().toString()).isEqualTo("abc");
+        assertThat(undoModule.getRetainedSize()).isEqualTo(sizeOfFiveSteps);
+
+        undoModule.setBudget(10, sizeOfFiveSteps / 5 * 2);
+        assertThat(undoModule.getEntryCount()).isEqualTo(5);
+        engine.insertChar('x');
+        assertThat(undoModule.getEntryCount()).isEqualTo(1);
+        assertThat(undoModule.getRetainedSize()).isLessThanOrEqualTo(sizeOfFiveSteps / 5 * 2);
+    }
+
+    @Test
+    public void givenTypedWords_whenUndone_thenEachWordIsOneUndoStep() {
+        UndoModule undoModule = new UndoModule(UndoModule.Mode.OPERATION_LOG);
+        undoModule.setGroupTimeout(60000);
+        engine.setUndoModule(undoModule);
+
+        for (char c : "hello big world".toCharArray()) {
+            engine.insertChar(c);
+        }
+        engine.deleteInDirection(DeleteCommand.DEL_BACKWARDS);
+        engine.deleteInDirection(DeleteCommand.DEL_BACKWARDS);
+        engine.updateCursor(0);
+        engine.insertChar('>');
+        assertThat(undoModule.getEntryCount()).isEqualTo(5);
+
+        engine.undoCommand();
+        assertThat(engine.getBuffer().toString()).isEqualTo("hello big wor");
+        engine.undoCommand();
+        assertThat(engine.getBuffer().toString()).isEqualTo("hello big world");
+        engine.undoCommand();
+        assertThat(engine.getBuffer().toString()).isEqualTo("hello big ");
+        engine.undoCommand();
+        engine.undoCommand();
+        assertThat(engine.getBuffer().toString()).isEmpty();
+        engine.redoCommand();
+        assertThat(engine.getBuffer().toString()).isEqualTo("hello ");
+    }
+
+    @Test
+    public void givenUndoJournal_whenFileIsReopened_thenUndoHistoryIsRestored() throws Exception {
+        File file = temporaryFolder.newFile("document.txt");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("first");
+        }
+        engine.setUndoModule(new UndoModule(UndoModule.Mode.OPERATION_LOG));
+        engine.setUndoJournalEnabled(true);
+
+        engine.openFile(FileIO.getCharsOfFile(file), file);
+        engine.updateCursor(engine.getBuffer().getSize());
+        for (char c : " second".toCharArray()) {
+            engine.insertChar(c);
+        }
+        engine.updateCursor(0);
+        engine.insertChar('>');
+        engine.saveFile(file);
+        engine.undoCommand();
+        // Opening another text closes the journal
+        engine.openFile(new char[0]);
+        assertThat(UndoJournal.getJournalFile(file)).exists();
+
+        Engine reopened = new Engine();
+        reopened.setUndoModule(new UndoModule(UndoModule.Mode.OPERATION_LOG));
+        reopened.setUndoJournalEnabled(true);
+        reopened.openFile(FileIO.getCharsOfFile(file), file);
+        assertThat(reopened.getBuffer().toString()).isEqualTo(">first second");
+
+        reopened.undoCommand();
+        assertThat(reopened.getBuffer().toString()).isEqualTo("first second");
+        reopened.undoCommand();
+        assertThat(reopened.getBuffer().toString()).isEqualTo("first ");
+        reopened.undoCommand();
+        assertThat(reopened.getBuffer().toString()).isEqualTo("first");
+        reopened.redoCommand();
+        reopened.redoCommand();
+        reopened.redoCommand();
+        assertThat(reopened.getBuffer().toString()).isEqualTo(">first second");
+    }
+
+    @Test
+    public void givenUndoJournalWithBudget_whenManyEditsAreMade_thenOldestRecordsAreRemoved() throws Exception {
+        File file = temporaryFolder.newFile("budget.txt");
+        UndoModule undoModule = new UndoModule(UndoModule.Mode.OPERATION_LOG, 10, Long.MAX_VALUE);
+        undoModule.setGroupTimeout(0);
+        engine.setUndoModule(undoModule);
+        engine.setUndoJournalEnabled(true);
+        engine.openFile(FileIO.getCharsOfFile(file), file);
+
+        for (char c : "abcdefghijklmnopqrstuvwxyz".toCharArray()) {
+            engine.insertChar(c);
+        }
+        assertThat(undoModule.getEntryCount()).isBetween(8, 10);
+        assertThat(undoModule.getEvictedCount()).isEqualTo(26 - undoModule.getEntryCount());
+        for (int i = 0; i < 26; i++) {
+            engine.undoCommand();
+        }
+        assertThat(engine.getBuffer().toString()).isEqualTo("abcdefghijklmnopqrstuvwxyz".substring(0, 26 - undoModule.getEntryCount()));
+        engine.openFile(new char[0]);
+
+        /** A journal whose records were removed is truncated to a size near its records. */
+        File journalFile = temporaryFolder.newFile("large.txt" + UndoJournal.FILE_EXTENSION);
+        try (UndoJournal journal = UndoJournal.open(journalFile)) {
+            char[] text = new char[100000];
+            Arrays.fill(text, 'x');
+            for (int i = 0; i < 20; i++) {
+                journal.append(new EditOperation(0, "", new String(text), 0, text.length, null, null));
+            }
+            assertThat(journalFile.length()).isGreaterThan(4000000);
+            journal.removeOldest(19);
+            assertThat(journal.getEntryCount()).isEqualTo(1);
+            assertThat(journal.read(0).getInsertedText()).hasSize(text.length);
+        }
+        assertThat(journalFile.length()).isLessThan(1000000);
+    }
+
+    @Test
+    public void givenDamagedUndoJournal_whenFileIsReopened_thenHistoryIsDiscarded() throws Exception {
+        /** The entry count and the payload size of the first record point behind the written records. */
+        for (int position : new int[]{8, 48}) {
+            File file = temporaryFolder.newFile("damaged" + position + ".txt");
+            Engine editor = new Engine();
+            editor.setUndoModule(new UndoModule(UndoModule.Mode.OPERATION_LOG));
+            editor.setUndoJournalEnabled(true);
+            editor.openFile(FileIO.getCharsOfFile(file), file);
+            editor.insertText("first");
+            editor.insertText(" second");
+            editor.saveFile(file);
+            editor.openFile(new char[0]);
+
+            try (RandomAccessFile journal = new RandomAccessFile(UndoJournal.getJournalFile(file), "rw")) {
+                journal.seek(position);
+                int value = journal.readInt();
+                journal.seek(position);
+                journal.writeInt(value + 1000);
+            }
+
+            Engine reopened = new Engine();
+            reopened.setUndoModule(new UndoModule(UndoModule.Mode.OPERATION_LOG));
+            reopened.setUndoJournalEnabled(true);
+            reopened.openFile(FileIO.getCharsOfFile(file), file);
+            reopened.undoCommand();
+            assertThat(reopened.getBuffer().toString()).isEqualTo("first second");
+            reopened.openFile(new char[0]);
+        }
+    }
+
+    @Test
+    public void givenUndoTree_whenEditedAfterUndo_thenOldBranchCanBeRecovered() {
+        UndoModule undoModule = new UndoModule(UndoModule.Mode.TREE);
+        engine.setUndoModule(undoModule);
+
+        for (char c : "first".toCharArray()) {
+            engine.insertChar(c);
+        }
+        int firstBranch = undoModule.getCurrentVersion();
+        engine.undoCommand();
+        assertThat(engine.getBuffer().toString()).isEmpty();
+
+        for (char c : "second".toCharArray()) {
+            engine.insertChar(c);
+        }
+        int secondBranch = undoModule.getCurrentVersion();
+        assertThat(undoModule.getParentVersion(secondBranch)).isEqualTo(undoModule.getParentVersion(firstBranch));
+        assertThat(undoModule.getEntryCount()).isEqualTo(3);
+
+        engine.jumpToVersion(firstBranch);
+        assertThat(engine.getBuffer().toString()).isEqualTo("first");
+        engine.undoCommand();
+        engine.redoCommand();
+        assertThat(engine.getBuffer().toString()).isEqualTo("first");
+        engine.jumpToVersion(secondBranch);
+        assertThat(engine.getBuffer().toString()).isEqualTo("second");
+    }
+
+    @Test
+    public void givenUndoTreeWithBudget_whenExceeded_thenOldestBranchesAndRootAreEvicted() {
+        UndoModule undoModule = new UndoModule(UndoModule.Mode.TREE, 10, Long.MAX_VALUE);
+        undoModule.setGroupTimeout(0);
+        engine.setUndoModule(undoModule);
+
+        for (char c : "abc".toCharArray()) {
+            engine.insertChar(c);
+        }
+        int oldBranch = undoModule.getCurrentVersion();
+        for (int i = 0; i < 3; i++) {
+            engine.undoCommand();
+        }
+        for (char c : "0123456789".toCharArray()) {
+            engine.insertChar(c);
+        }
+
+        assertThat(undoModule.getEntryCount()).isEqualTo(10);
+        assertThat(undoModule.getEvictedCount()).isEqualTo(4);
+        assertThat(undoModule.hasVersion(oldBranch)).isFalse();
+        for (int i = 0; i < 20; i++) {
+            engine.undoCommand();
+        }
+        assertThat(engine.getBuffer().toString()).isEqualTo("0");
+        assertThat(undoModule.getParentVersion(undoModule.getCurrentVersion())).isEqualTo(-1);
+        engine.redoCommand();
+        assertThat(engine.getBuffer().toString()).isEqualTo("01");
+    }
+
+    @Test
+    public void givenUndoTreeWithGapBuffer_whenEdited_thenCompleteCopiesCountAgainstBudget() {
+        Buffer.StorageType initialStorageType = Buffer.getDefaultStorageType();
+        Buffer.setDefaultStorageType(Buffer.StorageType.GAP_BUFFER);
+        try {
+            Engine gapEngine = new Engine();
+            UndoModule undoModule = new UndoModule(UndoModule.Mode.TREE, Integer.MAX_VALUE, 20000);
+            undoModule.setGroupTimeout(0);
+            gapEngine.setUndoModule(undoModule);
+            char[] text = new char[2000];
+            Arrays.fill(text, 'x');
+            gapEngine.openFile(text);
+
+            for (int i = 0; i < 10; i++) {
+                gapEngine.insertChar('y');
+            }
+
+            assertThat(undoModule.getRetainedSize()).isLessThanOrEqualTo(20000);
+            assertThat(undoModule.getEntryCount()).isLessThan(6);
+            assertThat(undoModule.getEvictedCount()).isGreaterThan(0);
+        } finally {
+            Buffer.setDefaultStorageType(initialStorageType);
+        }
+    }
+
+    @Test
+    public void givenOldUndoSteps_whenCompressed_thenTheyAreDecompressedOnUndo() {
+        UndoModule undoModule = new UndoModule(UndoModule.Mode.OPERATION_LOG);
+        undoModule.setGroupTimeout(0);
+        undoModule.setCompressAfter(2);
+        undoModule.setCompressionExecutor(Runnable::run);
+        engine.setUndoModule(undoModule);
+
+        StringBuilder paragraph = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            paragraph.append("the quick brown fox ");
+        }
+        engine.setClipboard(Buffer.wrap(paragraph.toString().toCharArray()));
+        for (int i = 0; i < 5; i++) {
+            engine.pasteClipboard();
+        }
+        String text = engine.getBuffer().toString();
+        assertThat(undoModule.getCompressedEntryCount()).isEqualTo(3);
+        assertThat(undoModule.getCompressionRatio()).isLessThan(0.5);
+        assertThat(undoModule.getCompressionSavings()).isPositive();
+        /** Compressed entries count with their compressed size against the budget. */
+        long entrySize = 96 + 2 * paragraph.length();
+        assertThat(undoModule.getRetainedSize()).isEqualTo(5 * entrySize - undoModule.getCompressionSavings());
+
+        for (int i = 0; i < 5; i++) {
+            engine.undoCommand();
+        }
+        assertThat(engine.getBuffer().toString()).isEmpty();
+        assertThat(undoModule.getCompressedEntryCount()).isEqualTo(0);
+        assertThat(undoModule.getCompressionSavings()).isEqualTo(0);
+        assertThat(undoModule.getRetainedSize()).isEqualTo(5 * entrySize);
+        for (int i = 0; i < 5; i++) {
+            engine.redoCommand();
+        }
+        assertThat(engine.getBuffer().toString()).isEqualTo(text);
+
+        /** Decompressed entries are compressed again once newer entries are saved. */
+        engine.pasteClipboard();
+        assertThat(undoModule.getCompressedEntryCount()).isEqualTo(4);
+        assertThat(undoModule.getRetainedSize()).isEqualTo(6 * entrySize - undoModule.getCompressionSavings());
+    }
+
     @Test
     public void checkRecordReplayFeature() {
         engine.setBuffer(randomBuffer);
@@ -376,6 +850,181 @@ public class EngineTest {
         assertThat(engine.getBuffer().getContent()).isEqualTo(expectedResult);
     }
 
+    @Test
+    public void givenRecordedMacro_whenReplayed_thenItIsOneUndoStepAndOneChange() {
+        engine.setUndoModule(new UndoModule(UndoModule.Mode.OPERATION_LOG));
+        engine.startRecording();
+        for (char c : "hello".toCharArray()) {
+            new InsertCommand(c).execute(engine);
+        }
+        new UpdateCursorCommand(2).execute(engine);
+        new UpdateCursorCommand(0).execute(engine);
+        new InsertCommand('>').execute(engine);
+        engine.stopRecording();
+        assertThat(engine.getRecordModule().compile()).hasSize(3);
+
+        TextMirror mirror = new TextMirror();
+        mirror.text.append(engine.getBuffer().toString());
+        engine.registerObserver(mirror);
+        engine.updateCursor(engine.getBuffer().getSize());
+        engine.replayRecording();
+
+        assertThat(engine.getBuffer().toString()).isEqualTo(">>hellohello");
+        assertThat(mirror.changes).hasSize(1);
+        assertThat(mirror.text.toString()).isEqualTo(">>hellohello");
+
+        engine.undoCommand();
+        assertThat(engine.getBuffer().toString()).isEqualTo(">hello");
+    }
+
+    @Test
+    public void givenSpellCheckInMacro_whenReplayedAsTransaction_thenWordsOfTheResultAreReported() {
+        engine.setUndoModule(new UndoModule(UndoModule.Mode.OPERATION_LOG));
+        engine.setSpellCheckResultExecutor(result -> {
+        });
+        engine.getRecordModule().load(Arrays.asList(
+                new InsertTextCommand("helo "),
+                new SpellCheckCommand(),
+                new InsertTextCommand("wrld ")));
+
+        List<String> checkedTexts = new ArrayList<>();
+        TextMirror mirror = new TextMirror() {
+            @Override
+            public void updateMisspelledWords(List<Selection> selections) {
+                checkedTexts.add(engine.getBuffer().toString());
+            }
+        };
+        mirror.text.append(engine.getBuffer().toString());
+        engine.registerObserver(mirror);
+        engine.replayRecording();
+
+        String result = "helo wrld ";
+        assertThat(engine.getBuffer().toString()).isEqualTo(result);
+        assertThat(checkedTexts).containsOnly(result);
+        assertThat(toRanges(engine.getMisspelledWordSelections())).containsExactly("0-4", "5-9");
+
+        // The reported words belong to the result, so the next change is applied to them
+        engine.insertText("tset");
+        assertThat(toRanges(engine.getMisspelledWordSelections()))
+                .isEqualTo(toRanges(spellCheckModule.getMisspelledWords(engine.getBuffer())));
+    }
+
+    private static List<String> toRanges(List<Selection> selections) {
+        List<String> ranges = new ArrayList<>();
+        for (Selection selection : selections) {
+            ranges.add(selection.getSelectionBase() + "-" + selection.getSelectionEnd());
+        }
+        return ranges;
+    }
+
+    @Test
+    public void givenFailingCommand_whenMacroIsReplayed_thenPartialResultCanBeUndone() {
+        engine.setUndoModule(new UndoModule(UndoModule.Mode.OPERATION_LOG));
+        engine.insertText("hello ");
+        TextMirror mirror = new TextMirror();
+        mirror.text.append(engine.getBuffer().toString());
+        engine.registerObserver(mirror);
+        long version = engine.getDocumentVersion();
+
+        engine.getRecordModule().load(Arrays.asList(
+                new InsertCommand('x'),
+                e -> {
+                    throw new IllegalStateException("failed");
+                },
+                new InsertCommand('y')));
+        assertThatThrownBy(() -> engine.replayRecording()).isInstanceOf(IllegalStateException.class);
+
+        assertThat(engine.getBuffer().toString()).isEqualTo("hello x");
+        assertThat(engine.getDocumentVersion()).isEqualTo(version + 1);
+        assertThat(mirror.text.toString()).isEqualTo("hello x");
+
+        engine.undoCommand();
+        assertThat(engine.getBuffer().toString()).isEqualTo("hello ");
+    }
+
+    @Test
+    public void givenMacroWithCorruptTextLength_whenLoaded_thenIOExceptionIsThrown() throws Exception {
+        File file = temporaryFolder.newFile("text" + MacroFile.FILE_EXTENSION);
+        MacroFile.save(Arrays.asList(new InsertTextCommand("hello")), file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        /** Header of 6 bytes, the opcode and the length 5 as one byte. */
+        assertThat(bytes[7]).isEqualTo((byte) 5);
+
+        byte[][] lengths = {
+                {(byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+                {(byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F}};
+        for (byte[] length : lengths) {
+            byte[] corrupt = new byte[bytes.length - 1 + length.length];
+            System.arraycopy(bytes, 0, corrupt, 0, 7);
+            System.arraycopy(length, 0, corrupt, 7, length.length);
+            System.arraycopy(bytes, 8, corrupt, 7 + length.length, bytes.length - 8);
+            File corruptFile = temporaryFolder.newFile("corrupt" + length[4] + MacroFile.FILE_EXTENSION);
+            Files.write(corruptFile.toPath(), corrupt);
+
+            assertThatThrownBy(() -> MacroFile.load(corruptFile))
+                    .isInstanceOf(IOException.class).hasMessageContaining("Invalid text length");
+            assertThatThrownBy(() -> new Engine().replayMacroFile(corruptFile)).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    public void givenSavedMacro_whenLoadedOrStreamed_thenReplayHasSameEffect() throws Exception {
+        engine.startRecording();
+        for (char c : "hello w\u00f6rld".toCharArray()) {
+            new InsertCommand(c).execute(engine);
+        }
+        new UpdateSelectionCommand(0, 5).execute(engine);
+        new CutCommand().execute(engine);
+        new UpdateCursorCommand(1).execute(engine);
+        new PasteCommand().execute(engine);
+        new DeleteCommand(DeleteCommand.DEL_BACKWARDS).execute(engine);
+        engine.stopRecording();
+        String recordedText = engine.getBuffer().toString();
+
+        File file = temporaryFolder.newFile("test" + MacroFile.FILE_EXTENSION);
+        engine.saveRecording(file);
+        assertThat(file.length()).isLessThan(64);
+
+        Engine streamed = new Engine();
+        streamed.replayMacroFile(file);
+        assertThat(streamed.getBuffer().toString()).isEqualTo(recordedText);
+
+        Engine loaded = new Engine();
+        loaded.loadRecording(file);
+        assertThat(loaded.getRecordModule().getReplayList()).hasSize(engine.getRecordModule().getReplayList().size());
+        loaded.replayRecording();
+        assertThat(loaded.getBuffer().toString()).isEqualTo(recordedText);
+
+        /** A truncated file fails, but what was replayed can be undone as one step. */
+        File truncated = temporaryFolder.newFile("truncated" + MacroFile.FILE_EXTENSION);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(truncated.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+        Engine failed = new Engine();
+        assertThatThrownBy(() -> failed.replayMacroFile(truncated)).isInstanceOf(EOFException.class);
+        assertThat(failed.getBuffer().toString()).isNotEmpty();
+        failed.undoCommand();
+        assertThat(failed.getBuffer().toString()).isEmpty();
+
+        assertThatThrownBy(() -> new Engine().loadRecording(truncated)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void givenFilesOfDifferentLength_whenCharsAreRead_thenContentIsExact() throws Exception {
+        for (int length : new int[]{0, 15, 16, 17, 5000}) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                text.append((char) ('a' + i % 26));
+            }
+            File file = temporaryFolder.newFile("chars" + length + ".txt");
+            try (Writer writer = new FileWriter(file)) {
+                writer.write(text.toString());
+            }
+
+            assertThat(new String(FileIO.getCharsOfFile(file))).isEqualTo(text.toString());
+            assertThat(FileIO.readFile(file).toString()).isEqualTo(text.toString());
+        }
+    }
+
     @Test
     public void checkOpenFile() {
         // Assumes that File-IO was successful and List<Character> was successfully extracted from file.
@@ -385,6 +1034,145 @@ public class EngineTest {
         assertThat(engine.getBuffer().getContent()).isEqualTo(getRandomText());
     }
 
+    @Test
+    public void givenTextWithLines_whenGoToLine_thenCursorIsAtLineStart() {
+        engine.openFile("first\nsecond\nthird".toCharArray());
+
+        engine.goToLine(2);
+        assertThat(engine.getCursorPosition()).isEqualTo(13);
+        assertThat(engine.offsetToLine(engine.getCursorPosition())).isEqualTo(2);
+
+        engine.insertChar('\n');
+        assertThat(engine.lineCount()).isEqualTo(4);
+
+        engine.goToLine(10);
+        assertThat(engine.getCursorPosition()).isEqualTo(engine.lineToOffset(3));
+    }
+
+    @Test
+    public void givenObserver_whenTextIsEdited_thenTextChangesReproduceText() {
+        TextMirror mirror = new TextMirror();
+        engine.registerObserver(mirror);
+        engine.openFile("random word is".toCharArray());
+
+        engine.setCursorPosition(6);
+        engine.insertChar('s');
+        engine.updateSelection(0, 6);
+        engine.insertChar('R');
+        engine.deleteInDirection(DeleteCommand.DEL_BACKWARDS);
+        engine.deleteInDirection(DeleteCommand.DEL_FORWARDS);
+        engine.updateSelection(1, 5);
+        engine.cutSelection();
+        engine.updateCursor(engine.getBuffer().getSize());
+        engine.pasteClipboard();
+        engine.undoCommand();
+        engine.undoCommand();
+        engine.redoCommand();
+
+        assertThat(mirror.text.toString()).isEqualTo(engine.getBuffer().toString());
+        assertThat(mirror.changes).hasSize(9);
+        assertThat(mirror.changes.get(1).getOffset()).isEqualTo(0);
+        assertThat(mirror.changes.get(1).getRemovedLength()).isEqualTo(6);
+        assertThat(mirror.changes.get(1).getInsertedText()).isEqualTo("R");
+        for (int i = 1; i < mirror.changes.size(); i++) {
+            assertThat(mirror.changes.get(i).getVersion()).isEqualTo(mirror.changes.get(i - 1).getVersion() + 1);
+        }
+        assertThat(mirror.changes.get(mirror.changes.size() - 1).getVersion()).isEqualTo(engine.getDocumentVersion());
+    }
+
+    @Test
+    public void givenDocumentOnBufferContent_whenTextIsEdited_thenDocumentShowsBuffer() throws Exception {
+        BufferContent content = new BufferContent(engine);
+        StyledDocument document = new DefaultStyledDocument(content, new StyleContext());
+        engine.registerObserver(new DocumentMirror(document));
+        engine.openFile("first line\nsecond line".toCharArray());
+        Position position = document.createPosition(engine.getBuffer().getSize());
+
+        engine.setCursorPosition(5);
+        engine.insertChar('\n');
+        engine.updateSelection(0, 3);
+        engine.cutSelection();
+        engine.updateCursor(engine.getBuffer().getSize());
+        engine.pasteClipboard();
+
+        assertThat(document.getText(0, document.getLength())).isEqualTo(engine.getBuffer().toString());
+        assertThat(document.getDefaultRootElement().getElementCount()).isEqualTo(engine.lineCount());
+        assertThat(position.getOffset()).isEqualTo(engine.getBuffer().getSize());
+    }
+
+    @Test
+    public void givenPositionsOnBufferContent_whenTextIsEdited_thenSharedPositionsMove() throws Exception {
+        BufferContent content = new BufferContent(engine);
+        StyledDocument document = new DefaultStyledDocument(content, new StyleContext());
+        engine.registerObserver(new DocumentMirror(document));
+        engine.openFile("hello world".toCharArray());
+        Position start = content.createPosition(0);
+        Position inside = content.createPosition(8);
+        Position end = content.createPosition(11);
+
+        assertThat(content.createPosition(8)).isSameAs(inside);
+
+        engine.setCursorPosition(0);
+        engine.insertText("say ");
+        engine.updateSelection(9, 14);
+        engine.cutSelection();
+
+        assertThat(start.getOffset()).isEqualTo(0);
+        assertThat(inside.getOffset()).isEqualTo(9);
+        assertThat(end.getOffset()).isEqualTo(engine.getBuffer().getSize());
+
+        Segment segment = new Segment();
+        segment.setPartialReturn(true);
+        content.getChars(0, content.length(), segment);
+        assertThat(segment.toString()).isEqualTo(engine.getBuffer().toString() + "\n");
+    }
+
+    @Test
+    public void givenReplacementOnBufferContent_whenRemovalIsProcessed_thenListenersSeeTextWithoutInsertion() throws Exception {
+        BufferContent content = new BufferContent(engine);
+        StyledDocument document = new DefaultStyledDocument(content, new StyleContext());
+        engine.registerObserver(new DocumentMirror(document, content));
+        engine.openFile("hello world".toCharArray());
+        List<String> removedTexts = new ArrayList<>();
+        document.addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                try {
+                    removedTexts.add(document.getText(0, document.getLength()));
+                } catch (BadLocationException exception) {
+                    throw new IllegalStateException(exception);
+                }
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+
+        engine.updateSelection(6, 11);
+        engine.insertText("there, everybody");
+
+        assertThat(removedTexts).containsExactly("hello ");
+        assertThat(document.getText(0, document.getLength())).isEqualTo("hello there, everybody");
+    }
+
+    @Test
+    public void givenSegmentsOfBufferContent_whenCharsAreReadAgain_thenEarlierSegmentsAreUnchanged() throws Exception {
+        BufferContent content = new BufferContent(engine);
+        StyledDocument document = new DefaultStyledDocument(content, new StyleContext());
+        engine.registerObserver(new DocumentMirror(document, content));
+        engine.openFile("hello world".toCharArray());
+
+        Segment first = new Segment();
+        content.getChars(0, 5, first);
+        Segment second = new Segment();
+        content.getChars(6, 5, second);
+
+        assertThat(first.toString()).isEqualTo("hello");
+        assertThat(second.toString()).isEqualTo("world");
+    }
+
     @Test
     public void checkRegisteringObserver() {
         EngineObserver engineObserver = new GUI();
@@ -415,6 +1203,79 @@ public class EngineTest {
         assertThat(bufferAsString).isEqualTo(expectedResultBuilder.toString());
     }
 
+    /**
+     * Observer that keeps a copy of the text which is only updated by TextChanges.
+     */
+    private static class TextMirror implements EngineObserver {
+        StringBuilder text = new StringBuilder();
+        List<TextChange> changes = new ArrayList<>();
+
+        public void updateText(String content) {
+            text = new StringBuilder(content);
+        }
+
+        public void updateText(TextChange change) {
+            changes.add(change);
+            text.replace(change.getOffset(), change.getOffset() + change.getRemovedLength(), change.getInsertedText());
+        }
+
+        public void updateCursor(int position) {
+        }
+
+        public void updateSelection(boolean active, Selection selection) {
+        }
+
+        public void updateMisspelledWords(List<Selection> selections) {
+        }
+    }
+
+    private static class DocumentMirror implements EngineObserver {
+        Document document;
+        BufferContent content;
+
+        DocumentMirror(Document document) {
+            this.document = document;
+        }
+
+        DocumentMirror(Document document, BufferContent content) {
+            this.document = document;
+            this.content = content;
+        }
+
+        public void updateText(String text) {
+            try {
+                if (content != null) {
+                    content.announceInsert(0, text.length());
+                }
+                document.remove(0, document.getLength());
+                document.insertString(0, text, null);
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public void updateText(TextChange change) {
+            try {
+                if (content != null) {
+                    content.announceInsert(change.getOffset(), change.getInsertedText().length());
+                }
+                document.remove(change.getOffset(), change.getRemovedLength());
+                document.insertString(change.getOffset(), change.getInsertedText(), null);
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public void updateCursor(int position) {
+        }
+
+        public void updateSelection(boolean active, Selection selection) {
+        }
+
+        public void updateMisspelledWords(List<Selection> selections) {
+        }
+    }
+
     private List<Character> getRandomText() {
         // Builds "r4n   d. 0m" string
         List<Character> list = new ArrayList<>();